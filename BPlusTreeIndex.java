@@ -0,0 +1,438 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * 分页存储的 B+ 树索引文件（键为 int，值为定长字节串，键可以重复）
+ *
+ * 文件由定长页组成，第 0 页为文件头：
+ *   int 魔数 | int 版本号 | int 页大小 | int 值大小 | long 条目数 | int 页数 |
+ *   int 树高度 | int 根页号 | int 第一个叶子页号 | int 最后一个叶子页号 | int 键类型 | int 文件头校验和(CRC32)
+ * 叶子页: int 页类型(1) | int 条目数 | int 前一个叶子页号 | int 后一个叶子页号 | 条目 × (int 键 | 值)
+ * 内部页: int 页类型(2) | int 子节点数 | 子节点 × (int 子树最小键 | int 子页号)
+ *
+ * 叶子页按键从小到大排列并双向链接，范围查询找到起点后沿叶子链顺序读取。
+ * 读取时整个文件做内存映射，查找只访问从根到叶子路径上的几页，不需要把索引全部读入内存。
+ * 条目位置用 long 表示（高32位为页号，低32位为页内下标），遍历时不创建对象。
+ */
+public class BPlusTreeIndex {
+
+    static final int MAGIC = 0x42505449; // "BPTI"
+    static final int VERSION = 2;
+    static final int DEFAULT_PAGE_SIZE = 4096;
+
+    // 键类型：普通整数；成绩的可排序编码（成绩从高到低，见 QueryBySubjectScoreRange.encodeScore）
+    static final int KEY_INT = 0;
+    static final int KEY_SCORE_DESC = 1;
+
+    static final int PAGE_LEAF = 1;
+    static final int PAGE_INTERNAL = 2;
+
+    // 叶子页和内部页的页头大小
+    private static final int LEAF_HEADER_SIZE = 16;
+    private static final int INTERNAL_HEADER_SIZE = 8;
+    // 文件头中参与校验的字节数
+    private static final int HEADER_SIZE = 48;
+
+    // 每段映射的页数（段大小不超过 2GB，且页不会跨段）
+    private static final int PAGES_PER_SEGMENT = 1 << 18;
+
+    // 表示"不存在"的条目位置
+    static final long NONE = -1;
+
+    private final ByteBuffer[] segments;
+    private final int pageSize;
+    private final int valueSize;
+    private final int entrySize;
+    private final long entryCount;
+    private final int treeHeight;
+    private final int rootPage;
+    private final int firstLeafPage;
+    private final int lastLeafPage;
+    private final int keyType;
+
+    /**
+     * 打开并校验索引文件
+     */
+    public BPlusTreeIndex(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE + 4);
+            while (header.hasRemaining()) {
+                if (channel.read(header, header.position()) < 0) {
+                    throw new IOException("索引文件格式不正确（文件过短）: " + file.getPath());
+                }
+            }
+
+            CRC32 crc = new CRC32();
+            crc.update(header.array(), 0, HEADER_SIZE);
+            if (header.getInt(0) != MAGIC || header.getInt(HEADER_SIZE) != (int) crc.getValue()) {
+                throw new IOException("索引文件格式不正确，请重新运行 BuildIndexTree: " + file.getPath());
+            }
+            if (header.getInt(4) != VERSION) {
+                throw new IOException("不支持的索引文件版本 " + header.getInt(4) + ": " + file.getPath());
+            }
+
+            pageSize = header.getInt(8);
+            valueSize = header.getInt(12);
+            entryCount = header.getLong(16);
+            int pageCount = header.getInt(24);
+            treeHeight = header.getInt(28);
+            rootPage = header.getInt(32);
+            firstLeafPage = header.getInt(36);
+            lastLeafPage = header.getInt(40);
+            keyType = header.getInt(44);
+            entrySize = 4 + valueSize;
+
+            if (Integer.bitCount(pageSize) != 1 || (long) pageCount * pageSize != fileSize) {
+                throw new IOException("索引文件已损坏（页数与文件大小不符）: " + file.getPath());
+            }
+
+            int segmentCount = (pageCount + PAGES_PER_SEGMENT - 1) / PAGES_PER_SEGMENT;
+            segments = new ByteBuffer[segmentCount];
+            for (int i = 0; i < segmentCount; i++) {
+                long firstPage = (long) i * PAGES_PER_SEGMENT;
+                long pages = Math.min(PAGES_PER_SEGMENT, pageCount - firstPage);
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, firstPage * pageSize, pages * pageSize);
+            }
+        }
+    }
+
+    public long getEntryCount() {
+        return entryCount;
+    }
+
+    public int getTreeHeight() {
+        return treeHeight;
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    public int getKeyType() {
+        return keyType;
+    }
+
+    public int getValueSize() {
+        return valueSize;
+    }
+
+    // ---------- 页访问 ----------
+
+    private ByteBuffer segmentOf(int page) {
+        return segments[page / PAGES_PER_SEGMENT];
+    }
+
+    private int pageOffset(int page) {
+        return (page % PAGES_PER_SEGMENT) * pageSize;
+    }
+
+    private int leafEntryCount(int page) {
+        return segmentOf(page).getInt(pageOffset(page) + 4);
+    }
+
+    private int prevLeaf(int page) {
+        return segmentOf(page).getInt(pageOffset(page) + 8);
+    }
+
+    private int nextLeaf(int page) {
+        return segmentOf(page).getInt(pageOffset(page) + 12);
+    }
+
+    // 条目在所在段中的字节偏移
+    private int entryOffset(long slot) {
+        return pageOffset(pageOf(slot)) + LEAF_HEADER_SIZE + indexOf(slot) * entrySize;
+    }
+
+    private static int pageOf(long slot) {
+        return (int) (slot >>> 32);
+    }
+
+    private static int indexOf(long slot) {
+        return (int) slot;
+    }
+
+    private static long slot(int page, int index) {
+        return ((long) page << 32) | index;
+    }
+
+    // ---------- 条目读取 ----------
+
+    public int keyAt(long slot) {
+        return segmentOf(pageOf(slot)).getInt(entryOffset(slot));
+    }
+
+    // 读取条目值中偏移 offset 处的 int / long / double
+    public int intValue(long slot, int offset) {
+        return segmentOf(pageOf(slot)).getInt(entryOffset(slot) + 4 + offset);
+    }
+
+    public long longValue(long slot, int offset) {
+        return segmentOf(pageOf(slot)).getLong(entryOffset(slot) + 4 + offset);
+    }
+
+    public double doubleValue(long slot, int offset) {
+        return segmentOf(pageOf(slot)).getDouble(entryOffset(slot) + 4 + offset);
+    }
+
+    // ---------- 查找与遍历 ----------
+
+    // 第一个条目（键最小），索引为空时返回 NONE
+    public long first() {
+        return leafEntryCount(firstLeafPage) > 0 ? slot(firstLeafPage, 0) : NONE;
+    }
+
+    // 最后一个条目（键最大），索引为空时返回 NONE
+    public long last() {
+        int count = leafEntryCount(lastLeafPage);
+        return count > 0 ? slot(lastLeafPage, count - 1) : NONE;
+    }
+
+    // 下一个条目，沿叶子链前进
+    public long next(long slot) {
+        int page = pageOf(slot);
+        int index = indexOf(slot) + 1;
+        while (index >= leafEntryCount(page)) {
+            page = nextLeaf(page);
+            if (page < 0) {
+                return NONE;
+            }
+            index = 0;
+        }
+        return slot(page, index);
+    }
+
+    // 上一个条目
+    public long previous(long slot) {
+        int page = pageOf(slot);
+        int index = indexOf(slot) - 1;
+        while (index < 0) {
+            page = prevLeaf(page);
+            if (page < 0) {
+                return NONE;
+            }
+            index = leafEntryCount(page) - 1;
+        }
+        return slot(page, index);
+    }
+
+    // 第一个键 >= key 的条目，不存在时返回 NONE
+    public long lowerBound(int key) {
+        return search(key, false);
+    }
+
+    // 第一个键 > key 的条目，不存在时返回 NONE
+    public long upperBound(int key) {
+        return search(key, true);
+    }
+
+    // 最后一个键 <= key 的条目，不存在时返回 NONE
+    public long floor(int key) {
+        long upper = upperBound(key);
+        return upper == NONE ? last() : previous(upper);
+    }
+
+    // 键等于 key 的第一个条目，不存在时返回 NONE
+    public long find(int key) {
+        long slot = lowerBound(key);
+        return slot != NONE && keyAt(slot) == key ? slot : NONE;
+    }
+
+    /**
+     * 从根页向下查找第一个键 > key（upper 为 true）或 >= key 的条目
+     * 内部页中选择最后一个子树最小键 < key（或 <= key）的子节点，
+     * 键重复时因此落在最左侧可能包含目标的叶子上
+     */
+    private long search(int key, boolean upper) {
+        int page = rootPage;
+        for (int level = 1; level < treeHeight; level++) {
+            ByteBuffer segment = segmentOf(page);
+            int base = pageOffset(page);
+            int low = 0;
+            int high = segment.getInt(base + 4) - 1;
+            // 找最后一个满足条件的子节点，都不满足时取第一个
+            while (low < high) {
+                int mid = (low + high + 1) >>> 1;
+                int childKey = segment.getInt(base + INTERNAL_HEADER_SIZE + mid * 8);
+                if (upper ? childKey <= key : childKey < key) {
+                    low = mid;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            page = segment.getInt(base + INTERNAL_HEADER_SIZE + low * 8 + 4);
+        }
+
+        // 在叶子页中二分查找，整页都不满足时取下一个叶子的第一个条目
+        ByteBuffer segment = segmentOf(page);
+        int base = pageOffset(page) + LEAF_HEADER_SIZE;
+        int low = 0;
+        int high = leafEntryCount(page);
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            int entryKey = segment.getInt(base + mid * entrySize);
+            if (upper ? entryKey > key : entryKey >= key) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        if (low < leafEntryCount(page)) {
+            return slot(page, low);
+        }
+        int next = nextLeaf(page);
+        return next >= 0 && leafEntryCount(next) > 0 ? slot(next, 0) : NONE;
+    }
+
+    /**
+     * 按键从小到大顺序批量写入 B+ 树索引文件
+     * 叶子页写满后立即输出，只在内存中保留每个叶子的最小键和页号，
+     * 全部条目写完后自底向上生成内部页，最后写入文件头
+     */
+    static class Writer implements Closeable {
+        private final FileChannel channel;
+        private final int pageSize;
+        private final int valueSize;
+        private final int leafCapacity;
+        private final int keyType;
+        private final ByteBuffer page;
+
+        private int pageCount = 1; // 第 0 页为文件头
+        private long entryCount;
+        private int leafEntries;
+        private int lastKey = Integer.MIN_VALUE;
+
+        // 已写出的下一层节点：最小键和页号
+        private int[] levelKeys = new int[64];
+        private int[] levelPages = new int[64];
+        private int levelSize;
+
+        public Writer(File file, int keyType, int valueSize) throws IOException {
+            this(file, keyType, valueSize, DEFAULT_PAGE_SIZE);
+        }
+
+        public Writer(File file, int keyType, int valueSize, int pageSize) throws IOException {
+            this.pageSize = pageSize;
+            this.keyType = keyType;
+            this.valueSize = valueSize;
+            this.leafCapacity = (pageSize - LEAF_HEADER_SIZE) / (4 + valueSize);
+            if (leafCapacity < 2 || Integer.bitCount(pageSize) != 1) {
+                throw new IllegalArgumentException("页大小 " + pageSize + " 不适合值大小 " + valueSize);
+            }
+            this.page = ByteBuffer.allocate(pageSize);
+            this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        }
+
+        /**
+         * 追加一个条目，键必须不小于上一个条目的键
+         * value 从当前位置读取 valueSize 个字节
+         */
+        public void add(int key, ByteBuffer value) throws IOException {
+            if (entryCount > 0 && key < lastKey) {
+                throw new IllegalArgumentException("索引键必须按从小到大的顺序写入: " + key + " < " + lastKey);
+            }
+            if (leafEntries == leafCapacity) {
+                flushLeaf(pageCount + 1);
+            }
+            if (leafEntries == 0) {
+                addChild(key, pageCount);
+            }
+
+            page.position(LEAF_HEADER_SIZE + leafEntries * (4 + valueSize));
+            page.putInt(key);
+            for (int i = 0; i < valueSize; i++) {
+                page.put(value.get());
+            }
+            leafEntries++;
+            entryCount++;
+            lastKey = key;
+        }
+
+        // 写出当前叶子页，nextPage 为下一个叶子的页号（-1 表示最后一个）
+        private void flushLeaf(int nextPage) throws IOException {
+            page.putInt(0, PAGE_LEAF);
+            page.putInt(4, leafEntries);
+            page.putInt(8, levelSize > 1 ? pageCount - 1 : -1);
+            page.putInt(12, nextPage);
+            writePage(pageCount++);
+            leafEntries = 0;
+        }
+
+        private void writePage(int pageNumber) throws IOException {
+            page.clear();
+            while (page.hasRemaining()) {
+                channel.write(page, (long) pageNumber * pageSize + page.position());
+            }
+            Arrays.fill(page.array(), (byte) 0);
+        }
+
+        private void addChild(int key, int pageNumber) {
+            if (levelSize == levelKeys.length) {
+                levelKeys = Arrays.copyOf(levelKeys, levelSize * 2);
+                levelPages = Arrays.copyOf(levelPages, levelSize * 2);
+            }
+            levelKeys[levelSize] = key;
+            levelPages[levelSize] = pageNumber;
+            levelSize++;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                // 最后一个叶子页（没有条目时写一个空叶子作为根）
+                if (levelSize == 0) {
+                    addChild(0, pageCount);
+                }
+                flushLeaf(-1);
+                int firstLeafPage = levelPages[0];
+                int lastLeafPage = pageCount - 1;
+
+                // 自底向上生成内部页，直到只剩一个根节点
+                int height = 1;
+                int fanout = (pageSize - INTERNAL_HEADER_SIZE) / 8;
+                while (levelSize > 1) {
+                    int[] childKeys = Arrays.copyOf(levelKeys, levelSize);
+                    int[] childPages = Arrays.copyOf(levelPages, levelSize);
+                    int childCount = levelSize;
+                    levelSize = 0;
+
+                    for (int start = 0; start < childCount; start += fanout) {
+                        int count = Math.min(fanout, childCount - start);
+                        page.putInt(0, PAGE_INTERNAL);
+                        page.putInt(4, count);
+                        for (int i = 0; i < count; i++) {
+                            page.putInt(INTERNAL_HEADER_SIZE + i * 8, childKeys[start + i]);
+                            page.putInt(INTERNAL_HEADER_SIZE + i * 8 + 4, childPages[start + i]);
+                        }
+                        addChild(childKeys[start], pageCount);
+                        writePage(pageCount++);
+                    }
+                    height++;
+                }
+
+                page.putInt(0, MAGIC);
+                page.putInt(4, VERSION);
+                page.putInt(8, pageSize);
+                page.putInt(12, valueSize);
+                page.putLong(16, entryCount);
+                page.putInt(24, pageCount);
+                page.putInt(28, height);
+                page.putInt(32, levelPages[0]);
+                page.putInt(36, firstLeafPage);
+                page.putInt(40, lastLeafPage);
+                page.putInt(44, keyType);
+                CRC32 crc = new CRC32();
+                crc.update(page.array(), 0, HEADER_SIZE);
+                page.putInt(HEADER_SIZE, (int) crc.getValue());
+                writePage(0);
+            } finally {
+                channel.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,391 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 客户端与服务器之间的二进制流水线协议（长度前缀帧，大端字节序）
+ *
+ * 请求帧: int 帧长度 | int 请求ID | byte 请求类型 | 参数
+ *   TYPE_ID    参数: int 学号
+ *   TYPE_RANGE 参数: float 最小语文成绩 | float 最大语文成绩
+ *   TYPE_SUBJECT_RANGE 参数: byte 科目(0 语文, 1 数学, 2 英语, 3 综合) | float 最小成绩 | float 最大成绩
+ *   TYPE_UPSERT 参数: 若干条 20 字节学生记录（新增或修改，响应为 0 条记录的 STATUS_OK）
+ *   TYPE_RANGE_STREAM 参数: float 最小语文成绩 | float 最大语文成绩 | int 跳过条数(OFFSET) | int 最多条数(LIMIT，负数不限)
+ *                           | byte 是否从指定记录之后开始 | float 成绩 | int 学号
+ *     结果按成绩从高到低、相同成绩按学号从小到大的顺序分成多个响应帧返回：除最后一帧外状态为 STATUS_PARTIAL，
+ *     最后一帧为 STATUS_OK。把上一页最后一条记录的 (语文成绩, 学号) 作为"之后开始"的参数即可取下一页（键集分页）。
+ *   TYPE_TOP   参数: byte 科目 | int 人数（返回该科目成绩最高的学生，成绩相同按学号从小到大；人数最多 QueryTopStudents.MAX_TOP_K）
+ *   TYPE_BATCH_ID 参数: int 学号数 | 学号数 × int 学号（最多 MAX_BATCH_IDS 个，可以重复）
+ *     按请求顺序返回找到的记录，记录之后附加 int 未找到数 | 未找到数 × int 学号（按请求顺序，不重复）
+ *   TYPE_COUNT 参数: byte 科目 | float 最小成绩 | float 最大成绩
+ *     只统计人数和成绩总和：返回 0 条记录，之后附加 long 人数 | double 成绩总和（分片部署时由路由汇总各分片）
+ *
+ * 响应帧: int 帧长度 | int 请求ID | byte 状态 | 内容
+ *   STATUS_OK      内容: int 记录数 | 记录数 × 20 字节学生记录（与 dat1/dat2 的记录格式相同）
+ *     一帧最多 MAX_FRAME_RECORDS 条记录，结果更多时返回 STATUS_ERROR（语文成绩范围可改用 TYPE_RANGE_STREAM）
+ *   STATUS_PARTIAL 内容: 与 STATUS_OK 相同，同一请求之后还有响应帧
+ *   STATUS_ERROR   内容: UTF-8 编码的错误信息
+ *
+ * 帧长度不包含长度字段本身。客户端可以连续发送多个请求而不等待响应，
+ * 服务器按请求到达的顺序返回响应，并带回对应的请求ID。
+ *
+ * 连接建立后仍是文本协议；客户端发送一行 "binary" 后，服务器回复一行 "BINARY"，
+ * 此后该连接上的数据都按二进制帧处理。
+ */
+public class BinaryProtocol {
+
+    // 文本协议中切换到二进制协议的命令及服务器的确认行
+    static final String SWITCH_COMMAND = "binary";
+    static final String SWITCH_ACK = "BINARY";
+
+    // 请求类型
+    static final byte TYPE_ID = 1;
+    static final byte TYPE_RANGE = 2;
+    static final byte TYPE_SUBJECT_RANGE = 3;
+    static final byte TYPE_UPSERT = 4;
+    static final byte TYPE_RANGE_STREAM = 5;
+    static final byte TYPE_TOP = 6;
+    static final byte TYPE_BATCH_ID = 7;
+    static final byte TYPE_COUNT = 8;
+
+    // 响应状态
+    static final byte STATUS_OK = 0;
+    static final byte STATUS_ERROR = 1;
+    static final byte STATUS_PARTIAL = 2;
+
+    // 请求帧长度上限（超过视为非法数据），一个新增或修改请求最多约 3000 条记录
+    static final int MAX_REQUEST_LENGTH = 64 * 1024;
+
+    // 帧头大小：请求ID(4) + 类型/状态(1)
+    static final int HEADER_SIZE = 5;
+
+    // 流式范围查询请求的参数长度
+    static final int RANGE_STREAM_PARAMS_SIZE = 25;
+
+    // 一个批量学号查询请求最多包含的学号数
+    static final int MAX_BATCH_IDS = (MAX_REQUEST_LENGTH - HEADER_SIZE - 4) / 4;
+
+    // 一个响应帧最多容纳的记录数（约 2MB），更多的结果需要用 TYPE_RANGE_STREAM 分成多帧返回
+    static final int MAX_FRAME_RECORDS = 100_000;
+
+    // 响应帧长度上限：MAX_FRAME_RECORDS 条记录，再留出批量查询未找到学号列表的空间
+    static final int MAX_RESPONSE_LENGTH = HEADER_SIZE + 4 + MAX_FRAME_RECORDS * MappedRecordFile.RECORD_SIZE
+                                           + MAX_REQUEST_LENGTH;
+
+    // 学生记录（客户端解码响应使用）
+    static class Student {
+        int studentId;
+        float chineseScore;
+        float mathScore;
+        float englishScore;
+        float comprehensiveScore;
+
+        @Override
+        public String toString() {
+            return String.format("学号: %d, 语文: %.1f, 数学: %.1f, 英语: %.1f, 综合: %.1f",
+                studentId, chineseScore, mathScore, englishScore, comprehensiveScore);
+        }
+    }
+
+    // 响应帧
+    static class Response {
+        int requestId;
+        byte status;
+        Student[] students;
+        // 记录之后的附加内容（只有批量学号查询和统计查询的响应有），没有时为 null
+        ByteBuffer trailer;
+        String errorMessage;
+
+        // 批量学号查询中未找到的学号
+        int[] missingIds() {
+            if (trailer == null) {
+                return new int[0];
+            }
+            int[] missingIds = new int[trailer.getInt(0)];
+            for (int i = 0; i < missingIds.length; i++) {
+                missingIds[i] = trailer.getInt(4 + i * 4);
+            }
+            return missingIds;
+        }
+
+        // 统计查询的人数和成绩总和
+        long studentCount() {
+            return trailer.getLong(0);
+        }
+
+        double totalScore() {
+            return trailer.getDouble(8);
+        }
+    }
+
+    /**
+     * 写出学号查询请求
+     */
+    static void writeIdRequest(DataOutputStream out, int requestId, int studentId) throws IOException {
+        out.writeInt(HEADER_SIZE + 4);
+        out.writeInt(requestId);
+        out.writeByte(TYPE_ID);
+        out.writeInt(studentId);
+    }
+
+    /**
+     * 写出语文成绩范围查询请求
+     */
+    static void writeRangeRequest(DataOutputStream out, int requestId, float minScore, float maxScore) throws IOException {
+        out.writeInt(HEADER_SIZE + 8);
+        out.writeInt(requestId);
+        out.writeByte(TYPE_RANGE);
+        out.writeFloat(minScore);
+        out.writeFloat(maxScore);
+    }
+
+    /**
+     * 写出任意科目的成绩范围查询请求
+     */
+    static void writeSubjectRangeRequest(DataOutputStream out, int requestId, int field,
+                                         float minScore, float maxScore) throws IOException {
+        out.writeInt(HEADER_SIZE + 9);
+        out.writeInt(requestId);
+        out.writeByte(TYPE_SUBJECT_RANGE);
+        out.writeByte(field);
+        out.writeFloat(minScore);
+        out.writeFloat(maxScore);
+    }
+
+    /**
+     * 写出流式语文成绩范围查询请求
+     *
+     * @param limit 最多返回的记录数，负数表示不限
+     * @param hasAfter 是否从 (afterScore, afterId) 这条记录之后开始
+     */
+    static void writeRangeStreamRequest(DataOutputStream out, int requestId, float minScore, float maxScore,
+                                        int offset, int limit, boolean hasAfter, float afterScore,
+                                        int afterId) throws IOException {
+        out.writeInt(HEADER_SIZE + RANGE_STREAM_PARAMS_SIZE);
+        out.writeInt(requestId);
+        out.writeByte(TYPE_RANGE_STREAM);
+        out.writeFloat(minScore);
+        out.writeFloat(maxScore);
+        out.writeInt(offset);
+        out.writeInt(limit);
+        out.writeByte(hasAfter ? 1 : 0);
+        out.writeFloat(afterScore);
+        out.writeInt(afterId);
+    }
+
+    /**
+     * 写出成绩排名查询请求
+     */
+    static void writeTopRequest(DataOutputStream out, int requestId, int field, int k) throws IOException {
+        if (k > QueryTopStudents.MAX_TOP_K) {
+            throw new IllegalArgumentException("一次最多查询前 " + QueryTopStudents.MAX_TOP_K + " 名");
+        }
+        out.writeInt(HEADER_SIZE + 5);
+        out.writeInt(requestId);
+        out.writeByte(TYPE_TOP);
+        out.writeByte(field);
+        out.writeInt(k);
+    }
+
+    /**
+     * 写出批量学号查询请求
+     */
+    static void writeBatchIdRequest(DataOutputStream out, int requestId, int[] studentIds) throws IOException {
+        if (studentIds.length > MAX_BATCH_IDS) {
+            throw new IllegalArgumentException("一次最多查询 " + MAX_BATCH_IDS + " 个学号");
+        }
+        out.writeInt(HEADER_SIZE + 4 + studentIds.length * 4);
+        out.writeInt(requestId);
+        out.writeByte(TYPE_BATCH_ID);
+        out.writeInt(studentIds.length);
+        for (int studentId : studentIds) {
+            out.writeInt(studentId);
+        }
+    }
+
+    /**
+     * 写出统计查询请求（只统计人数和成绩总和）
+     */
+    static void writeCountRequest(DataOutputStream out, int requestId, int field,
+                                  float minScore, float maxScore) throws IOException {
+        out.writeInt(HEADER_SIZE + 9);
+        out.writeInt(requestId);
+        out.writeByte(TYPE_COUNT);
+        out.writeByte(field);
+        out.writeFloat(minScore);
+        out.writeFloat(maxScore);
+    }
+
+    /**
+     * 写出新增或修改学生信息的请求
+     */
+    static void writeUpsertRequest(DataOutputStream out, int requestId, int studentId, float chineseScore,
+                                   float mathScore, float englishScore, float comprehensiveScore) throws IOException {
+        out.writeInt(HEADER_SIZE + MappedRecordFile.RECORD_SIZE);
+        out.writeInt(requestId);
+        out.writeByte(TYPE_UPSERT);
+        out.writeInt(studentId);
+        out.writeFloat(chineseScore);
+        out.writeFloat(mathScore);
+        out.writeFloat(englishScore);
+        out.writeFloat(comprehensiveScore);
+    }
+
+    /**
+     * 读取一行文本（切换到二进制协议之前使用，逐字节读取，不会预读之后的二进制数据）
+     */
+    static String readLine(DataInputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int b;
+        while ((b = in.read()) != '\n') {
+            if (b < 0) {
+                throw new EOFException("服务器关闭了连接");
+            }
+            if (b != '\r') {
+                line.write(b);
+            }
+        }
+        return new String(line.toByteArray(), Charset.defaultCharset());
+    }
+
+    /**
+     * 读取一个响应帧
+     */
+    static Response readResponse(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < HEADER_SIZE || length > MAX_RESPONSE_LENGTH) {
+            throw new IOException("响应帧格式错误: 帧长度 " + length);
+        }
+        Response response = new Response();
+        response.requestId = in.readInt();
+        response.status = in.readByte();
+
+        if (response.status == STATUS_OK || response.status == STATUS_PARTIAL) {
+            int recordCount = in.readInt();
+            long trailerLength = length - (HEADER_SIZE + 4 + (long) recordCount * MappedRecordFile.RECORD_SIZE);
+            if (recordCount < 0 || recordCount > MAX_FRAME_RECORDS || trailerLength < 0) {
+                throw new IOException("响应帧格式错误: 帧长度 " + length + "，记录数 " + recordCount);
+            }
+            response.students = new Student[recordCount];
+            for (int i = 0; i < recordCount; i++) {
+                Student student = new Student();
+                student.studentId = in.readInt();
+                student.chineseScore = in.readFloat();
+                student.mathScore = in.readFloat();
+                student.englishScore = in.readFloat();
+                student.comprehensiveScore = in.readFloat();
+                response.students[i] = student;
+            }
+            if (trailerLength > 0) {
+                byte[] trailer = new byte[(int) trailerLength];
+                in.readFully(trailer);
+                response.trailer = ByteBuffer.wrap(trailer);
+            }
+        } else {
+            byte[] message = new byte[length - HEADER_SIZE];
+            in.readFully(message);
+            response.errorMessage = new String(message, StandardCharsets.UTF_8);
+        }
+        return response;
+    }
+
+    /**
+     * 分配成功响应帧并写入帧头和记录数，调用方随后写入 recordCount 条记录
+     */
+    static ByteBuffer allocateOkResponse(int requestId, int recordCount) {
+        int length = responseLength(HEADER_SIZE + 4 + (long) recordCount * MappedRecordFile.RECORD_SIZE);
+        ByteBuffer buffer = ByteBuffer.allocate(4 + length);
+        buffer.putInt(length);
+        buffer.putInt(requestId);
+        buffer.put(STATUS_OK);
+        buffer.putInt(recordCount);
+        return buffer;
+    }
+
+    /**
+     * 分配批量学号查询的响应帧并写入帧头和记录数，
+     * 调用方随后写入 recordCount 条记录、int 未找到数和 missingCount 个学号
+     */
+    static ByteBuffer allocateBatchResponse(int requestId, int recordCount, int missingCount) {
+        int length = responseLength(HEADER_SIZE + 4 + (long) recordCount * MappedRecordFile.RECORD_SIZE
+                                    + 4 + (long) missingCount * 4);
+        ByteBuffer buffer = ByteBuffer.allocate(4 + length);
+        buffer.putInt(length);
+        buffer.putInt(requestId);
+        buffer.put(STATUS_OK);
+        buffer.putInt(recordCount);
+        return buffer;
+    }
+
+    /**
+     * 编码统计查询的响应帧
+     */
+    static ByteBuffer encodeCount(int requestId, long studentCount, double totalScore) {
+        int length = HEADER_SIZE + 4 + 16;
+        ByteBuffer buffer = ByteBuffer.allocate(4 + length);
+        buffer.putInt(length);
+        buffer.putInt(requestId);
+        buffer.put(STATUS_OK);
+        buffer.putInt(0);
+        buffer.putLong(studentCount);
+        buffer.putDouble(totalScore);
+        return buffer.flip();
+    }
+
+    /**
+     * 分配最多容纳 maxRecords 条记录的响应帧，调用方写入记录后用 finishRecords 填写帧头
+     */
+    static ByteBuffer allocateRecords(int maxRecords) {
+        int length = responseLength(HEADER_SIZE + 4 + (long) maxRecords * MappedRecordFile.RECORD_SIZE);
+        ByteBuffer buffer = ByteBuffer.allocate(4 + length);
+        buffer.position(4 + HEADER_SIZE + 4);
+        return buffer;
+    }
+
+    /**
+     * 按已写入的记录数填写 allocateRecords 分配的响应帧的帧头，返回可以发送的帧
+     */
+    static ByteBuffer finishRecords(ByteBuffer buffer, int requestId, byte status) {
+        int length = buffer.position() - 4;
+        buffer.putInt(0, length);
+        buffer.putInt(4, requestId);
+        buffer.put(8, status);
+        buffer.putInt(9, (length - HEADER_SIZE - 4) / MappedRecordFile.RECORD_SIZE);
+        return buffer.flip();
+    }
+
+    // 检查响应帧长度（用 long 计算），超过 MAX_RESPONSE_LENGTH 时调用方应改为返回错误帧
+    private static int responseLength(long length) {
+        if (length > MAX_RESPONSE_LENGTH) {
+            throw new IllegalArgumentException("响应帧过大: " + length + " 字节，一帧最多 " + MAX_FRAME_RECORDS + " 条记录");
+        }
+        return (int) length;
+    }
+
+    /**
+     * 写入一条学生记录
+     */
+    static void putRecord(ByteBuffer buffer, int studentId, float chineseScore, float mathScore,
+                          float englishScore, float comprehensiveScore) {
+        buffer.putInt(studentId);
+        buffer.putFloat(chineseScore);
+        buffer.putFloat(mathScore);
+        buffer.putFloat(englishScore);
+        buffer.putFloat(comprehensiveScore);
+    }
+
+    /**
+     * 创建错误响应帧
+     */
+    static ByteBuffer encodeError(int requestId, String message) {
+        byte[] bytes = message.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocate(4 + HEADER_SIZE + bytes.length);
+        buffer.putInt(HEADER_SIZE + bytes.length);
+        buffer.putInt(requestId);
+        buffer.put(STATUS_ERROR);
+        buffer.put(bytes);
+        buffer.flip();
+        return buffer;
+    }
+}
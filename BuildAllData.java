@@ -0,0 +1,152 @@
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+public class BuildAllData {
+
+    // 输出文件
+    static final String DAT1_FILE = "2353250-hw2.dat1";
+    static final String DAT2_FILE = "2353250-hw2.dat2";
+    static final String INDEX_FILE = "2353250-hw2.idx";
+
+    // 写出阶段中单个文件的生成任务
+    private interface OutputTask {
+        void run() throws IOException;
+    }
+
+    /**
+     * 一次生成 dat1、dat2 和 idx，结果与依次运行 WriteStudentData、MergeSortStudentData、BuildIndexTree 完全一致
+     * 1. 解析：只读取并解析一次"student_data.csv"
+     * 2. 排序：按学号排序得到 dat1 的顺序；在学号顺序上计数排序得到 dat2 的顺序
+     *    （条件不满足时使用并行归并排序）
+     * 3. 写出：dat1、dat2 和 idx 同时写出；索引按 dat2 的顺序直接由内存中的成绩生成，不再读取 dat2
+     * 整个过程从磁盘读取的数据只有CSV文件本身
+     *
+     * @return 文件生成所需时间（单位：毫秒）
+     */
+    public static long buildAllData() throws IOException {
+        long startTime = System.currentTimeMillis();
+
+        // 1. 解析CSV
+        String csvFile = "student_data.csv";
+        StudentColumns students = StudentColumns.readCsv(csvFile);
+        long parseTime = System.currentTimeMillis() - startTime;
+
+        // 2. 排序
+        long sortStart = System.currentTimeMillis();
+        int[] dat1Order = students.orderById();
+        int[] dat2Order = dat1Order.clone();
+        boolean counting = sortForDat2(students, dat2Order);
+        long sortTime = System.currentTimeMillis() - sortStart;
+
+        // 3. 同时写出三个文件
+        long writeStart = System.currentTimeMillis();
+        Map<String, Long> taskTimes = writeDataFiles(students, dat1Order, dat2Order, new File("."));
+        long writeTime = System.currentTimeMillis() - writeStart;
+
+        long endTime = System.currentTimeMillis();
+        long elapsedTime = endTime - startTime;
+
+        // 打印结果
+        long csvSize = new File(csvFile).length();
+        System.out.println("=== 数据文件生成完成 ===");
+        System.out.println("总记录数: " + students.size());
+        System.out.println("读取数据: " + csvFile + "（" + csvSize + " 字节，只读取一次）");
+        System.out.println("\n各阶段耗时:");
+        System.out.println("  解析CSV: " + parseTime + " 毫秒");
+        System.out.println("  排序: " + sortTime + " 毫秒（dat2 使用" + (counting ? "计数排序" : "并行归并排序") + "）");
+        System.out.println("  写出文件: " + writeTime + " 毫秒（同时写出）");
+        for (Map.Entry<String, Long> entry : taskTimes.entrySet()) {
+            System.out.println("    " + entry.getKey() + ": " + entry.getValue() + " 毫秒，"
+                               + new File(entry.getKey()).length() + " 字节");
+        }
+        System.out.println("生成耗时: " + elapsedTime + " 毫秒");
+
+        return elapsedTime;
+    }
+
+    /**
+     * 把按学号排列的记录下标原地排序为 dat2 的顺序（成绩从高到低，相同成绩按学号从小到大）
+     * 优先使用计数排序，条件不满足时使用并行归并排序
+     *
+     * @return 是否使用了计数排序
+     */
+    static boolean sortForDat2(StudentColumns students, int[] order) {
+        boolean counting = MergeSortStudentData.countingSort(students, order);
+        if (!counting) {
+            MergeSortStudentData.parallelMergeSort(students, order);
+        }
+        return counting;
+    }
+
+    /**
+     * 在 dir 目录下同时写出 dat1、dat2 和 idx
+     *
+     * @param dat1Order 按学号排列的记录下标
+     * @param dat2Order 按 dat2 顺序排列的同一组记录下标
+     * @return 各文件的生成耗时（毫秒）
+     */
+    static Map<String, Long> writeDataFiles(StudentColumns students, int[] dat1Order, int[] dat2Order,
+                                            File dir) throws IOException {
+        Map<String, OutputTask> tasks = new LinkedHashMap<>();
+        tasks.put(DAT1_FILE, () -> {
+            try (FileOutputStream fos = new FileOutputStream(new File(dir, DAT1_FILE))) {
+                students.writeRecords(dat1Order, fos);
+            }
+        });
+        tasks.put(DAT2_FILE, () -> {
+            try (FileOutputStream fos = new FileOutputStream(new File(dir, DAT2_FILE))) {
+                students.writeRecords(dat2Order, fos);
+            }
+        });
+        tasks.put(INDEX_FILE, () -> {
+            try (BuildIndexTree.ScoreIndexWriter writer = new BuildIndexTree.ScoreIndexWriter(new File(dir, INDEX_FILE))) {
+                for (int index : dat2Order) {
+                    writer.add(students.chineseScores[index]);
+                }
+            }
+        });
+        return runConcurrently(tasks);
+    }
+
+    // 每个任务一个线程同时执行，等待全部完成，返回各任务的耗时
+    private static Map<String, Long> runConcurrently(Map<String, OutputTask> tasks) throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(tasks.size());
+        try {
+            Map<String, Future<Long>> futures = new LinkedHashMap<>();
+            for (Map.Entry<String, OutputTask> entry : tasks.entrySet()) {
+                OutputTask task = entry.getValue();
+                futures.put(entry.getKey(), executor.submit(() -> {
+                    long start = System.currentTimeMillis();
+                    task.run();
+                    return System.currentTimeMillis() - start;
+                }));
+            }
+
+            Map<String, Long> times = new LinkedHashMap<>();
+            for (Map.Entry<String, Future<Long>> entry : futures.entrySet()) {
+                try {
+                    times.put(entry.getKey(), entry.getValue().get());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("文件生成被中断");
+                } catch (ExecutionException e) {
+                    throw new IOException("生成 " + entry.getKey() + " 失败: " + e.getCause().getMessage(), e.getCause());
+                }
+            }
+            return times;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    public static void main(String[] args) {
+        try {
+            long elapsedTime = buildAllData();
+            System.out.println("\n返回值: " + elapsedTime + " 毫秒");
+        } catch (IOException e) {
+            System.err.println("错误: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,112 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+public class BuildSecondaryIndex {
+
+    /**
+     * 为指定科目构建二级索引
+     * 读取已存在的"2353250-hw2.dat1"文件，把每条记录的（成绩, 字节位置）按成绩从高到低、
+     * 字节位置从小到大排序后写入 B+ 树索引文件（格式见 QueryBySubjectScoreRange）
+     *
+     * @param field 科目编号（QueryBySubjectScoreRange.FIELD_*）
+     * @return 文件生成所需时间（单位：毫秒）
+     */
+    public static long buildSecondaryIndex(int field) throws IOException {
+        long startTime = System.currentTimeMillis();
+
+        // 数据文件（由WriteStudentData生成，已按学号从小到大排序）
+        String datFile = "2353250-hw2.dat1";
+
+        // 检查数据文件是否存在
+        File dataFile = new File(datFile);
+        if (!dataFile.exists()) {
+            throw new FileNotFoundException("数据文件不存在: " + datFile + "\n请先运行 WriteStudentData 生成该文件");
+        }
+
+        String indexFile = QueryBySubjectScoreRange.indexFileName(field);
+        writeSecondaryIndex(field, dataFile, new File(indexFile));
+
+        long endTime = System.currentTimeMillis();
+        long elapsedTime = endTime - startTime;
+
+        // 打印结果
+        BPlusTreeIndex index = new BPlusTreeIndex(new File(indexFile));
+        System.out.println("\n=== " + QueryBySubjectScoreRange.FIELD_LABELS[field] + "成绩索引构建完成 ===");
+        System.out.println("源数据文件: " + datFile);
+        System.out.println("索引文件: " + indexFile);
+        System.out.println("索引条目数: " + index.getEntryCount());
+        System.out.println("树高度: " + index.getTreeHeight());
+        System.out.println("索引文件大小: " + new File(indexFile).length() + " 字节");
+        System.out.println("生成耗时: " + elapsedTime + " 毫秒");
+
+        return elapsedTime;
+    }
+
+    /**
+     * 读取 dat1 文件，写出指定科目的二级索引（不输出信息，压缩增量数据时也使用）
+     */
+    static void writeSecondaryIndex(int field, File dat1File, File indexFile) throws IOException {
+        long[] entries;
+        try (FileChannel channel = FileChannel.open(dat1File.toPath(), StandardOpenOption.READ)) {
+            MappedRecordFile dat1 = new MappedRecordFile(channel);
+            if (dat1.getRecordCount() > Integer.MAX_VALUE - 8) {
+                throw new IOException("记录数超过单个数组上限: " + dat1.getRecordCount());
+            }
+
+            // 高32位为成绩的索引键，低32位为记录号，排序后即为索引顺序
+            int recordCount = (int) dat1.getRecordCount();
+            int scoreOffset = QueryBySubjectScoreRange.fieldOffset(field);
+            entries = new long[recordCount];
+            for (int i = 0; i < recordCount; i++) {
+                float score = dat1.segment(i).getFloat(MappedRecordFile.offsetInSegment(i) + scoreOffset);
+                entries[i] = ((long) QueryBySubjectScoreRange.encodeScore(score) << 32) | i;
+            }
+        }
+        Arrays.parallelSort(entries);
+
+        ByteBuffer value = ByteBuffer.allocate(QueryBySubjectScoreRange.VALUE_SIZE);
+        try (BPlusTreeIndex.Writer writer = new BPlusTreeIndex.Writer(
+                 indexFile, BPlusTreeIndex.KEY_SCORE_DESC, value.capacity())) {
+            for (long entry : entries) {
+                value.clear();
+                value.putLong((entry & 0xFFFFFFFFL) * MappedRecordFile.RECORD_SIZE); // dat1 字节位置
+                value.flip();
+                writer.add((int) (entry >> 32), value);
+            }
+        }
+    }
+
+    public static void main(String[] args) {
+        try {
+            // 默认为数学、英语、综合成绩建立索引（语文成绩已有 dat2 和 idx）
+            List<Integer> fields = new ArrayList<>();
+            if (args.length == 0) {
+                fields.addAll(List.of(QueryBySubjectScoreRange.FIELD_MATH,
+                                      QueryBySubjectScoreRange.FIELD_ENGLISH,
+                                      QueryBySubjectScoreRange.FIELD_COMPREHENSIVE));
+            }
+            for (String arg : args) {
+                int field = QueryBySubjectScoreRange.parseField(arg);
+                if (field < 0) {
+                    System.out.println("使用方法: java BuildSecondaryIndex [科目...]");
+                    System.out.println("科目: " + String.join(" | ", QueryBySubjectScoreRange.FIELD_NAMES)
+                                       + "（默认 math english comprehensive）");
+                    return;
+                }
+                fields.add(field);
+            }
+
+            long totalTime = 0;
+            for (int field : fields) {
+                totalTime += buildSecondaryIndex(field);
+            }
+            System.out.println("\n返回值: " + totalTime + " 毫秒");
+        } catch (IOException e) {
+            System.err.println("错误: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+}
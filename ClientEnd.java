@@ -1,12 +1,20 @@
 import java.io.*;
 import java.net.*;
-import java.util.Scanner;
+import java.nio.charset.Charset;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
-public class Client {
+class Client {
     public static void main(String[] args) {
         String hostname = "47.100.171.209";
         int port = 12345;
 
+        // 默认使用文本交互模式，指定 binary 时使用二进制流水线协议
+        if (args.length > 0 && args[0].equals(BinaryProtocol.SWITCH_COMMAND)) {
+            runBinary(hostname, port);
+            return;
+        }
+
         try (
             Socket socket = new Socket(hostname, port);
             BufferedReader in = new BufferedReader(
@@ -55,4 +63,188 @@ public class Client {
             Thread.currentThread().interrupt();
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * 二进制流水线模式
+     * 每行输入一个查询（"id <学号>"、"score <最小成绩> <最大成绩>" 或 "<科目> <最小成绩> <最大成绩>"），输入后立即发送，
+     * 不等待之前的查询返回；接收线程按请求ID输出结果。输入 bye 结束。
+     * "page <最小成绩> <最大成绩> <条数> [偏移量]" 或 "page <最小成绩> <最大成绩> <条数> after <成绩> <学号>"
+     * 分页流式查询语文成绩范围，条数为 -1 时返回全部记录；结果分多帧返回，最后一帧输出该页最后一条记录，用于 after 继续翻页。
+     * "top <科目> <人数>" 查询该科目成绩最高的学生，"ids <学号> <学号> ..." 一次查询多个学号（按输入顺序返回）。
+     */
+    private static void runBinary(String hostname, int port) {
+        try (
+            Socket socket = new Socket(hostname, port);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            Scanner scanner = new Scanner(System.in)
+        ) {
+            System.out.println("已连接到服务器 " + hostname + ":" + port);
+            System.out.println("服务器: " + BinaryProtocol.readLine(in));
+
+            // 切换到二进制协议
+            out.write((BinaryProtocol.SWITCH_COMMAND + "\n").getBytes(Charset.defaultCharset()));
+            out.flush();
+            String ack;
+            while (!(ack = BinaryProtocol.readLine(in)).equals(BinaryProtocol.SWITCH_ACK)) {
+                System.out.println("服务器: " + ack);
+            }
+            System.out.println("已切换到二进制协议，输入 \"id <学号>\"、\"score <最小成绩> <最大成绩>\" 或 \"<科目> <最小成绩> <最大成绩>\"（科目: "
+                               + String.join(" | ", QueryBySubjectScoreRange.FIELD_NAMES) + "），"
+                               + "\"update <学号> <语文> <数学> <英语> <综合>\" 新增或修改学生信息，"
+                               + "\"page <最小成绩> <最大成绩> <条数> [偏移量 | after <成绩> <学号>]\" 分页查询语文成绩，"
+                               + "\"top <科目> <人数>\" 查询成绩最高的学生，\"ids <学号> <学号> ...\" 批量查询学号，输入 bye 结束");
+
+            int[] counters = new int[2]; // [0] 已发送请求数, [1] 已收到响应数
+            boolean[] finished = new boolean[1];
+            // 分页查询的请求ID，以及已收到的记录数（只在接收线程中访问）
+            Set<Integer> pageRequests = ConcurrentHashMap.newKeySet();
+            Map<Integer, Long> streamed = new HashMap<>();
+
+            // 接收线程：按到达顺序输出响应，收齐所有响应后退出
+            Thread receiveThread = new Thread(() -> {
+                try {
+                    while (true) {
+                        synchronized (counters) {
+                            while (counters[1] == counters[0] && !finished[0]) {
+                                counters.wait();
+                            }
+                            if (counters[1] == counters[0]) {
+                                return;
+                            }
+                        }
+
+                        BinaryProtocol.Response response = BinaryProtocol.readResponse(in);
+                        if (response.status == BinaryProtocol.STATUS_PARTIAL) {
+                            // 流式响应的中间帧：只累计记录数，第一帧输出前几条记录
+                            if (!streamed.containsKey(response.requestId)) {
+                                printResponse(response);
+                            }
+                            streamed.merge(response.requestId, (long) response.students.length, Long::sum);
+                            continue;
+                        }
+                        Long earlier = streamed.remove(response.requestId);
+                        if (pageRequests.remove(response.requestId)) {
+                            printPageEnd(response, earlier);
+                        } else {
+                            printResponse(response);
+                        }
+
+                        synchronized (counters) {
+                            counters[1]++;
+                        }
+                    }
+                } catch (IOException e) {
+                    System.out.println("与服务器连接断开");
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            receiveThread.start();
+
+            int nextRequestId = 1;
+            while (scanner.hasNextLine()) {
+                String[] fields = scanner.nextLine().trim().split("\\s+");
+                if (fields[0].equalsIgnoreCase("bye")) {
+                    break;
+                }
+
+                try {
+                    int requestId = nextRequestId;
+                    if (fields[0].equals("id") && fields.length == 2) {
+                        BinaryProtocol.writeIdRequest(out, requestId, Integer.parseInt(fields[1]));
+                    } else if (fields[0].equals("score") && fields.length == 3) {
+                        BinaryProtocol.writeRangeRequest(out, requestId,
+                            Float.parseFloat(fields[1]), Float.parseFloat(fields[2]));
+                    } else if (QueryBySubjectScoreRange.parseField(fields[0]) >= 0 && fields.length == 3) {
+                        BinaryProtocol.writeSubjectRangeRequest(out, requestId, QueryBySubjectScoreRange.parseField(fields[0]),
+                            Float.parseFloat(fields[1]), Float.parseFloat(fields[2]));
+                    } else if (fields[0].equals("page") && (fields.length == 4 || fields.length == 5
+                               || (fields.length == 7 && fields[4].equals("after")))) {
+                        boolean after = fields.length == 7;
+                        BinaryProtocol.writeRangeStreamRequest(out, requestId,
+                            Float.parseFloat(fields[1]), Float.parseFloat(fields[2]),
+                            fields.length == 5 ? Integer.parseInt(fields[4]) : 0, Integer.parseInt(fields[3]),
+                            after, after ? Float.parseFloat(fields[5]) : 0, after ? Integer.parseInt(fields[6]) : 0);
+                        pageRequests.add(requestId);
+                    } else if (fields[0].equals("ids") && fields.length >= 2) {
+                        BinaryProtocol.writeBatchIdRequest(out, requestId,
+                            QueryByStudentId.parseIds(String.join(" ", Arrays.asList(fields).subList(1, fields.length))));
+                    } else if (fields[0].equals("top") && fields.length == 3
+                               && QueryBySubjectScoreRange.parseField(fields[1]) >= 0) {
+                        BinaryProtocol.writeTopRequest(out, requestId, QueryBySubjectScoreRange.parseField(fields[1]),
+                            Integer.parseInt(fields[2]));
+                    } else if (fields[0].equals("update") && fields.length == 6) {
+                        BinaryProtocol.writeUpsertRequest(out, requestId, Integer.parseInt(fields[1]),
+                            Float.parseFloat(fields[2]), Float.parseFloat(fields[3]),
+                            Float.parseFloat(fields[4]), Float.parseFloat(fields[5]));
+                    } else {
+                        System.out.println("无法识别的查询: 请输入 \"id <学号>\"、\"score <最小成绩> <最大成绩>\"、\"<科目> <最小成绩> <最大成绩>\""
+                                           + "、\"update <学号> <语文> <数学> <英语> <综合>\""
+                                           + "、\"page <最小成绩> <最大成绩> <条数> [偏移量 | after <成绩> <学号>]\""
+                                           + "、\"top <科目> <人数>\" 或 \"ids <学号> <学号> ...\"");
+                        continue;
+                    }
+                    nextRequestId++;
+                    out.flush();
+
+                    synchronized (counters) {
+                        counters[0]++;
+                        counters.notifyAll();
+                    }
+                } catch (NumberFormatException e) {
+                    System.out.println("参数错误: 请输入有效的数字");
+                } catch (IllegalArgumentException e) {
+                    System.out.println("参数错误: " + e.getMessage());
+                }
+            }
+
+            out.flush();
+            synchronized (counters) {
+                finished[0] = true;
+                counters.notifyAll();
+            }
+            receiveThread.join();
+        } catch (UnknownHostException e) {
+            System.err.println("未知主机: " + hostname);
+        } catch (IOException e) {
+            System.err.println("连接服务器失败: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void printResponse(BinaryProtocol.Response response) {
+        if (response.status != BinaryProtocol.STATUS_OK && response.status != BinaryProtocol.STATUS_PARTIAL) {
+            System.out.println("请求 #" + response.requestId + " 失败: " + response.errorMessage);
+            return;
+        }
+
+        BinaryProtocol.Student[] students = response.students;
+        System.out.println("请求 #" + response.requestId + ": " + students.length + " 条记录"
+                           + (response.status == BinaryProtocol.STATUS_PARTIAL ? "（之后还有记录）" : ""));
+        for (int i = 0; i < Math.min(10, students.length); i++) {
+            System.out.println("  " + (i + 1) + ". " + students[i]);
+        }
+        if (students.length > 10) {
+            System.out.println("  ...");
+        }
+        int[] missingIds = response.missingIds();
+        if (missingIds.length > 0) {
+            System.out.println("  未找到的学号: " + Arrays.toString(missingIds));
+        }
+    }
+
+    // 输出分页查询的最后一帧：总记录数和该页最后一条记录
+    private static void printPageEnd(BinaryProtocol.Response response, Long earlier) {
+        if (earlier == null || response.status != BinaryProtocol.STATUS_OK) {
+            printResponse(response);
+        } else {
+            System.out.println("请求 #" + response.requestId + " 完成: 共 " + (earlier + response.students.length) + " 条记录");
+        }
+        BinaryProtocol.Student[] students = response.students;
+        if (students != null && students.length > 0) {
+            System.out.println("  最后一条: " + students[students.length - 1]);
+        }
+    }
+}
@@ -0,0 +1,339 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * 紧凑格式的学生记录文件（dat1、dat2 的可选格式，记录顺序与原文件完全相同）
+ *
+ * 成绩都是一位小数，按十分之一分存为 short；学号按块做帧参考（frame-of-reference）编码：
+ * 每 BLOCK_SIZE 条记录为一块，块内学号存为与块内最小学号的差值，差值用能容纳块内最大差值的最少字节数（1~4）存储。
+ * 每条记录 = 学号差值(1~4字节) + 4 个 short 成绩，最多 12 字节；dat1 学号连续时每条 9 字节，dat2 约 11 字节。
+ *
+ * 文件结构（大端字节序）：
+ *   文件头: int 魔数 | int 版本号 | long 记录数 | int 每块记录数 | int 块数 | long 块表位置
+ *   数据块: 块内记录依次存放
+ *   块表: 块数 × (long 块的字节位置 | int 块内最小学号 | int 学号差值字节数)
+ *
+ * 块表给出每块的位置和记录宽度，第 n 条记录的位置可以直接计算，随机访问不需要解码整块。
+ * 记录下标与原 20 字节格式一致，idx 中的字节位置 / 20 即为紧凑 dat2 中的记录下标。
+ */
+public class CompactRecordFile {
+
+    static final int MAGIC = 0x43524543; // "CREC"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 32;
+
+    // 每块记录数
+    static final int BLOCK_SIZE = 128;
+
+    // 块表中每块的条目大小
+    private static final int TABLE_ENTRY_SIZE = 16;
+    // 每条记录中 4 个成绩占用的字节数
+    private static final int SCORES_SIZE = 8;
+    // 每段映射的块数（每块最多 128 × 12 字节，段大小不超过 2GB，且块不会跨段）
+    private static final int BLOCKS_PER_SEGMENT = 1 << 20;
+
+    // 逐条读取记录（forEach 使用，遍历时不创建对象）
+    interface RecordVisitor {
+        void visit(int studentId, float chineseScore, float mathScore, float englishScore, float comprehensiveScore);
+    }
+
+    private final ByteBuffer table;
+    private final ByteBuffer[] segments;
+    private final long[] segmentStarts;
+    private final long recordCount;
+    private final int blockSize;
+    private final int blockCount;
+
+    /**
+     * 打开并校验紧凑格式文件（整个文件做内存映射，只使用绝对位置读取，多个线程可以共享）
+     */
+    public CompactRecordFile(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            if (QueryByStudentId.readFully(channel, header, 0) < HEADER_SIZE || header.getInt(0) != MAGIC) {
+                throw new IOException("紧凑格式文件格式不正确，请重新运行 WriteCompactData: " + file.getPath());
+            }
+            if (header.getInt(4) != VERSION) {
+                throw new IOException("不支持的紧凑格式文件版本 " + header.getInt(4) + ": " + file.getPath());
+            }
+
+            recordCount = header.getLong(8);
+            blockSize = header.getInt(16);
+            blockCount = header.getInt(20);
+            long tableOffset = header.getLong(24);
+            if (blockSize <= 0 || (recordCount + blockSize - 1) / blockSize != blockCount
+                || tableOffset + (long) blockCount * TABLE_ENTRY_SIZE != fileSize) {
+                throw new IOException("紧凑格式文件已损坏（块数与文件大小不符）: " + file.getPath());
+            }
+
+            table = channel.map(FileChannel.MapMode.READ_ONLY, tableOffset, (long) blockCount * TABLE_ENTRY_SIZE);
+
+            int segmentCount = (blockCount + BLOCKS_PER_SEGMENT - 1) / BLOCKS_PER_SEGMENT;
+            segments = new ByteBuffer[segmentCount];
+            segmentStarts = new long[segmentCount];
+            for (int i = 0; i < segmentCount; i++) {
+                int lastBlock = Math.min(blockCount, (i + 1) * BLOCKS_PER_SEGMENT);
+                segmentStarts[i] = blockOffset(i * BLOCKS_PER_SEGMENT);
+                long segmentEnd = lastBlock < blockCount ? blockOffset(lastBlock) : tableOffset;
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, segmentStarts[i], segmentEnd - segmentStarts[i]);
+            }
+        }
+    }
+
+    public long getRecordCount() {
+        return recordCount;
+    }
+
+    private long blockOffset(int block) {
+        return table.getLong(block * TABLE_ENTRY_SIZE);
+    }
+
+    private int blockBaseId(int block) {
+        return table.getInt(block * TABLE_ENTRY_SIZE + 8);
+    }
+
+    private int blockIdWidth(int block) {
+        return table.getInt(block * TABLE_ENTRY_SIZE + 12);
+    }
+
+    // 第 index 条记录所在段中的字节位置
+    private int recordPosition(int block, long index) {
+        int segment = block / BLOCKS_PER_SEGMENT;
+        return (int) (blockOffset(block) - segmentStarts[segment])
+               + (int) (index % blockSize) * (blockIdWidth(block) + SCORES_SIZE);
+    }
+
+    // 读取 width 字节的无符号学号差值
+    private static int readIdDelta(ByteBuffer segment, int position, int width) {
+        switch (width) {
+            case 1: return segment.get(position) & 0xFF;
+            case 2: return segment.getShort(position) & 0xFFFF;
+            case 3: return (segment.get(position) & 0xFF) << 16 | segment.getShort(position + 1) & 0xFFFF;
+            default: return segment.getInt(position);
+        }
+    }
+
+    // 读取第 index 条记录的学号
+    int idAt(long index) {
+        int block = (int) (index / blockSize);
+        ByteBuffer segment = segments[block / BLOCKS_PER_SEGMENT];
+        return blockBaseId(block) + readIdDelta(segment, recordPosition(block, index), blockIdWidth(block));
+    }
+
+    // 读取第 index 条记录的成绩（field 为 QueryBySubjectScoreRange.FIELD_*）
+    float scoreAt(long index, int field) {
+        int block = (int) (index / blockSize);
+        ByteBuffer segment = segments[block / BLOCKS_PER_SEGMENT];
+        return segment.getShort(recordPosition(block, index) + blockIdWidth(block) + field * 2) / 10f;
+    }
+
+    /**
+     * 按顺序读取 [first, end) 中的记录，逐块解码
+     */
+    void forEach(long first, long end, RecordVisitor visitor) {
+        long index = first;
+        while (index < end) {
+            int block = (int) (index / blockSize);
+            ByteBuffer segment = segments[block / BLOCKS_PER_SEGMENT];
+            int baseId = blockBaseId(block);
+            int width = blockIdWidth(block);
+            int position = recordPosition(block, index);
+            long blockEnd = Math.min(end, (long) (block + 1) * blockSize);
+
+            for (; index < blockEnd; index++, position += width + SCORES_SIZE) {
+                visitor.visit(baseId + readIdDelta(segment, position, width),
+                              segment.getShort(position + width) / 10f,
+                              segment.getShort(position + width + 2) / 10f,
+                              segment.getShort(position + width + 4) / 10f,
+                              segment.getShort(position + width + 6) / 10f);
+            }
+        }
+    }
+
+    /**
+     * 查找学号对应的记录下标，未找到返回 -1（只适用于按学号排序的文件，即紧凑格式的 dat1）
+     * 学号连续时直接计算下标，否则在块表中二分查找所在块，再在块内二分查找
+     */
+    public long find(int studentId) {
+        if (recordCount == 0) {
+            return -1;
+        }
+        int firstId = blockBaseId(0);
+        if (studentId < firstId) {
+            return -1;
+        }
+
+        // 学号连续：直接计算下标
+        long guess = (long) studentId - firstId;
+        if (guess < recordCount && idAt(guess) == studentId) {
+            return guess;
+        }
+
+        // 最后一个最小学号 <= studentId 的块
+        int low = 0;
+        int high = blockCount - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (blockBaseId(mid) <= studentId) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+
+        long first = (long) low * blockSize;
+        long last = Math.min(recordCount, first + blockSize) - 1;
+        while (first <= last) {
+            long mid = (first + last) >>> 1;
+            int id = idAt(mid);
+            if (id == studentId) {
+                return mid;
+            }
+            if (id < studentId) {
+                first = mid + 1;
+            } else {
+                last = mid - 1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 成绩的十分之一分整数值，成绩不是一位小数或超出 short 范围时抛出 IllegalArgumentException
+     */
+    static short toTenths(float score) {
+        long tenths = Math.round((double) score * 10);
+        if (tenths < Short.MIN_VALUE || tenths > Short.MAX_VALUE
+            || Float.floatToIntBits(tenths / 10f) != Float.floatToIntBits(score + 0.0f)) {
+            throw new IllegalArgumentException("成绩无法按一位小数存储: " + score);
+        }
+        return (short) tenths;
+    }
+
+    /**
+     * 顺序写出紧凑格式文件：记录按写入顺序存放，每满一块编码写出一次，关闭时写出块表和文件头
+     */
+    static class Writer implements Closeable {
+        private final FileChannel channel;
+        private final ByteBuffer output = ByteBuffer.allocate(64 * 1024);
+        private long position = HEADER_SIZE;
+
+        // 当前块中尚未写出的记录
+        private final int[] ids = new int[BLOCK_SIZE];
+        private final short[] scores = new short[BLOCK_SIZE * 4];
+        private int blockRecords;
+
+        // 已写出的块：位置、最小学号、学号差值字节数
+        private long[] blockOffsets = new long[64];
+        private int[] blockBaseIds = new int[64];
+        private int[] blockIdWidths = new int[64];
+        private int blockCount;
+        private long recordCount;
+
+        public Writer(File file) throws IOException {
+            this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        }
+
+        /**
+         * 追加一条记录
+         */
+        public void add(int studentId, float chineseScore, float mathScore,
+                        float englishScore, float comprehensiveScore) throws IOException {
+            ids[blockRecords] = studentId;
+            scores[blockRecords * 4] = toTenths(chineseScore);
+            scores[blockRecords * 4 + 1] = toTenths(mathScore);
+            scores[blockRecords * 4 + 2] = toTenths(englishScore);
+            scores[blockRecords * 4 + 3] = toTenths(comprehensiveScore);
+            blockRecords++;
+            recordCount++;
+            if (blockRecords == BLOCK_SIZE) {
+                flushBlock();
+            }
+        }
+
+        // 编码并写出当前块
+        private void flushBlock() throws IOException {
+            int baseId = Integer.MAX_VALUE;
+            int maxId = Integer.MIN_VALUE;
+            for (int i = 0; i < blockRecords; i++) {
+                baseId = Math.min(baseId, ids[i]);
+                maxId = Math.max(maxId, ids[i]);
+            }
+            long range = (long) maxId - baseId;
+            int width = range < 1 << 8 ? 1 : range < 1 << 16 ? 2 : range < 1 << 24 ? 3 : 4;
+
+            if (blockCount == blockOffsets.length) {
+                blockOffsets = Arrays.copyOf(blockOffsets, blockCount * 2);
+                blockBaseIds = Arrays.copyOf(blockBaseIds, blockCount * 2);
+                blockIdWidths = Arrays.copyOf(blockIdWidths, blockCount * 2);
+            }
+            blockOffsets[blockCount] = position;
+            blockBaseIds[blockCount] = baseId;
+            blockIdWidths[blockCount] = width;
+            blockCount++;
+
+            for (int i = 0; i < blockRecords; i++) {
+                if (output.remaining() < width + SCORES_SIZE) {
+                    flushOutput();
+                }
+                int delta = ids[i] - baseId;
+                for (int shift = (width - 1) * 8; shift >= 0; shift -= 8) {
+                    output.put((byte) (delta >>> shift));
+                }
+                for (int j = 0; j < 4; j++) {
+                    output.putShort(scores[i * 4 + j]);
+                }
+                position += width + SCORES_SIZE;
+            }
+            blockRecords = 0;
+        }
+
+        private void flushOutput() throws IOException {
+            output.flip();
+            long start = position - output.remaining();
+            while (output.hasRemaining()) {
+                channel.write(output, start + output.position());
+            }
+            output.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                if (blockRecords > 0) {
+                    flushBlock();
+                }
+                long tableOffset = position;
+                for (int i = 0; i < blockCount; i++) {
+                    if (output.remaining() < TABLE_ENTRY_SIZE) {
+                        flushOutput();
+                    }
+                    output.putLong(blockOffsets[i]);
+                    output.putInt(blockBaseIds[i]);
+                    output.putInt(blockIdWidths[i]);
+                    position += TABLE_ENTRY_SIZE;
+                }
+                flushOutput();
+
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                header.putInt(MAGIC);
+                header.putInt(VERSION);
+                header.putLong(recordCount);
+                header.putInt(BLOCK_SIZE);
+                header.putInt(blockCount);
+                header.putLong(tableOffset);
+                header.flip();
+                while (header.hasRemaining()) {
+                    channel.write(header, header.position());
+                }
+            } finally {
+                channel.close();
+            }
+        }
+    }
+}
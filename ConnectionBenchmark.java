@@ -0,0 +1,123 @@
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+import java.util.*;
+
+public class ConnectionBenchmark {
+
+    // 每条回复的结束标记（"查询耗时: N 毫秒" 行）
+    private static final byte[] REPLY_END = ("毫秒" + System.lineSeparator()).getBytes(Charset.defaultCharset());
+
+    /**
+     * 并发连接压测：同时保持大量连接，然后在每个连接上发送一次学号查询
+     * 用于验证服务器在上万个空闲连接存在时仍能正常响应
+     *
+     * 使用方法: java ConnectionBenchmark [主机] [端口] [连接数] [最大学号]
+     */
+    public static void main(String[] args) {
+        String hostname = args.length > 0 ? args[0] : "localhost";
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : 12345;
+        int connectionCount = args.length > 2 ? Integer.parseInt(args[2]) : 10000;
+        int maxStudentId = args.length > 3 ? Integer.parseInt(args[3]) : 131072;
+
+        System.out.println("=== 并发连接压测 ===");
+        System.out.println("服务器: " + hostname + ":" + port);
+        System.out.println("连接数: " + connectionCount);
+        System.out.println();
+
+        List<SocketChannel> channels = new ArrayList<>(connectionCount);
+        ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+        Random random = new Random(42);
+
+        try {
+            // 1. 建立全部连接并读取欢迎信息
+            long startTime = System.nanoTime();
+            InetSocketAddress address = new InetSocketAddress(hostname, port);
+            for (int i = 0; i < connectionCount; i++) {
+                SocketChannel channel = SocketChannel.open(address);
+                channels.add(channel);
+                readUntil(channel, buffer, System.lineSeparator().getBytes(Charset.defaultCharset()));
+            }
+            long connectTime = System.nanoTime() - startTime;
+
+            System.out.println("已建立连接数: " + channels.size());
+            System.out.printf("建立连接耗时: %.1f 毫秒%n", connectTime / 1e6);
+
+            // 2. 所有连接保持打开，依次在每个连接上查询一次
+            long[] latencies = new long[channels.size()];
+            startTime = System.nanoTime();
+            for (int i = 0; i < channels.size(); i++) {
+                SocketChannel channel = channels.get(i);
+                int studentId = 1 + random.nextInt(maxStudentId);
+                byte[] request = ("id\n" + studentId + "\n").getBytes(Charset.defaultCharset());
+
+                long requestStart = System.nanoTime();
+                writeFully(channel, ByteBuffer.wrap(request));
+                readUntil(channel, buffer, REPLY_END);
+                latencies[i] = System.nanoTime() - requestStart;
+            }
+            long queryTime = System.nanoTime() - startTime;
+
+            Arrays.sort(latencies);
+            System.out.println("\n在 " + channels.size() + " 个并发连接上各查询一次:");
+            System.out.printf("  总耗时: %.1f 毫秒%n", queryTime / 1e6);
+            System.out.printf("  吞吐量: %.0f 次/秒%n", channels.size() / (queryTime / 1e9));
+            System.out.printf("  延迟 p50: %.3f 毫秒%n", latencies[latencies.length / 2] / 1e6);
+            System.out.printf("  延迟 p99: %.3f 毫秒%n", latencies[(int) (latencies.length * 0.99)] / 1e6);
+            System.out.printf("  延迟 max: %.3f 毫秒%n", latencies[latencies.length - 1] / 1e6);
+
+        } catch (IOException e) {
+            System.err.println("压测失败（已建立 " + channels.size() + " 个连接）: " + e.getMessage());
+        } finally {
+            // 3. 断开所有连接
+            for (SocketChannel channel : channels) {
+                try {
+                    writeFully(channel, ByteBuffer.wrap("bye\n".getBytes(Charset.defaultCharset())));
+                    channel.close();
+                } catch (IOException e) {
+                    // 忽略关闭时的错误
+                }
+            }
+        }
+    }
+
+    private static void writeFully(SocketChannel channel, ByteBuffer data) throws IOException {
+        while (data.hasRemaining()) {
+            channel.write(data);
+        }
+    }
+
+    // 读取服务器回复，直到收到的数据以 marker 结尾
+    private static void readUntil(SocketChannel channel, ByteBuffer buffer, byte[] marker) throws IOException {
+        buffer.clear();
+        while (true) {
+            if (!buffer.hasRemaining()) {
+                // 只需保留末尾用于匹配结束标记
+                buffer.flip();
+                buffer.position(buffer.limit() - marker.length);
+                buffer.compact();
+            }
+            if (channel.read(buffer) < 0) {
+                throw new EOFException("服务器关闭了连接");
+            }
+            if (endsWith(buffer, marker)) {
+                return;
+            }
+        }
+    }
+
+    private static boolean endsWith(ByteBuffer buffer, byte[] marker) {
+        int end = buffer.position();
+        if (end < marker.length) {
+            return false;
+        }
+        for (int i = 0; i < marker.length; i++) {
+            if (buffer.get(end - marker.length + i) != marker[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,199 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * 增量数据（新增或修改的学生信息），不需要重新生成 dat1、dat2 和 idx
+ *
+ * 每条新增或修改的记录先追加到增量文件"2353250-hw2.delta"（与 dat1 相同的 20 字节记录格式，
+ * 同一学号以最后一条为准），再放入按学号排序的内存表；查询时用内存表中的记录覆盖 dat1、dat2 中的同一学号。
+ * 增量记录数达到 COMPACTION_THRESHOLD 后由压缩任务把增量合并进 dat1、dat2 和索引：
+ *   1. freeze: 增量文件改名为"2353250-hw2.delta.compacting"，内存表转为只读的压缩层，新的修改写入新的增量文件
+ *   2. 压缩任务生成新的数据文件和索引并替换旧文件
+ *   3. release: 删除压缩层和"2353250-hw2.delta.compacting"
+ * 压缩层在新文件替换完成前一直参与查询；覆盖是幂等的，新旧数据文件与压缩层同时存在时结果不变。
+ * 启动时如果发现上次未完成的压缩文件，先把它和增量文件合并为新的增量文件。
+ */
+public class DeltaStore implements Closeable {
+
+    // 增量记录数达到该值时开始压缩
+    static final int COMPACTION_THRESHOLD = 4096;
+
+    static final String DELTA_FILE = "2353250-hw2.delta";
+    static final String COMPACTING_FILE = DELTA_FILE + ".compacting";
+
+    /**
+     * 某一时刻的增量数据：active 为正在写入的内存表，compacting 为正在压缩的只读内存表
+     * 同一学号以 active 中的记录为准
+     */
+    static class Layers {
+        final NavigableMap<Integer, QueryByStudentId.Student> active;
+        final NavigableMap<Integer, QueryByStudentId.Student> compacting;
+
+        Layers(NavigableMap<Integer, QueryByStudentId.Student> active,
+               NavigableMap<Integer, QueryByStudentId.Student> compacting) {
+            this.active = active;
+            this.compacting = compacting;
+        }
+
+        boolean isEmpty() {
+            return active.isEmpty() && compacting.isEmpty();
+        }
+
+        // 学号对应的增量记录，没有时返回 null
+        QueryByStudentId.Student get(int studentId) {
+            QueryByStudentId.Student student = active.get(studentId);
+            return student != null ? student : compacting.get(studentId);
+        }
+
+        // 两层合并后的全部增量记录（按学号排序）
+        NavigableMap<Integer, QueryByStudentId.Student> merged() {
+            if (compacting.isEmpty()) {
+                return active;
+            }
+            NavigableMap<Integer, QueryByStudentId.Student> merged = new TreeMap<>(compacting);
+            merged.putAll(active);
+            return merged;
+        }
+    }
+
+    private final File deltaFile;
+    private final File compactingFile;
+    private FileChannel log;
+    private volatile Layers layers;
+
+    public DeltaStore(File dataDir) throws IOException {
+        this.deltaFile = new File(dataDir, DELTA_FILE);
+        this.compactingFile = new File(dataDir, COMPACTING_FILE);
+
+        NavigableMap<Integer, QueryByStudentId.Student> active = new ConcurrentSkipListMap<>();
+        if (compactingFile.exists()) {
+            // 上次压缩未完成：两个文件合并为新的增量文件后继续
+            replay(compactingFile, active);
+            replay(deltaFile, active);
+            File merged = new File(dataDir, DELTA_FILE + ".tmp");
+            try (FileChannel channel = FileChannel.open(merged.toPath(), StandardOpenOption.CREATE,
+                     StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                append(channel, active.values());
+            }
+            Files.move(merged.toPath(), deltaFile.toPath(),
+                       StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            Files.delete(compactingFile.toPath());
+        } else {
+            replay(deltaFile, active);
+        }
+
+        this.log = openLog();
+        this.layers = new Layers(active, Collections.emptyNavigableMap());
+    }
+
+    // 读取增量文件，末尾不完整的记录（写入时中断）会被截掉
+    private static void replay(File file, Map<Integer, QueryByStudentId.Student> students) throws IOException {
+        if (!file.exists()) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ,
+                                                    StandardOpenOption.WRITE)) {
+            long completeSize = channel.size() / MappedRecordFile.RECORD_SIZE * MappedRecordFile.RECORD_SIZE;
+            if (completeSize < channel.size()) {
+                channel.truncate(completeSize);
+            }
+
+            ByteBuffer buffer = ByteBuffer.allocate(MappedRecordFile.RECORD_SIZE * 4096);
+            long position = 0;
+            while (position < completeSize) {
+                position += QueryByStudentId.readFully(channel, buffer, position);
+                while (buffer.remaining() >= MappedRecordFile.RECORD_SIZE) {
+                    QueryByStudentId.Student student = new QueryByStudentId.Student();
+                    student.studentId = buffer.getInt();
+                    student.chineseScore = buffer.getFloat();
+                    student.mathScore = buffer.getFloat();
+                    student.englishScore = buffer.getFloat();
+                    student.comprehensiveScore = buffer.getFloat();
+                    students.put(student.studentId, student);
+                }
+            }
+        }
+    }
+
+    private FileChannel openLog() throws IOException {
+        return FileChannel.open(deltaFile.toPath(), StandardOpenOption.CREATE,
+                                StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    // 把记录编码后整块写入通道
+    private static void append(FileChannel channel, Collection<QueryByStudentId.Student> students) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(students.size() * MappedRecordFile.RECORD_SIZE);
+        for (QueryByStudentId.Student student : students) {
+            buffer.putInt(student.studentId);
+            buffer.putFloat(student.chineseScore);
+            buffer.putFloat(student.mathScore);
+            buffer.putFloat(student.englishScore);
+            buffer.putFloat(student.comprehensiveScore);
+        }
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * 新增或修改一批学生信息：整批追加到增量文件并刷到磁盘后才放入内存表（查询可见）
+     *
+     * @return 当前内存表中的增量记录数
+     */
+    public synchronized int upsert(Collection<QueryByStudentId.Student> students) throws IOException {
+        append(log, students);
+        log.force(false);
+
+        NavigableMap<Integer, QueryByStudentId.Student> active = layers.active;
+        for (QueryByStudentId.Student student : students) {
+            active.put(student.studentId, student);
+        }
+        return active.size();
+    }
+
+    // 当前增量数据的快照（查询前获取，整个查询使用同一个快照）
+    public Layers snapshot() {
+        return layers;
+    }
+
+    /**
+     * 开始压缩：当前内存表转为压缩层，之后的修改写入新的增量文件
+     *
+     * @return 需要合并进数据文件的增量记录，没有增量时返回 null
+     */
+    public synchronized NavigableMap<Integer, QueryByStudentId.Student> freeze() throws IOException {
+        Layers current = layers;
+        if (!current.compacting.isEmpty()) {
+            throw new IllegalStateException("上一次压缩尚未完成");
+        }
+        if (current.active.isEmpty()) {
+            return null;
+        }
+
+        log.close();
+        Files.move(deltaFile.toPath(), compactingFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        log = openLog();
+        layers = new Layers(new ConcurrentSkipListMap<>(), current.active);
+        return current.active;
+    }
+
+    /**
+     * 压缩完成（新的数据文件已经替换旧文件并被查询使用）：丢弃压缩层
+     */
+    public synchronized void release() throws IOException {
+        layers = new Layers(layers.active, Collections.emptyNavigableMap());
+        Files.deleteIfExists(compactingFile.toPath());
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        log.close();
+    }
+}
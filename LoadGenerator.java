@@ -0,0 +1,338 @@
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.Charset;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class LoadGenerator {
+
+    // 查询类型
+    private static final int OP_ID = 0;
+    private static final int OP_RANGE = 1;
+    private static final String[] OP_NAMES = {"学号查询", "成绩范围查询"};
+
+    // 压测参数
+    static class Options {
+        String host = "localhost";
+        int port = 12345;
+        int connections = 16;
+        int durationSeconds = 30;
+        int warmupSeconds = 5;
+        double idRatio = 0.9;        // 学号查询占比，其余为语文成绩范围查询
+        double zipfTheta = 0.99;     // Zipf 分布参数，0 为均匀分布
+        int maxStudentId = 131072;
+        float rangeWidth = 10.0f;    // 成绩范围查询的区间宽度
+        long seed = 42;
+    }
+
+    /**
+     * Zipf 分布的随机数（Gray 等人 "Quickly Generating Billion-Record Synthetic Databases" 中的方法，
+     * YCSB 的 ZipfianGenerator 也使用该方法）：返回 [0, n) 中的排名，排名越小出现越频繁
+     * 初始化需要 O(n) 计算 zeta(n)，之后每次生成为 O(1)
+     */
+    static class ZipfGenerator {
+        private final long n;
+        private final double theta;
+        private final double alpha;
+        private final double zetaN;
+        private final double eta;
+
+        ZipfGenerator(long n, double theta) {
+            this.n = n;
+            this.theta = theta;
+            this.alpha = 1.0 / (1.0 - theta);
+            this.zetaN = zeta(n, theta);
+            double zeta2 = zeta(2, theta);
+            this.eta = (1 - Math.pow(2.0 / n, 1 - theta)) / (1 - zeta2 / zetaN);
+        }
+
+        private static double zeta(long n, double theta) {
+            double sum = 0;
+            for (long i = 1; i <= n; i++) {
+                sum += 1 / Math.pow(i, theta);
+            }
+            return sum;
+        }
+
+        long next(Random random) {
+            double u = random.nextDouble();
+            double uz = u * zetaN;
+            if (uz < 1.0) {
+                return 0;
+            }
+            if (uz < 1.0 + Math.pow(0.5, theta)) {
+                return 1;
+            }
+            return Math.min(n - 1, (long) (n * Math.pow(eta * u - eta + 1, alpha)));
+        }
+    }
+
+    // 排名打散为键：热点键分散在整个学号范围内，而不是集中在最小的学号上
+    private static long scramble(long rank, long n) {
+        long h = rank * 0x9E3779B97F4A7C15L;
+        h ^= h >>> 32;
+        return Math.floorMod(h, n);
+    }
+
+    // 单个连接的统计结果
+    static class WorkerResult {
+        final LatencyHistogram[] histograms = {new LatencyHistogram(), new LatencyHistogram()};
+        long records;
+        long errors;
+        IOException failure;
+    }
+
+    /**
+     * 闭环压测：每个连接发送一个请求，收到响应后立即发送下一个
+     * 预热阶段的请求不计入统计；吞吐量 = 统计阶段完成的请求数 / 统计阶段时长
+     */
+    static List<WorkerResult> run(Options options, AtomicLong completed) throws InterruptedException {
+        // 所有连接共享同一组热点（相同的排名对应相同的学号和成绩区间）
+        ZipfGenerator idKeys = new ZipfGenerator(options.maxStudentId, options.zipfTheta);
+        int rangeCount = (int) Math.floor((100.0f - options.rangeWidth) * 10) + 1;
+        ZipfGenerator rangeKeys = new ZipfGenerator(rangeCount, options.zipfTheta);
+
+        long startTime = System.nanoTime();
+        long measureStart = startTime + options.warmupSeconds * 1_000_000_000L;
+        long endTime = measureStart + options.durationSeconds * 1_000_000_000L;
+
+        List<WorkerResult> results = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < options.connections; i++) {
+            WorkerResult result = new WorkerResult();
+            Random random = new Random(options.seed + i);
+            results.add(result);
+            Thread thread = new Thread(() -> {
+                try {
+                    runConnection(options, idKeys, rangeKeys, random, measureStart, endTime, result, completed);
+                } catch (IOException e) {
+                    result.failure = e;
+                }
+            }, "load-" + i);
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        return results;
+    }
+
+    private static void runConnection(Options options, ZipfGenerator idKeys, ZipfGenerator rangeKeys,
+                                      Random random, long measureStart, long endTime,
+                                      WorkerResult result, AtomicLong completed) throws IOException {
+        try (Socket socket = new Socket()) {
+            socket.setTcpNoDelay(true);
+            socket.connect(new InetSocketAddress(options.host, options.port));
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 64 * 1024));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+            // 读取欢迎信息并切换到二进制协议
+            BinaryProtocol.readLine(in);
+            out.write((BinaryProtocol.SWITCH_COMMAND + "\n").getBytes(Charset.defaultCharset()));
+            out.flush();
+            while (!BinaryProtocol.readLine(in).equals(BinaryProtocol.SWITCH_ACK)) {
+                // 跳过切换前的其他文本
+            }
+
+            byte[] scratch = new byte[64 * 1024];
+            int requestId = 0;
+            while (true) {
+                long requestStart = System.nanoTime();
+                if (requestStart >= endTime) {
+                    break;
+                }
+
+                int op = random.nextDouble() < options.idRatio ? OP_ID : OP_RANGE;
+                requestId++;
+                if (op == OP_ID) {
+                    int studentId = 1 + (int) scramble(idKeys.next(random), options.maxStudentId);
+                    BinaryProtocol.writeIdRequest(out, requestId, studentId);
+                } else {
+                    int start = (int) scramble(rangeKeys.next(random), rangeKeys.n);
+                    float minScore = start / 10.0f;
+                    BinaryProtocol.writeRangeRequest(out, requestId, minScore, minScore + options.rangeWidth);
+                }
+                out.flush();
+
+                int recordCount = readResponse(in, requestId, scratch);
+                long latency = System.nanoTime() - requestStart;
+
+                if (requestStart >= measureStart) {
+                    if (recordCount < 0) {
+                        result.errors++;
+                    } else {
+                        result.records += recordCount;
+                    }
+                    result.histograms[op].record(latency);
+                    completed.incrementAndGet();
+                }
+            }
+        }
+    }
+
+    /**
+     * 读取一个响应帧，只解析帧头，记录内容直接丢弃（不解码为对象，避免客户端成为瓶颈）
+     *
+     * @return 记录数，错误响应返回 -1
+     */
+    private static int readResponse(DataInputStream in, int requestId, byte[] scratch) throws IOException {
+        int length = in.readInt();
+        int responseId = in.readInt();
+        byte status = in.readByte();
+        if (responseId != requestId) {
+            throw new IOException("响应的请求ID不匹配: 期望 " + requestId + "，收到 " + responseId);
+        }
+
+        long remaining = length - BinaryProtocol.HEADER_SIZE;
+        int recordCount = -1;
+        if (status == BinaryProtocol.STATUS_OK) {
+            recordCount = in.readInt();
+            remaining -= 4;
+        }
+        while (remaining > 0) {
+            int n = (int) Math.min(remaining, scratch.length);
+            in.readFully(scratch, 0, n);
+            remaining -= n;
+        }
+        return recordCount;
+    }
+
+    private static void printHistogram(String name, LatencyHistogram histogram, double seconds) {
+        System.out.printf("%s: %d 次，%.0f 次/秒，平均 %.3f，p50 %.3f，p99 %.3f，p999 %.3f，max %.3f 毫秒%n",
+            name, histogram.getTotalCount(), histogram.getTotalCount() / seconds,
+            histogram.getMean() / 1e6,
+            histogram.getValueAtPercentile(50) / 1e6,
+            histogram.getValueAtPercentile(99) / 1e6,
+            histogram.getValueAtPercentile(99.9) / 1e6,
+            histogram.getMaxValue() / 1e6);
+    }
+
+    static Options parseOptions(String[] args) {
+        Options options = new Options();
+        for (int i = 0; i < args.length; i++) {
+            String name = args[i];
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("缺少参数值: " + name);
+            }
+            String value = args[++i];
+            switch (name) {
+                case "--host": options.host = value; break;
+                case "--port": options.port = Integer.parseInt(value); break;
+                case "--connections": options.connections = Integer.parseInt(value); break;
+                case "--duration": options.durationSeconds = Integer.parseInt(value); break;
+                case "--warmup": options.warmupSeconds = Integer.parseInt(value); break;
+                case "--id-ratio": options.idRatio = Double.parseDouble(value); break;
+                case "--zipf": options.zipfTheta = Double.parseDouble(value); break;
+                case "--max-id": options.maxStudentId = Integer.parseInt(value); break;
+                case "--range-width": options.rangeWidth = Float.parseFloat(value); break;
+                case "--seed": options.seed = Long.parseLong(value); break;
+                default: throw new IllegalArgumentException("未知参数: " + name);
+            }
+        }
+        if (options.connections <= 0 || options.durationSeconds <= 0 || options.warmupSeconds < 0) {
+            throw new IllegalArgumentException("连接数和压测时长必须为正数");
+        }
+        if (options.idRatio < 0 || options.idRatio > 1) {
+            throw new IllegalArgumentException("学号查询占比必须在 0 到 1 之间");
+        }
+        if (options.zipfTheta < 0 || options.zipfTheta >= 1) {
+            throw new IllegalArgumentException("Zipf 参数必须在 [0, 1) 之间");
+        }
+        if (options.rangeWidth < 0 || options.rangeWidth > 100) {
+            throw new IllegalArgumentException("成绩区间宽度必须在 0 到 100 之间");
+        }
+        return options;
+    }
+
+    /**
+     * 服务器闭环压测：N 个连接并发，每个连接收到响应后立即发送下一个请求（二进制协议），
+     * 统计吞吐量和延迟分布（p50/p99/p999）
+     * 学号和成绩区间都按 Zipf 分布选取，少数热点被反复查询；--zipf 0 为均匀分布
+     *
+     * 使用方法: java LoadGenerator [--host 主机] [--port 端口] [--connections 连接数]
+     *                             [--duration 秒] [--warmup 秒] [--id-ratio 学号查询占比]
+     *                             [--zipf 分布参数] [--max-id 最大学号] [--range-width 区间宽度] [--seed 随机种子]
+     * 例如: java LoadGenerator --connections 64 --id-ratio 0.8 --zipf 0.99
+     */
+    public static void main(String[] args) {
+        try {
+            Options options = parseOptions(args);
+
+            System.out.println("=== 服务器闭环压测 ===");
+            System.out.println("服务器: " + options.host + ":" + options.port);
+            System.out.println("连接数: " + options.connections);
+            System.out.println("预热: " + options.warmupSeconds + " 秒，统计: " + options.durationSeconds + " 秒");
+            System.out.printf("查询比例: 学号 %.0f%%，语文成绩范围（宽度 %.1f 分）%.0f%%%n",
+                options.idRatio * 100, options.rangeWidth, (1 - options.idRatio) * 100);
+            System.out.println("键分布: " + (options.zipfTheta == 0 ? "均匀分布" : "Zipf（theta = " + options.zipfTheta + "）")
+                               + "，学号范围 1-" + options.maxStudentId);
+            System.out.println();
+
+            // 每秒输出一次统计阶段的进度
+            AtomicLong completed = new AtomicLong();
+            Thread progress = new Thread(() -> {
+                long last = 0;
+                int second = 0;
+                try {
+                    while (true) {
+                        Thread.sleep(1000);
+                        second++;
+                        long now = completed.get();
+                        if (now > last) {
+                            System.out.println("  第 " + second + " 秒: " + (now - last) + " 次/秒");
+                        }
+                        last = now;
+                    }
+                } catch (InterruptedException e) {
+                    // 压测结束
+                }
+            });
+            progress.setDaemon(true);
+            progress.start();
+
+            List<WorkerResult> results = run(options, completed);
+            progress.interrupt();
+
+            LatencyHistogram[] histograms = {new LatencyHistogram(), new LatencyHistogram()};
+            LatencyHistogram total = new LatencyHistogram();
+            long records = 0;
+            long errors = 0;
+            int failed = 0;
+            for (WorkerResult result : results) {
+                for (int op = 0; op < histograms.length; op++) {
+                    histograms[op].add(result.histograms[op]);
+                    total.add(result.histograms[op]);
+                }
+                records += result.records;
+                errors += result.errors;
+                if (result.failure != null) {
+                    if (failed == 0) {
+                        System.err.println("连接失败: " + result.failure.getMessage());
+                    }
+                    failed++;
+                }
+            }
+
+            double seconds = options.durationSeconds;
+            System.out.println("\n=== 压测结果（统计阶段 " + options.durationSeconds + " 秒）===");
+            for (int op = 0; op < histograms.length; op++) {
+                if (histograms[op].getTotalCount() > 0) {
+                    printHistogram(OP_NAMES[op], histograms[op], seconds);
+                }
+            }
+            printHistogram("全部", total, seconds);
+            System.out.println("返回记录数: " + records + "，错误响应: " + errors
+                               + (failed > 0 ? "，失败连接: " + failed : ""));
+
+        } catch (IllegalArgumentException e) {
+            System.err.println("错误: " + e.getMessage());
+            System.err.println("使用方法: java LoadGenerator [--host 主机] [--port 端口] [--connections 连接数] [--duration 秒]"
+                               + " [--warmup 秒] [--id-ratio 学号查询占比] [--zipf 分布参数] [--max-id 最大学号]"
+                               + " [--range-width 区间宽度] [--seed 随机种子]");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
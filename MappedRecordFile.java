@@ -0,0 +1,55 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * 内存映射的定长记录文件（dat1、dat2 共用，每条记录 20 字节）
+ * 按段映射，单个 MappedByteBuffer 不超过 2GB，因此支持数亿条记录；
+ * 只使用绝对位置读取，多个线程可以共享同一个映射
+ */
+public class MappedRecordFile {
+
+    // 每条记录大小：1个int + 4个float = 20字节（dat1、dat2、增量文件和二进制协议都使用这一记录格式）
+    static final int RECORD_SIZE = 20;
+
+    // 每段映射的记录数（约 640MB）
+    static final int RECORDS_PER_SEGMENT = 1 << 25;
+
+    private final ByteBuffer[] segments;
+    private final long recordCount;
+
+    public MappedRecordFile(FileChannel channel) throws IOException {
+        recordCount = channel.size() / RECORD_SIZE;
+        int segmentCount = (int) ((recordCount + RECORDS_PER_SEGMENT - 1) / RECORDS_PER_SEGMENT);
+        segments = new ByteBuffer[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            long firstRecord = (long) i * RECORDS_PER_SEGMENT;
+            long count = Math.min(RECORDS_PER_SEGMENT, recordCount - firstRecord);
+            segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, firstRecord * RECORD_SIZE, count * RECORD_SIZE);
+        }
+    }
+
+    public long getRecordCount() {
+        return recordCount;
+    }
+
+    // 第 index 条记录所在的段
+    ByteBuffer segment(long index) {
+        return segments[(int) (index / RECORDS_PER_SEGMENT)];
+    }
+
+    // 第 index 条记录在所在段中的字节偏移
+    static int offsetInSegment(long index) {
+        return (int) (index % RECORDS_PER_SEGMENT) * RECORD_SIZE;
+    }
+
+    // 从第 index 条记录开始，所在段中剩余的记录数
+    long recordsLeftInSegment(long index) {
+        return Math.min(RECORDS_PER_SEGMENT - index % RECORDS_PER_SEGMENT, recordCount - index);
+    }
+
+    // 读取第 index 条记录的学号
+    int idAt(long index) {
+        return segment(index).getInt(offsetInSegment(index));
+    }
+}
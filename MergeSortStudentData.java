@@ -1,76 +1,70 @@
 import java.io.*;
 import java.nio.ByteBuffer;
-import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 public class MergeSortStudentData {
 
-    // 学生数据类
-    static class Student {
-        int studentId;           // 学号
-        float chineseScore;      // 语文成绩
-        float mathScore;         // 数学成绩
-        float englishScore;      // 英语成绩
-        float comprehensiveScore; // 综合成绩
+    // 排序方式：单线程归并排序（原实现）
+    static final int SORT_MERGE = 0;
+    // 排序方式：Fork/Join 并行归并排序
+    static final int SORT_PARALLEL_MERGE = 1;
+    // 排序方式：按十分之一分计数排序（输入须按学号排序，否则退回归并排序）
+    static final int SORT_COUNTING = 2;
 
-        public Student(int studentId, float chineseScore, float mathScore,
-                      float englishScore, float comprehensiveScore) {
-            this.studentId = studentId;
-            this.chineseScore = chineseScore;
-            this.mathScore = mathScore;
-            this.englishScore = englishScore;
-            this.comprehensiveScore = comprehensiveScore;
-        }
+    // 计数排序：成绩的十分之一分取值范围上限（超过时退回归并排序）
+    private static final int MAX_COUNTING_RANGE = 1 << 16;
 
-        // 将学生信息转换为字节数组
-        // 1个int(4字节) + 4个float(每个4字节) = 20字节
-        public byte[] toByteArray() {
-            ByteBuffer buffer = ByteBuffer.allocate(20);
-            buffer.putInt(studentId);
-            buffer.putFloat(chineseScore);
-            buffer.putFloat(mathScore);
-            buffer.putFloat(englishScore);
-            buffer.putFloat(comprehensiveScore);
-            return buffer.array();
-        }
-    }
+    // 并行归并排序：长度小于该值的区间使用插入排序
+    private static final int INSERTION_SORT_THRESHOLD = 32;
+
+    // 并行归并排序：长度小于该值的区间不再拆分成并行任务
+    private static final int PARALLEL_THRESHOLD = 1 << 13;
+
+    // 外部排序时每条记录在内存中的估算大小（5列共20字节 + 下标数组4字节 + 归并临时数组4字节）
+    private static final int ESTIMATED_RECORD_BYTES = 28;
+
+    // 外部排序时临时文件读写缓冲区的最小值
+    private static final int MIN_IO_BUFFER_SIZE = 64 * 1024;
 
     /**
      * 归并排序实现
      * 按照语文成绩从高到低排序，若成绩相同则按学号从小到大排序
+     * 学生数据按列存储在 students 中，排序的对象是记录下标数组 order
      */
-    private static void mergeSort(Student[] students, int left, int right) {
+    static void mergeSort(StudentColumns students, int[] order, int left, int right) {
         if (left < right) {
             int mid = left + (right - left) / 2;
 
             // 递归排序左半部分
-            mergeSort(students, left, mid);
+            mergeSort(students, order, left, mid);
 
             // 递归排序右半部分
-            mergeSort(students, mid + 1, right);
+            mergeSort(students, order, mid + 1, right);
 
             // 合并两个有序部分
-            merge(students, left, mid, right);
+            merge(students, order, left, mid, right);
         }
     }
 
     /**
      * 合并两个有序数组
      */
-    private static void merge(Student[] students, int left, int mid, int right) {
+    private static void merge(StudentColumns students, int[] order, int left, int mid, int right) {
         // 创建临时数组
         int n1 = mid - left + 1;
         int n2 = right - mid;
 
-        Student[] leftArray = new Student[n1];
-        Student[] rightArray = new Student[n2];
+        int[] leftArray = new int[n1];
+        int[] rightArray = new int[n2];
 
         // 复制数据到临时数组
         for (int i = 0; i < n1; i++) {
-            leftArray[i] = students[left + i];
+            leftArray[i] = order[left + i];
         }
         for (int j = 0; j < n2; j++) {
-            rightArray[j] = students[mid + 1 + j];
+            rightArray[j] = order[mid + 1 + j];
         }
 
         // 合并临时数组
@@ -79,11 +73,11 @@ public class MergeSortStudentData {
 
         while (i < n1 && j < n2) {
             // 比较规则：语文成绩从高到低，相同则学号从小到大
-            if (compareStudents(leftArray[i], rightArray[j]) <= 0) {
-                students[k] = leftArray[i];
+            if (compareStudents(students, leftArray[i], rightArray[j]) <= 0) {
+                order[k] = leftArray[i];
                 i++;
             } else {
-                students[k] = rightArray[j];
+                order[k] = rightArray[j];
                 j++;
             }
             k++;
@@ -91,30 +85,177 @@ public class MergeSortStudentData {
 
         // 复制剩余元素
         while (i < n1) {
-            students[k] = leftArray[i];
+            order[k] = leftArray[i];
             i++;
             k++;
         }
 
         while (j < n2) {
-            students[k] = rightArray[j];
+            order[k] = rightArray[j];
             j++;
             k++;
         }
     }
 
     /**
-     * 比较两个学生
-     * 返回负数表示 s1 应该排在 s2 前面
+     * 并行归并排序
+     * 只分配一个与原数组等长的辅助数组，每层递归交替使用原数组和辅助数组作为源和目标，
+     * 避免每次合并都创建临时数组；短区间使用插入排序；大区间拆分为 Fork/Join 任务并行排序。
+     * 合并时相等元素取左半部分，与 mergeSort 一样是稳定排序，结果完全一致
+     */
+    static void parallelMergeSort(StudentColumns students, int[] order) {
+        if (order.length < 2) {
+            return;
+        }
+        int[] scratch = order.clone();
+        ForkJoinPool.commonPool().invoke(new MergeSortTask(students, scratch, order, 0, order.length));
+    }
+
+    // 并行归并排序任务：把 src[low, high) 排序后写到 dest[low, high)
+    // 调用前 src 与 dest 在该区间内容相同
+    private static class MergeSortTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final StudentColumns students;
+        private final int[] src;
+        private final int[] dest;
+        private final int low;
+        private final int high;
+
+        MergeSortTask(StudentColumns students, int[] src, int[] dest, int low, int high) {
+            this.students = students;
+            this.src = src;
+            this.dest = dest;
+            this.low = low;
+            this.high = high;
+        }
+
+        @Override
+        protected void compute() {
+            if (high - low < PARALLEL_THRESHOLD) {
+                sortRange(students, src, dest, low, high);
+                return;
+            }
+
+            // 左右两半交换源和目标，排好序的两半落在 src 中
+            int mid = (low + high) >>> 1;
+            invokeAll(new MergeSortTask(students, dest, src, low, mid),
+                      new MergeSortTask(students, dest, src, mid, high));
+            mergeRange(students, src, dest, low, mid, high);
+        }
+    }
+
+    // 单线程版本：把 src[low, high) 排序后写到 dest[low, high)
+    private static void sortRange(StudentColumns students, int[] src, int[] dest, int low, int high) {
+        if (high - low < INSERTION_SORT_THRESHOLD) {
+            insertionSort(students, dest, low, high);
+            return;
+        }
+
+        int mid = (low + high) >>> 1;
+        sortRange(students, dest, src, low, mid);
+        sortRange(students, dest, src, mid, high);
+        mergeRange(students, src, dest, low, mid, high);
+    }
+
+    // 合并 src[low, mid) 和 src[mid, high) 两个有序区间到 dest[low, high)
+    private static void mergeRange(StudentColumns students, int[] src, int[] dest, int low, int mid, int high) {
+        // 两部分已经整体有序，直接复制
+        if (compareStudents(students, src[mid - 1], src[mid]) <= 0) {
+            System.arraycopy(src, low, dest, low, high - low);
+            return;
+        }
+
+        int i = low, j = mid;
+        for (int k = low; k < high; k++) {
+            if (j >= high || (i < mid && compareStudents(students, src[i], src[j]) <= 0)) {
+                dest[k] = src[i++];
+            } else {
+                dest[k] = src[j++];
+            }
+        }
+    }
+
+    // 对 order[low, high) 做插入排序（稳定）
+    private static void insertionSort(StudentColumns students, int[] order, int low, int high) {
+        for (int i = low + 1; i < high; i++) {
+            int current = order[i];
+            int j = i - 1;
+            while (j >= low && compareStudents(students, order[j], current) > 0) {
+                order[j + 1] = order[j];
+                j--;
+            }
+            order[j + 1] = current;
+        }
+    }
+
+    /**
+     * 计数排序（线性时间）
+     * 语文成绩都是一位小数，按十分之一分只有约 1001 个取值：第一遍统计每个成绩的人数并计算起始位置，
+     * 第二遍按 order 的顺序把下标放到对应成绩的位置上。计数排序是稳定的，
+     * 输入按学号从小到大排列时，相同成绩内自然按学号从小到大，结果与 mergeSort 完全一致
+     *
+     * @return false 表示输入不满足条件（未按学号排序、成绩不是一位小数或取值范围过大），order 保持不变
+     */
+    static boolean countingSort(StudentColumns students, int[] order) {
+        if (order.length < 2) {
+            return true;
+        }
+
+        // 检查输入顺序和成绩，并求成绩范围
+        int minTenths = Integer.MAX_VALUE;
+        int maxTenths = Integer.MIN_VALUE;
+        for (int i = 0; i < order.length; i++) {
+            if (i > 0 && students.studentIds[order[i - 1]] > students.studentIds[order[i]]) {
+                return false;
+            }
+            float score = students.chineseScores[order[i]];
+            long tenths = Math.round((double) score * 10);
+            if (tenths / 10f != score || Math.abs(tenths) > Integer.MAX_VALUE / 2) {
+                return false;
+            }
+            minTenths = Math.min(minTenths, (int) tenths);
+            maxTenths = Math.max(maxTenths, (int) tenths);
+        }
+        if (maxTenths - minTenths >= MAX_COUNTING_RANGE) {
+            return false;
+        }
+
+        // 第一遍：统计人数，成绩从高到低计算每个成绩的起始位置
+        int[] starts = new int[maxTenths - minTenths + 2];
+        for (int index : order) {
+            starts[maxTenths - (int) Math.round((double) students.chineseScores[index] * 10) + 1]++;
+        }
+        for (int i = 1; i < starts.length; i++) {
+            starts[i] += starts[i - 1];
+        }
+
+        // 第二遍：按原顺序放到对应位置
+        int[] sorted = new int[order.length];
+        for (int index : order) {
+            sorted[starts[maxTenths - (int) Math.round((double) students.chineseScores[index] * 10)]++] = index;
+        }
+        System.arraycopy(sorted, 0, order, 0, order.length);
+        return true;
+    }
+
+    /**
+     * 比较两个学生（students 中下标为 i 和 j 的记录）
+     * 返回负数表示 i 应该排在 j 前面
      * 规则：语文成绩从高到低，相同则学号从小到大
      */
-    private static int compareStudents(Student s1, Student s2) {
+    static int compareStudents(StudentColumns students, int i, int j) {
+        return compareStudents(students.studentIds[i], students.chineseScores[i],
+                               students.studentIds[j], students.chineseScores[j]);
+    }
+
+    static int compareStudents(int studentId1, float chineseScore1, int studentId2, float chineseScore2) {
         // 先比较语文成绩（从高到低）
-        if (s1.chineseScore != s2.chineseScore) {
-            return Float.compare(s2.chineseScore, s1.chineseScore); // 注意顺序，高分在前
+        if (chineseScore1 != chineseScore2) {
+            return Float.compare(chineseScore2, chineseScore1); // 注意顺序，高分在前
         }
         // 语文成绩相同，比较学号（从小到大）
-        return Integer.compare(s1.studentId, s2.studentId);
+        return Integer.compare(studentId1, studentId2);
     }
 
     /**
@@ -125,61 +266,54 @@ public class MergeSortStudentData {
      * @return 文件生成所需时间（单位：毫秒）
      */
     public static long sortAndWriteStudentData() throws IOException {
+        return sortAndWriteStudentData(SORT_MERGE);
+    }
+
+    /**
+     * 使用指定的排序方式生成数据文件"2353250-hw2.dat2"，各排序方式的输出完全一致
+     *
+     * @param sortStrategy 排序方式（SORT_MERGE、SORT_PARALLEL_MERGE 或 SORT_COUNTING）
+     * @return 文件生成所需时间（单位：毫秒）
+     */
+    public static long sortAndWriteStudentData(int sortStrategy) throws IOException {
+        return sortAndWriteStudentData(new File("."), sortStrategy);
+    }
+
+    /**
+     * 读取 dataDir 中的"student_data.csv"，使用指定的排序方式在同一目录下生成"2353250-hw2.dat2"
+     *
+     * @param sortStrategy 排序方式（SORT_MERGE、SORT_PARALLEL_MERGE 或 SORT_COUNTING）
+     * @return 文件生成所需时间（单位：毫秒）
+     */
+    public static long sortAndWriteStudentData(File dataDir, int sortStrategy) throws IOException {
         // 记录开始时间
         long startTime = System.currentTimeMillis();
 
         // 读取学生数据
-        List<Student> studentList = new ArrayList<>();
-
-        // 读取CSV文件
-        try (BufferedReader br = new BufferedReader(
-                new InputStreamReader(new FileInputStream("student_data.csv"), StandardCharsets.UTF_8))) {
-
-            // 跳过表头（可能有BOM）
-            String headerLine = br.readLine();
-
-            String line;
-            while ((line = br.readLine()) != null) {
-                // 解析CSV行
-                String[] fields = line.split(",");
-                if (fields.length >= 5) {
-                    try {
-                        int studentId = Integer.parseInt(fields[0].trim());
-                        float chineseScore = Float.parseFloat(fields[1].trim());
-                        float mathScore = Float.parseFloat(fields[2].trim());
-                        float englishScore = Float.parseFloat(fields[3].trim());
-                        float comprehensiveScore = Float.parseFloat(fields[4].trim());
-
-                        studentList.add(new Student(studentId, chineseScore, mathScore,
-                                                   englishScore, comprehensiveScore));
-                    } catch (NumberFormatException e) {
-                        System.err.println("跳过无效行: " + line);
-                    }
-                }
-            }
-        }
+        StudentColumns students = StudentColumns.readCsv(new File(dataDir, "student_data.csv").getPath());
 
-        // 转换为数组以便进行归并排序
-        Student[] students = studentList.toArray(new Student[0]);
+        // 对记录下标排序
+        int[] order = students.identityOrder();
 
-        // 使用归并排序算法排序
-        mergeSort(students, 0, students.length - 1);
+        // 计数排序的条件不满足时退回归并排序
+        if (sortStrategy == SORT_COUNTING && !countingSort(students, order)) {
+            System.out.println("输入未按学号排序或成绩不是一位小数，改用归并排序");
+            sortStrategy = SORT_MERGE;
+        }
+
+        // 使用归并排序算法排序（计数排序已在上面完成）
+        if (sortStrategy == SORT_PARALLEL_MERGE) {
+            parallelMergeSort(students, order);
+        } else if (sortStrategy != SORT_COUNTING) {
+            mergeSort(students, order, 0, order.length - 1);
+        }
 
         // 输出文件名
         String outputFile = "2353250-hw2.dat2";
 
-        // 打开二进制文件进行写入
-        try (FileOutputStream fos = new FileOutputStream(outputFile);
-             BufferedOutputStream bos = new BufferedOutputStream(fos)) {
-
-            // 遍历每个学生，将其转换为字节数组并写入
-            for (Student student : students) {
-                byte[] byteArray = student.toByteArray();
-                bos.write(byteArray);
-            }
-
-            // 确保所有数据写入磁盘
-            bos.flush();
+        // 按排序后的顺序把记录编码写入二进制文件
+        try (FileOutputStream fos = new FileOutputStream(new File(dataDir, outputFile))) {
+            students.writeRecords(order, fos);
         }
 
         // 记录结束时间
@@ -190,27 +324,194 @@ public class MergeSortStudentData {
 
         // 打印结果
         System.out.println("文件生成完成: " + outputFile);
-        System.out.println("总记录数: " + students.length);
+        System.out.println("总记录数: " + students.size());
         System.out.println("排序规则: 语文成绩从高到低，相同成绩按学号从小到大");
+        System.out.println("排序方式: " + (sortStrategy == SORT_COUNTING ? "计数排序"
+            : sortStrategy == SORT_PARALLEL_MERGE
+            ? "并行归并排序（" + ForkJoinPool.commonPool().getParallelism() + " 个工作线程）" : "归并排序"));
         System.out.println("每条记录大小: 20字节 (1个int + 4个float)");
-        System.out.println("文件总大小: " + (students.length * 20) + " 字节");
+        System.out.println("文件总大小: " + ((long) students.size() * 20) + " 字节");
         System.out.println("生成耗时: " + elapsedTime + " 毫秒");
 
         // 打印前10条数据作为验证
         System.out.println("\n前10条数据（验证排序结果）：");
         System.out.println("学号\t语文成绩\t数学成绩\t英语成绩\t综合成绩");
-        for (int i = 0; i < Math.min(10, students.length); i++) {
-            Student s = students[i];
-            System.out.printf("%d\t%.1f\t%.1f\t%.1f\t%.1f\n",
-                s.studentId, s.chineseScore, s.mathScore, s.englishScore, s.comprehensiveScore);
+        for (int i = 0; i < Math.min(10, order.length); i++) {
+            System.out.println(students.format(order[i]));
         }
 
         return elapsedTime;
     }
 
+    /**
+     * 外部归并排序版本：数据量超过内存时使用
+     * 第一阶段：按内存预算分批读取CSV，每批用归并排序排好后写入一个临时文件（有序段）
+     * 第二阶段：用小顶堆对所有有序段做 k 路归并，写到数据文件"2353250-hw2.dat2"
+     * 排序规则与 sortAndWriteStudentData 相同，输出文件完全一致
+     *
+     * @param memoryBudgetBytes 内存预算（字节），决定每个有序段的记录数和归并时的缓冲区大小
+     * @return 文件生成所需时间（单位：毫秒）
+     */
+    public static long sortAndWriteStudentDataExternal(long memoryBudgetBytes) throws IOException {
+        // 记录开始时间
+        long startTime = System.currentTimeMillis();
+
+        // 每个有序段最多容纳的记录数
+        int recordsPerRun = (int) Math.max(1, Math.min(Integer.MAX_VALUE - 8, memoryBudgetBytes / ESTIMATED_RECORD_BYTES));
+
+        File runDirectory = java.nio.file.Files.createTempDirectory("student-sort-runs").toFile();
+        List<File> runFiles = new ArrayList<>();
+
+        try {
+            // 第一阶段：生成有序段（CSV按块并行解析，按文件顺序依次放入当前有序段）
+            StudentColumns run = new StudentColumns(Math.min(recordsPerRun, 1 << 20));
+            long[] recordCount = new long[1];
+            StudentCsvParser.parse("student_data.csv", chunk -> {
+                for (int i = 0; i < chunk.size(); i++) {
+                    if (run.size() == recordsPerRun) {
+                        runFiles.add(writeSortedRun(run, runDirectory, runFiles.size()));
+                        run.clear();
+                    }
+                    run.add(chunk.studentIds[i], chunk.chineseScores[i], chunk.mathScores[i],
+                            chunk.englishScores[i], chunk.comprehensiveScores[i]);
+                }
+                recordCount[0] += chunk.size();
+            });
+            if (run.size() > 0) {
+                runFiles.add(writeSortedRun(run, runDirectory, runFiles.size()));
+            }
+            long totalRecords = recordCount[0];
+
+            long runTime = System.currentTimeMillis() - startTime;
+
+            // 第二阶段：k 路归并，每个有序段和输出文件平分内存预算作为缓冲区
+            String outputFile = "2353250-hw2.dat2";
+            int bufferSize = (int) Math.max(MIN_IO_BUFFER_SIZE,
+                Math.min(Integer.MAX_VALUE - 8, memoryBudgetBytes / (runFiles.size() + 1)));
+            mergeRuns(runFiles, outputFile, bufferSize);
+
+            // 记录结束时间
+            long endTime = System.currentTimeMillis();
+
+            // 计算耗时（毫秒）
+            long elapsedTime = endTime - startTime;
+
+            // 打印结果
+            System.out.println("文件生成完成: " + outputFile);
+            System.out.println("总记录数: " + totalRecords);
+            System.out.println("排序规则: 语文成绩从高到低，相同成绩按学号从小到大");
+            System.out.println("排序方式: 外部归并排序（内存预算 " + memoryBudgetBytes / (1024 * 1024) + " MB）");
+            System.out.println("有序段数量: " + runFiles.size() + " (每段最多 " + recordsPerRun + " 条记录)");
+            System.out.println("归并缓冲区大小: " + bufferSize / 1024 + " KB");
+            System.out.println("文件总大小: " + (totalRecords * 20) + " 字节");
+            System.out.println("生成有序段耗时: " + runTime + " 毫秒");
+            System.out.println("生成耗时: " + elapsedTime + " 毫秒");
+
+            return elapsedTime;
+        } finally {
+            // 删除临时文件
+            for (File runFile : runFiles) {
+                runFile.delete();
+            }
+            runDirectory.delete();
+        }
+    }
+
+    /**
+     * 对一批记录排序并写入临时文件
+     */
+    private static File writeSortedRun(StudentColumns run, File runDirectory, int runIndex) throws IOException {
+        int[] order = run.identityOrder();
+        parallelMergeSort(run, order);
+
+        File runFile = new File(runDirectory, "run-" + runIndex + ".bin");
+        try (BufferedOutputStream bos = new BufferedOutputStream(new FileOutputStream(runFile), MIN_IO_BUFFER_SIZE * 16)) {
+            run.writeRecords(order, bos);
+        }
+        return runFile;
+    }
+
+    // 归并时每个有序段的读取游标，当前记录保存在可复用的20字节数组中
+    private static class RunCursor {
+        final DataInputStream input;
+        final int runIndex;
+        long remaining;
+        final byte[] record = new byte[20];
+        final ByteBuffer recordView = ByteBuffer.wrap(record);
+        int studentId;
+        float chineseScore;
+
+        RunCursor(File runFile, int runIndex, int bufferSize) throws IOException {
+            this.input = new DataInputStream(new BufferedInputStream(new FileInputStream(runFile), bufferSize));
+            this.runIndex = runIndex;
+            this.remaining = runFile.length() / 20;
+        }
+
+        // 读取下一条记录，读完返回 false
+        boolean advance() throws IOException {
+            if (remaining == 0) {
+                return false;
+            }
+            remaining--;
+            input.readFully(record);
+            studentId = recordView.getInt(0);
+            chineseScore = recordView.getFloat(4);
+            return true;
+        }
+    }
+
+    /**
+     * 用小顶堆对所有有序段做 k 路归并
+     * 比较规则相同时按段的先后顺序输出，保证与内存归并排序的结果一致
+     */
+    private static void mergeRuns(List<File> runFiles, String outputFile, int bufferSize) throws IOException {
+        PriorityQueue<RunCursor> heap = new PriorityQueue<>(Math.max(1, runFiles.size()), (a, b) -> {
+            int cmp = compareStudents(a.studentId, a.chineseScore, b.studentId, b.chineseScore);
+            return cmp != 0 ? cmp : Integer.compare(a.runIndex, b.runIndex);
+        });
+        List<RunCursor> cursors = new ArrayList<>();
+
+        try (BufferedOutputStream bos = new BufferedOutputStream(new FileOutputStream(outputFile), bufferSize)) {
+            for (int i = 0; i < runFiles.size(); i++) {
+                RunCursor cursor = new RunCursor(runFiles.get(i), i, bufferSize);
+                cursors.add(cursor);
+                if (cursor.advance()) {
+                    heap.add(cursor);
+                }
+            }
+
+            while (!heap.isEmpty()) {
+                RunCursor cursor = heap.poll();
+                bos.write(cursor.record);
+                if (cursor.advance()) {
+                    heap.add(cursor);
+                }
+            }
+
+            // 确保所有数据写入磁盘
+            bos.flush();
+        } finally {
+            for (RunCursor cursor : cursors) {
+                cursor.input.close();
+            }
+        }
+    }
+
     public static void main(String[] args) {
         try {
-            long elapsedTime = sortAndWriteStudentData();
+            // 指定 external 参数时使用外部归并排序，可选第二个参数为内存预算（MB，默认256）
+            // 指定 parallel 参数时使用并行归并排序，指定 counting 参数时使用计数排序
+            long elapsedTime;
+            if (args.length > 0 && args[0].equals("external")) {
+                long memoryBudgetMb = args.length > 1 ? Long.parseLong(args[1]) : 256;
+                elapsedTime = sortAndWriteStudentDataExternal(memoryBudgetMb * 1024 * 1024);
+            } else if (args.length > 0 && args[0].equals("parallel")) {
+                elapsedTime = sortAndWriteStudentData(SORT_PARALLEL_MERGE);
+            } else if (args.length > 0 && args[0].equals("counting")) {
+                elapsedTime = sortAndWriteStudentData(SORT_COUNTING);
+            } else {
+                elapsedTime = sortAndWriteStudentData();
+            }
             System.out.println("\n返回值: " + elapsedTime + " 毫秒");
         } catch (IOException e) {
             System.err.println("错误: " + e.getMessage());
@@ -218,4 +519,3 @@ public class MergeSortStudentData {
         }
     }
 }
-
@@ -0,0 +1,136 @@
+import java.io.*;
+import java.util.*;
+
+/**
+ * 按学号范围把数据分成 N 片，为每片生成一组数据文件和分片映射
+ *
+ * 只读取并解析一次"student_data.csv"，按学号排序后把记录数平均分成 N 段（相同学号不会跨段），
+ * 每段写到 <输出目录>/shard-<i>/ 下：dat1、dat2、idx（与 BuildAllData 相同）以及数学、英语、综合的二级索引。
+ * 第一片和最后一片的学号范围分别延伸到 int 的最小值和最大值，之后新增的学号也有所属的分片。
+ * 分片映射写到 <输出目录>/shards.txt（见 ShardMap），第 i 片的端口为 起始端口 + i。
+ */
+public class PartitionStudentData {
+
+    // 默认输出目录、主机和第一个分片的端口
+    static final String DEFAULT_OUTPUT_DIR = "shards";
+    static final String DEFAULT_HOST = "localhost";
+    static final int DEFAULT_BASE_PORT = 12346;
+
+    /**
+     * 生成分片数据文件和分片映射
+     *
+     * @param shardCount 分片数
+     * @param outputDir 输出目录
+     * @param host 各分片服务器的主机名（写入分片映射）
+     * @param basePort 第一个分片的端口
+     * @return 分片映射
+     */
+    public static ShardMap partitionStudentData(int shardCount, File outputDir, String host,
+                                                int basePort) throws IOException {
+        long startTime = System.currentTimeMillis();
+
+        // 1. 解析CSV并按学号排序
+        String csvFile = "student_data.csv";
+        StudentColumns students = StudentColumns.readCsv(csvFile);
+        int[] dat1Order = students.orderById();
+        int recordCount = dat1Order.length;
+        if (shardCount < 1 || shardCount > recordCount) {
+            throw new IllegalArgumentException("分片数必须在 1 到记录数（" + recordCount + "）之间");
+        }
+        long parseTime = System.currentTimeMillis() - startTime;
+
+        // 2. 确定分段位置：平均分段后向后移动，使相同学号留在同一段
+        int[] bounds = new int[shardCount + 1];
+        bounds[shardCount] = recordCount;
+        for (int i = 1; i < shardCount; i++) {
+            int bound = Math.max((int) ((long) recordCount * i / shardCount), bounds[i - 1]);
+            while (bound > 0 && bound < recordCount
+                   && students.studentIds[dat1Order[bound]] == students.studentIds[dat1Order[bound - 1]]) {
+                bound++;
+            }
+            bounds[i] = bound;
+        }
+        for (int i = 0; i < shardCount; i++) {
+            if (bounds[i] >= bounds[i + 1]) {
+                throw new IOException("相同学号的记录过多，无法分成 " + shardCount + " 片");
+            }
+        }
+
+        // 3. 逐片写出数据文件
+        if (!outputDir.exists() && !outputDir.mkdirs()) {
+            throw new IOException("无法创建输出目录: " + outputDir.getPath());
+        }
+        List<ShardMap.Shard> shards = new ArrayList<>();
+        for (int i = 0; i < shardCount; i++) {
+            long shardStart = System.currentTimeMillis();
+            File shardDir = new File(outputDir, "shard-" + i);
+            if (!shardDir.exists() && !shardDir.mkdirs()) {
+                throw new IOException("无法创建分片目录: " + shardDir.getPath());
+            }
+
+            int[] shardDat1Order = Arrays.copyOfRange(dat1Order, bounds[i], bounds[i + 1]);
+            int[] shardDat2Order = shardDat1Order.clone();
+            BuildAllData.sortForDat2(students, shardDat2Order);
+            BuildAllData.writeDataFiles(students, shardDat1Order, shardDat2Order, shardDir);
+
+            File dat1File = new File(shardDir, BuildAllData.DAT1_FILE);
+            for (int field = QueryBySubjectScoreRange.FIELD_MATH; field < QueryBySubjectScoreRange.FIELD_NAMES.length; field++) {
+                BuildSecondaryIndex.writeSecondaryIndex(field, dat1File,
+                    new File(shardDir, QueryBySubjectScoreRange.indexFileName(field)));
+            }
+
+            int minId = i == 0 ? Integer.MIN_VALUE : students.studentIds[shardDat1Order[0]];
+            int maxId = i == shardCount - 1 ? Integer.MAX_VALUE : students.studentIds[dat1Order[bounds[i + 1]]] - 1;
+            ShardMap.Shard shard = new ShardMap.Shard(i, minId, maxId, host, basePort + i, shardDir.getPath());
+            shards.add(shard);
+
+            System.out.println(shard + ": " + shardDat1Order.length + " 条记录（学号 "
+                               + students.studentIds[shardDat1Order[0]] + " ~ "
+                               + students.studentIds[shardDat1Order[shardDat1Order.length - 1]] + "），耗时 "
+                               + (System.currentTimeMillis() - shardStart) + " 毫秒");
+        }
+
+        ShardMap map = new ShardMap(shards);
+        File mapFile = new File(outputDir, ShardMap.FILE_NAME);
+        map.save(mapFile);
+
+        long endTime = System.currentTimeMillis();
+        System.out.println("\n=== 分片数据生成完成 ===");
+        System.out.println("总记录数: " + recordCount + "，分片数: " + shardCount);
+        System.out.println("解析CSV: " + parseTime + " 毫秒");
+        System.out.println("分片映射: " + mapFile.getPath());
+        System.out.println("生成耗时: " + (endTime - startTime) + " 毫秒");
+        return map;
+    }
+
+    public static void main(String[] args) {
+        try {
+            if (args.length < 1 || args.length > 4) {
+                System.out.println("使用方法: java PartitionStudentData <分片数> [输出目录] [起始端口] [主机]");
+                System.out.println("例如: java PartitionStudentData 3 shards 12346");
+                System.out.println("默认输出目录 " + DEFAULT_OUTPUT_DIR + "，起始端口 " + DEFAULT_BASE_PORT
+                                   + "，主机 " + DEFAULT_HOST);
+                return;
+            }
+
+            int shardCount = Integer.parseInt(args[0]);
+            File outputDir = new File(args.length > 1 ? args[1] : DEFAULT_OUTPUT_DIR);
+            int basePort = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_BASE_PORT;
+            String host = args.length > 3 ? args[3] : DEFAULT_HOST;
+
+            ShardMap map = partitionStudentData(shardCount, outputDir, host, basePort);
+
+            System.out.println("\n启动各分片服务器:");
+            for (ShardMap.Shard shard : map.getShards()) {
+                System.out.println("  java Server " + shard.dataDir + " --port " + shard.port);
+            }
+            System.out.println("然后运行: java ShardRouter " + new File(outputDir, ShardMap.FILE_NAME).getPath());
+        } catch (NumberFormatException e) {
+            System.err.println("参数错误: 分片数和端口必须是整数");
+            System.err.println("使用方法: java PartitionStudentData <分片数> [输出目录] [起始端口] [主机]");
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("错误: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+}
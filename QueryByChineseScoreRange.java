@@ -1,4 +1,7 @@
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
 
 public class QueryByChineseScoreRange {
@@ -18,14 +21,32 @@ public class QueryByChineseScoreRange {
         }
     }
 
-    // 索引节点类
-    static class IndexNode {
-        int chineseScoreInt;  // 语文成绩整数值
-        long bytePosition;    // 文件中的字节位置
+    /**
+     * 语文成绩索引（B+树索引文件，每个不同的语文成绩值一个条目，按内存映射访问）
+     * 键为成绩的可排序编码（成绩越高键越小，见 QueryBySubjectScoreRange.encodeScore），
+     * 因此条目顺序与 dat2 中的记录顺序一致。每个条目记录该成绩第一个学生在 dat2 中的字节位置，
+     * 以及从文件开头到该成绩最后一个学生为止的累计记录数和语文成绩总和
+     */
+    static class ScoreIndex {
+        // 条目值：long 字节位置 | long 累计记录数 | double 累计成绩总和
+        static final int VALUE_SIZE = 24;
+
+        final BPlusTreeIndex tree;
 
-        public IndexNode(int chineseScoreInt, long bytePosition) {
-            this.chineseScoreInt = chineseScoreInt;
-            this.bytePosition = bytePosition;
+        ScoreIndex(BPlusTreeIndex tree) {
+            this.tree = tree;
+        }
+
+        long position(long slot) {
+            return tree.longValue(slot, 0);
+        }
+
+        long cumulativeCount(long slot) {
+            return tree.longValue(slot, 8);
+        }
+
+        double cumulativeSum(long slot) {
+            return tree.doubleValue(slot, 16);
         }
     }
 
@@ -33,8 +54,11 @@ public class QueryByChineseScoreRange {
     static class QueryResult {
         int studentCount;
         double averageScore;
+        double totalScore;    // 成绩总和（合并增量数据时用于重新计算平均成绩）
         long queryTime;
-        List<Student> students;
+        List<Student> students;  // 只统计人数和平均成绩时为 null
+        long startBytePos;    // 范围内第一条记录的字节位置
+        long endBytePos;      // 范围内最后一条记录之后的字节位置
 
         public QueryResult(int studentCount, double averageScore, long queryTime, List<Student> students) {
             this.studentCount = studentCount;
@@ -45,31 +69,19 @@ public class QueryByChineseScoreRange {
     }
 
     /**
-     * 从索引文件中读取所有索引节点
+     * 打开索引文件（只读取文件头，节点按需通过内存映射访问）
      */
-    private static List<IndexNode> loadIndexFile(String indexFile) throws IOException {
-        List<IndexNode> indexNodes = new ArrayList<>();
-
-        try (FileInputStream fis = new FileInputStream(indexFile);
-             DataInputStream dis = new DataInputStream(new BufferedInputStream(fis))) {
-
-            // 读取元数据
-            int nodeCount = dis.readInt();
-            int treeHeight = dis.readInt();
-
-            System.out.println("索引文件信息:");
-            System.out.println("  节点总数: " + nodeCount);
-            System.out.println("  树高度: " + treeHeight);
-
-            // 读取所有节点
-            for (int i = 0; i < nodeCount; i++) {
-                int scoreInt = dis.readInt();
-                long position = dis.readLong();
-                indexNodes.add(new IndexNode(scoreInt, position));
-            }
+    static ScoreIndex loadIndexFile(String indexFile) throws IOException {
+        BPlusTreeIndex tree = new BPlusTreeIndex(new File(indexFile));
+        if (tree.getKeyType() != BPlusTreeIndex.KEY_SCORE_DESC || tree.getValueSize() != ScoreIndex.VALUE_SIZE) {
+            throw new IOException("索引文件格式已过期，请重新运行 BuildIndexTree: " + indexFile);
         }
 
-        return indexNodes;
+        System.out.println("索引文件信息:");
+        System.out.println("  节点总数: " + tree.getEntryCount());
+        System.out.println("  树高度: " + tree.getTreeHeight());
+
+        return new ScoreIndex(tree);
     }
 
     /**
@@ -80,10 +92,35 @@ public class QueryByChineseScoreRange {
      * @return 查询结果
      */
     public static QueryResult queryByChineseScoreRange(float minScore, float maxScore) throws IOException {
-        long startTime = System.currentTimeMillis();
+        return queryByChineseScoreRange(minScore, maxScore, true);
+    }
 
+    /**
+     * 根据语文成绩范围查询学生信息
+     *
+     * @param minScore 最小语文成绩（包含）
+     * @param maxScore 最大语文成绩（包含）
+     * @param includeStudents false 时只统计人数和平均成绩，不返回学生列表
+     * @return 查询结果
+     */
+    public static QueryResult queryByChineseScoreRange(float minScore, float maxScore,
+                                                       boolean includeStudents) throws IOException {
+        return queryByChineseScoreRange(minScore, maxScore, includeStudents, false);
+    }
+
+    /**
+     * 根据语文成绩范围查询学生信息
+     *
+     * @param minScore 最小语文成绩（包含）
+     * @param maxScore 最大语文成绩（包含）
+     * @param includeStudents false 时只统计人数和平均成绩，不返回学生列表
+     * @param compact true 时读取紧凑格式文件"2353250-hw2.dat2c"（由 WriteCompactData 生成）
+     * @return 查询结果
+     */
+    public static QueryResult queryByChineseScoreRange(float minScore, float maxScore, boolean includeStudents,
+                                                       boolean compact) throws IOException {
         String indexFile = "2353250-hw2.idx";
-        String datFile = "2353250-hw2.dat2";
+        String datFile = compact ? "2353250-hw2.dat2c" : "2353250-hw2.dat2";
 
         // 检查文件是否存在
         if (!new File(indexFile).exists()) {
@@ -94,105 +131,177 @@ public class QueryByChineseScoreRange {
         }
 
         // 1. 读取索引文件
-        List<IndexNode> indexNodes = loadIndexFile(indexFile);
-
-        // 2. 计算成绩整数值范围
-        // 最大小于等于 minScore 的整数
-        int minScoreInt = (int) minScore;
-        // 最小大于等于 maxScore 的整数
-        int maxScoreInt = (int) Math.ceil(maxScore);
+        ScoreIndex index = loadIndexFile(indexFile);
 
         System.out.println("\n查询范围:");
         System.out.println("  输入成绩范围: [" + minScore + ", " + maxScore + "]");
-        System.out.println("  整数范围: [" + minScoreInt + ", " + maxScoreInt + "]");
-
-        // 3. 创建索引映射表 (成绩整数值 -> 字节位置)
-        Map<Integer, Long> scoreToPositionMap = new HashMap<>();
-        for (IndexNode node : indexNodes) {
-            scoreToPositionMap.put(node.chineseScoreInt, node.bytePosition);
-        }
-
-        // 4. 从索引中找到对应的字节位置范围
-        long startBytePos = 0; // 默认从文件开头开始
-        long endBytePos = -1;  // 默认读到文件末尾
-
-        // 找到第一个 <= maxScoreInt 的整数对应的位置作为起始位置
-        // 由于文件是按成绩从高到低排序，我们需要从最高的可能成绩开始查找
-        for (int score = 100; score >= 0; score--) {
-            if (score <= maxScoreInt && scoreToPositionMap.containsKey(score)) {
-                startBytePos = scoreToPositionMap.get(score);
-                break;
-            }
-        }
 
-        // 找到第一个 < minScoreInt 的整数对应的位置作为结束位置
-        for (int score = minScoreInt - 1; score >= 0; score--) {
-            if (scoreToPositionMap.containsKey(score)) {
-                endBytePos = scoreToPositionMap.get(score);
-                break;
+        QueryResult result;
+        if (compact) {
+            result = queryByChineseScoreRange(index, new CompactRecordFile(new File(datFile)),
+                                              minScore, maxScore, includeStudents);
+        } else {
+            try (FileChannel channel = FileChannel.open(new File(datFile).toPath(), StandardOpenOption.READ)) {
+                result = queryByChineseScoreRange(index, new MappedRecordFile(channel),
+                                                  minScore, maxScore, includeStudents);
             }
         }
 
-
         System.out.println("\n索引查找结果:");
-        System.out.println("  起始字节位置: " + startBytePos);
-        System.out.println("  结束字节位置: " + (endBytePos == -1 ? "文件末尾" : endBytePos));
-
-        // 5. 使用随机访问方式读取文件中的数据
-        List<Student> studentsInRange = new ArrayList<>();
-        double totalScore = 0;
+        System.out.println("  起始字节位置: " + result.startBytePos);
+        System.out.println("  结束字节位置: " + result.endBytePos);
 
-        try (RandomAccessFile raf = new RandomAccessFile(datFile, "r")) {
-            // 跳转到起始位置
-            raf.seek(startBytePos);
+        return result;
+    }
 
-            while (true) {
-                // 检查是否到达结束位置
-                long currentPos = raf.getFilePointer();
-                if (endBytePos != -1 && currentPos >= endBytePos) {
-                    break;
-                }
+    // 读取 dat2 中 [first, end) 的记录加入学生列表，返回这些记录的语文成绩总和
+    private interface RangeReader {
+        double read(long first, long end, List<Student> students);
+    }
 
-                // 检查是否到达文件末尾
-                if (currentPos + 20 > raf.length()) {
-                    break;
+    /**
+     * 使用已加载的索引和内存映射的 dat2 文件进行范围查询
+     * 只使用绝对位置读取，多个线程可以共享同一个索引和映射
+     *
+     * 索引中每个成绩值都有条目，范围内第一条和最后一条记录的位置都直接由索引得到，
+     * 只读取范围内的记录，读取的字节数等于返回的字节数。
+     * 只统计人数和平均成绩时，人数和成绩总和都由累计统计相减得到，不读取 dat2
+     *
+     * @param index 语文成绩索引
+     * @param dat2 内存映射的 dat2 文件
+     * @param minScore 最小语文成绩（包含）
+     * @param maxScore 最大语文成绩（包含）
+     * @param includeStudents false 时只统计人数和平均成绩，不返回学生列表
+     * @return 查询结果
+     */
+    public static QueryResult queryByChineseScoreRange(ScoreIndex index, MappedRecordFile dat2,
+                                                       float minScore, float maxScore, boolean includeStudents) {
+        return queryByChineseScoreRange(index, dat2.getRecordCount(), minScore, maxScore, includeStudents,
+            (first, end, students) -> {
+                // 整段解码 [first, end) 中的记录
+                double totalScore = 0;
+                long position = first;
+                while (position < end) {
+                    ByteBuffer segment = dat2.segment(position);
+                    int offset = MappedRecordFile.offsetInSegment(position);
+                    long batch = Math.min(end - position, dat2.recordsLeftInSegment(position));
+
+                    for (long i = 0; i < batch; i++, offset += MappedRecordFile.RECORD_SIZE) {
+                        Student student = new Student();
+                        student.studentId = segment.getInt(offset);
+                        student.chineseScore = segment.getFloat(offset + 4);
+                        student.mathScore = segment.getFloat(offset + 8);
+                        student.englishScore = segment.getFloat(offset + 12);
+                        student.comprehensiveScore = segment.getFloat(offset + 16);
+                        students.add(student);
+                        totalScore += student.chineseScore;
+                    }
+                    position += batch;
                 }
+                return totalScore;
+            });
+    }
 
-                // 读取学生信息
-                int studentId = raf.readInt();
-                float chineseScore = raf.readFloat();
-                float mathScore = raf.readFloat();
-                float englishScore = raf.readFloat();
-                float comprehensiveScore = raf.readFloat();
-
-                // 检查是否在成绩范围内（包含边界）
-                if (chineseScore >= minScore && chineseScore <= maxScore) {
+    /**
+     * 使用已加载的索引和紧凑格式的 dat2 文件进行范围查询（记录顺序与 dat2 相同，共用同一个索引）
+     *
+     * @param index 语文成绩索引
+     * @param dat2 紧凑格式的 dat2 文件
+     * @param minScore 最小语文成绩（包含）
+     * @param maxScore 最大语文成绩（包含）
+     * @param includeStudents false 时只统计人数和平均成绩，不返回学生列表
+     * @return 查询结果
+     */
+    public static QueryResult queryByChineseScoreRange(ScoreIndex index, CompactRecordFile dat2,
+                                                       float minScore, float maxScore, boolean includeStudents) {
+        return queryByChineseScoreRange(index, dat2.getRecordCount(), minScore, maxScore, includeStudents,
+            (first, end, students) -> {
+                double[] totalScore = new double[1];
+                dat2.forEach(first, end, (studentId, chineseScore, mathScore, englishScore, comprehensiveScore) -> {
                     Student student = new Student();
                     student.studentId = studentId;
                     student.chineseScore = chineseScore;
                     student.mathScore = mathScore;
                     student.englishScore = englishScore;
                     student.comprehensiveScore = comprehensiveScore;
+                    students.add(student);
+                    totalScore[0] += chineseScore;
+                });
+                return totalScore[0];
+            });
+    }
 
-                    studentsInRange.add(student);
-                    totalScore += chineseScore;
-                }
+    private static QueryResult queryByChineseScoreRange(ScoreIndex index, long recordCount,
+                                                        float minScore, float maxScore, boolean includeStudents,
+                                                        RangeReader reader) {
+        long startTime = System.currentTimeMillis();
 
-                // 如果当前成绩的整数部分已经超过最大范围，可以提前退出
-                // 因为文件是按语文成绩从高到低排序的
-                if ((int) chineseScore < minScoreInt) {
-                    break;
-                }
-            }
+        // 2. 从索引中找到范围的起止位置（键按成绩从高到低排列）
+        // 第一个成绩 <= maxScore 的条目
+        long firstNode = index.tree.lowerBound(QueryBySubjectScoreRange.encodeScore(maxScore));
+        // 最后一个成绩 >= minScore 的条目
+        long lastNode = index.tree.floor(QueryBySubjectScoreRange.encodeScore(minScore));
+
+        long first = 0;
+        long end = 0;
+        double totalScore = 0;
+        if (firstNode != BPlusTreeIndex.NONE && lastNode != BPlusTreeIndex.NONE
+            && index.tree.keyAt(firstNode) <= index.tree.keyAt(lastNode)) {
+            first = index.position(firstNode) / MappedRecordFile.RECORD_SIZE;
+            end = index.cumulativeCount(lastNode);
+
+            // 范围之前（成绩更高）的所有记录的累计成绩总和
+            long higherNode = index.tree.previous(firstNode);
+            totalScore = index.cumulativeSum(lastNode)
+                         - (higherNode == BPlusTreeIndex.NONE ? 0 : index.cumulativeSum(higherNode));
+        }
+        end = Math.min(end, recordCount);
+        int count = (int) Math.max(0, end - first);
+
+        // 3. 读取 [first, end) 中的记录
+        List<Student> studentsInRange = null;
+        if (includeStudents) {
+            studentsInRange = new ArrayList<>(count);
+            totalScore = reader.read(first, end, studentsInRange);
         }
 
         long endTime = System.currentTimeMillis();
         long queryTime = endTime - startTime;
 
         // 计算平均成绩
-        double averageScore = studentsInRange.isEmpty() ? 0.0 : totalScore / studentsInRange.size();
+        double averageScore = count == 0 ? 0.0 : totalScore / count;
 
-        return new QueryResult(studentsInRange.size(), averageScore, queryTime, studentsInRange);
+        QueryResult result = new QueryResult(count, averageScore, queryTime, studentsInRange);
+        result.totalScore = totalScore;
+        result.startBytePos = first * MappedRecordFile.RECORD_SIZE;
+        result.endBytePos = Math.max(first, end) * MappedRecordFile.RECORD_SIZE;
+        return result;
+    }
+
+    /**
+     * 输出查询结果（命令行和服务器共用）
+     * 显示前10个和后10个学生
+     */
+    static void printQueryResult(QueryResult result, PrintWriter out) {
+        out.println("\n=== 查询结果 ===");
+        out.println("学生数量: " + result.studentCount);
+        out.printf("平均成绩: %.2f\n", result.averageScore);
+        out.println("查询耗时: " + result.queryTime + " 毫秒");
+
+        if (result.studentCount > 0 && result.students != null) {
+            out.println("\n前" + Math.min(10, result.studentCount) + "个学生信息:");
+            for (int i = 0; i < Math.min(10, result.studentCount); i++) {
+                out.println((i + 1) + ". " + result.students.get(i));
+            }
+
+            if (result.studentCount > 20) {
+                out.println("...");
+                out.println("\n后10个学生信息:");
+                for (int i = Math.max(10, result.studentCount - 10); i < result.studentCount; i++) {
+                    out.println((i + 1) + ". " + result.students.get(i));
+                }
+            }
+        }
     }
 
     public static void main(String[] args) {
@@ -203,14 +312,19 @@ public class QueryByChineseScoreRange {
             System.out.println();
 
             // 检查命令行参数
-            if (args.length != 2) {
-                System.out.println("使用方法: java QueryByChineseScoreRange <最小成绩> <最大成绩>");
+            List<String> options = args.length >= 2 ? Arrays.asList(args).subList(2, args.length) : null;
+            if (options == null || !List.of("count", "compact").containsAll(options)) {
+                System.out.println("使用方法: java QueryByChineseScoreRange <最小成绩> <最大成绩> [count] [compact]");
                 System.out.println("例如: java QueryByChineseScoreRange 89.5 92.1");
+                System.out.println("指定 count 时只统计人数和平均成绩，不输出学生信息");
+                System.out.println("指定 compact 时读取紧凑格式文件 2353250-hw2.dat2c");
                 return;
             }
 
             float minScore = Float.parseFloat(args[0]);
             float maxScore = Float.parseFloat(args[1]);
+            boolean includeStudents = !options.contains("count");
+            boolean compact = options.contains("compact");
 
             System.out.println("最小语文成绩: " + minScore);
             System.out.println("最大语文成绩: " + maxScore);
@@ -223,28 +337,9 @@ public class QueryByChineseScoreRange {
             System.out.println("\n正在查询语文成绩在 [" + minScore + ", " + maxScore + "] 范围内的学生...\n");
             System.out.println("=".repeat(60));
 
-            QueryResult result = queryByChineseScoreRange(minScore, maxScore);
-
-            System.out.println("\n=== 查询结果 ===");
-            System.out.println("学生数量: " + result.studentCount);
-            System.out.printf("平均成绩: %.2f\n", result.averageScore);
-            System.out.println("查询耗时: " + result.queryTime + " 毫秒");
+            QueryResult result = queryByChineseScoreRange(minScore, maxScore, includeStudents, compact);
 
-            // 显示前10个和后10个学生
-            if (result.studentCount > 0) {
-                System.out.println("\n前" + Math.min(10, result.studentCount) + "个学生信息:");
-                for (int i = 0; i < Math.min(10, result.studentCount); i++) {
-                    System.out.println((i + 1) + ". " + result.students.get(i));
-                }
-
-                if (result.studentCount > 20) {
-                    System.out.println("...");
-                    System.out.println("\n后10个学生信息:");
-                    for (int i = Math.max(10, result.studentCount - 10); i < result.studentCount; i++) {
-                        System.out.println((i + 1) + ". " + result.students.get(i));
-                    }
-                }
-            }
+            printQueryResult(result, new PrintWriter(System.out, true));
 
         } catch (IOException e) {
             System.err.println("错误: " + e.getMessage());
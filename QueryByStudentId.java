@@ -1,7 +1,14 @@
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
 
 public class QueryByStudentId {
 
+    // 顺序扫描时每次读取的记录数
+    private static final int RECORDS_PER_READ = 512;
+
     // 学生数据类
     static class Student {
         int studentId;
@@ -17,16 +24,223 @@ public class QueryByStudentId {
         }
     }
 
+    // 内存映射的 dat1 文件（按学号从小到大排序的定长记录）
+    static class MappedDat1 extends MappedRecordFile {
+        private final int firstId;
+        private final int lastId;
+        // 学号是否连续（最后一个学号 - 第一个学号 == 记录数 - 1）
+        private final boolean dense;
+
+        public MappedDat1(FileChannel channel) throws IOException {
+            super(channel);
+            long recordCount = getRecordCount();
+            firstId = recordCount > 0 ? idAt(0) : 0;
+            lastId = recordCount > 0 ? idAt(recordCount - 1) : -1;
+            dense = recordCount > 0 && (long) lastId - firstId == recordCount - 1;
+        }
+
+        public boolean isDense() {
+            return dense;
+        }
+
+        // 读取第 index 条记录
+        Student studentAt(long index) {
+            ByteBuffer segment = segment(index);
+            int offset = offsetInSegment(index);
+
+            Student student = new Student();
+            student.studentId = segment.getInt(offset);
+            student.chineseScore = segment.getFloat(offset + 4);
+            student.mathScore = segment.getFloat(offset + 8);
+            student.englishScore = segment.getFloat(offset + 12);
+            student.comprehensiveScore = segment.getFloat(offset + 16);
+            return student;
+        }
+
+        /**
+         * 学号的第一条记录下标（数据文件中同一学号可能有多条相邻的记录），未找到返回 -1
+         */
+        public long findFirst(int studentId) {
+            long index = find(studentId);
+            while (index > 0 && idAt(index - 1) == studentId) {
+                index--;
+            }
+            return index;
+        }
+
+        /**
+         * 数据文件中学号的记录数
+         */
+        public long countOf(int studentId) {
+            long count = 0;
+            for (long index = findFirst(studentId);
+                 index >= 0 && index < getRecordCount() && idAt(index) == studentId; index++) {
+                count++;
+            }
+            return count;
+        }
+
+        /**
+         * 查找学号对应的记录下标，未找到返回 -1
+         * 学号连续时直接计算偏移（O(1)），否则使用插值查找，
+         * 插值效果不佳时交替使用二分查找，最坏情况为 O(log n)
+         */
+        public long find(int studentId) {
+            long recordCount = getRecordCount();
+            if (recordCount == 0 || studentId < firstId || studentId > lastId) {
+                return -1;
+            }
+
+            // 学号连续：直接计算偏移
+            if (dense) {
+                long index = (long) studentId - firstId;
+                if (idAt(index) == studentId) {
+                    return index;
+                }
+            }
+
+            long low = 0;
+            long high = recordCount - 1;
+            boolean bisect = false;
+
+            while (low <= high) {
+                int lowId = idAt(low);
+                int highId = idAt(high);
+                if (studentId < lowId || studentId > highId) {
+                    return -1;
+                }
+
+                long probe;
+                if (bisect || lowId == highId) {
+                    probe = low + (high - low) / 2;
+                } else {
+                    probe = low + (long) ((double) ((long) studentId - lowId) / ((long) highId - lowId) * (high - low));
+                }
+
+                int probeId = idAt(probe);
+                if (probeId == studentId) {
+                    return probe;
+                }
+
+                long width = high - low;
+                if (probeId < studentId) {
+                    low = probe + 1;
+                } else {
+                    high = probe - 1;
+                }
+
+                // 本轮插值未能把区间缩小一半，下一轮改用二分
+                bisect = !bisect && high - low > width / 2;
+            }
+
+            return -1;
+        }
+
+        /**
+         * 批量查找多个学号（已从小到大排序且不重复），返回各学号的记录下标，未找到为 -1
+         * 学号连续时逐个直接计算偏移；否则从上一个学号的位置开始倍增查找再二分，
+         * 整批只向文件末尾方向移动一遍，m 个学号的总代价为 O(m log(n/m))
+         */
+        public long[] findSorted(int[] sortedIds) {
+            long[] indexes = new long[sortedIds.length];
+            long recordCount = getRecordCount();
+            long from = 0;
+            for (int i = 0; i < sortedIds.length; i++) {
+                int studentId = sortedIds[i];
+                if (dense) {
+                    indexes[i] = find(studentId);
+                    continue;
+                }
+
+                // 倍增查找：确定第一个学号不小于 studentId 的记录所在的区间 [low, high]
+                long low = from;
+                long high = from;
+                long step = 1;
+                while (high < recordCount && idAt(high) < studentId) {
+                    low = high + 1;
+                    high = from + step;
+                    step <<= 1;
+                }
+                high = Math.min(high, recordCount);
+
+                // 在区间内二分
+                while (low < high) {
+                    long mid = (low + high) >>> 1;
+                    if (idAt(mid) < studentId) {
+                        low = mid + 1;
+                    } else {
+                        high = mid;
+                    }
+                }
+                from = low;
+                indexes[i] = low < recordCount && idAt(low) == studentId ? low : -1;
+            }
+            return indexes;
+        }
+    }
+
     /**
      * 从文件中读取指定学号的学生信息
-     * 使用顺序查找方式
+     * 默认使用内存映射 + 查找方式
      *
      * @param studentId 要查询的学号
      * @return 包含学生信息和查询时间的结果
      */
     public static QueryResult queryStudentById(int studentId) throws IOException {
+        return queryStudentById(studentId, true);
+    }
+
+    /**
+     * 从文件中读取指定学号的学生信息
+     *
+     * @param studentId 要查询的学号
+     * @param useMmap true 使用内存映射 + 查找，false 使用顺序查找
+     * @return 包含学生信息和查询时间的结果
+     */
+    public static QueryResult queryStudentById(int studentId, boolean useMmap) throws IOException {
+        String datFile = "2353250-hw2.dat1";
+
+        // 检查文件是否存在
+        File dataFile = new File(datFile);
+        if (!dataFile.exists()) {
+            throw new FileNotFoundException("数据文件不存在: " + datFile + "\n请先运行 WriteStudentData 生成该文件");
+        }
+
+        try (FileChannel channel = FileChannel.open(dataFile.toPath(), StandardOpenOption.READ)) {
+            if (useMmap) {
+                return queryStudentById(new MappedDat1(channel), studentId);
+            }
+            return queryStudentById(channel, studentId);
+        }
+    }
+
+    /**
+     * 在内存映射的 dat1 文件上查询指定学号的学生信息
+     * 只使用绝对位置读取，多个线程可以共享同一个映射
+     *
+     * @param dat1 内存映射的 dat1 文件
+     * @param studentId 要查询的学号
+     * @return 包含学生信息和查询时间的结果
+     */
+    public static QueryResult queryStudentById(MappedDat1 dat1, int studentId) {
         long startTime = System.currentTimeMillis();
 
+        long index = dat1.find(studentId);
+        Student foundStudent = index >= 0 ? dat1.studentAt(index) : null;
+
+        long endTime = System.currentTimeMillis();
+        long queryTime = endTime - startTime;
+
+        return new QueryResult(foundStudent, queryTime);
+    }
+
+    /**
+     * 批量查询多个学号的学生信息（使用内存映射）
+     *
+     * @param studentIds 要查询的学号（可以无序、可以重复）
+     * @return 与请求的学号一一对应的结果
+     */
+    public static BatchResult queryStudentsByIds(int[] studentIds) throws IOException {
         String datFile = "2353250-hw2.dat1";
 
         // 检查文件是否存在
@@ -35,40 +249,143 @@ public class QueryByStudentId {
             throw new FileNotFoundException("数据文件不存在: " + datFile + "\n请先运行 WriteStudentData 生成该文件");
         }
 
+        try (FileChannel channel = FileChannel.open(dataFile.toPath(), StandardOpenOption.READ)) {
+            return queryStudentsByIds(new MappedDat1(channel), studentIds);
+        }
+    }
+
+    /**
+     * 在内存映射的 dat1 文件上批量查询多个学号的学生信息
+     * 学号排序去重后按从小到大的顺序一遍查找（见 MappedDat1.findSorted），再按请求顺序排列结果
+     * 只使用绝对位置读取，多个线程可以共享同一个映射
+     *
+     * @param dat1 内存映射的 dat1 文件
+     * @param studentIds 要查询的学号（可以无序、可以重复）
+     * @return 与请求的学号一一对应的结果
+     */
+    public static BatchResult queryStudentsByIds(MappedDat1 dat1, int[] studentIds) {
+        long startTime = System.currentTimeMillis();
+
+        // 排序去重
+        int[] sortedIds = studentIds.clone();
+        Arrays.sort(sortedIds);
+        int uniqueCount = 0;
+        for (int i = 0; i < sortedIds.length; i++) {
+            if (i == 0 || sortedIds[i] != sortedIds[i - 1]) {
+                sortedIds[uniqueCount++] = sortedIds[i];
+            }
+        }
+        sortedIds = Arrays.copyOf(sortedIds, uniqueCount);
+
+        long[] indexes = dat1.findSorted(sortedIds);
+        Student[] found = new Student[uniqueCount];
+        for (int i = 0; i < uniqueCount; i++) {
+            found[i] = indexes[i] >= 0 ? dat1.studentAt(indexes[i]) : null;
+        }
+
+        // 按请求顺序排列（重复的学号共用同一个结果）
+        Student[] students = new Student[studentIds.length];
+        for (int i = 0; i < studentIds.length; i++) {
+            students[i] = found[Arrays.binarySearch(sortedIds, studentIds[i])];
+        }
+
+        long endTime = System.currentTimeMillis();
+        return new BatchResult(studentIds, students, uniqueCount, endTime - startTime);
+    }
+
+    /**
+     * 从紧凑格式文件"2353250-hw2.dat1c"中读取指定学号的学生信息（由 WriteCompactData 生成）
+     *
+     * @param studentId 要查询的学号
+     * @return 包含学生信息和查询时间的结果
+     */
+    public static QueryResult queryCompactStudentById(int studentId) throws IOException {
+        String datFile = "2353250-hw2.dat1c";
+
+        // 检查文件是否存在
+        File dataFile = new File(datFile);
+        if (!dataFile.exists()) {
+            throw new FileNotFoundException("数据文件不存在: " + datFile + "\n请先运行 WriteCompactData 生成该文件");
+        }
+
+        return queryStudentById(new CompactRecordFile(dataFile), studentId);
+    }
+
+    /**
+     * 在紧凑格式的 dat1 文件上查询指定学号的学生信息
+     *
+     * @param dat1 紧凑格式的 dat1 文件
+     * @param studentId 要查询的学号
+     * @return 包含学生信息和查询时间的结果
+     */
+    public static QueryResult queryStudentById(CompactRecordFile dat1, int studentId) {
+        long startTime = System.currentTimeMillis();
+
+        long index = dat1.find(studentId);
+        Student foundStudent = null;
+        if (index >= 0) {
+            foundStudent = new Student();
+            foundStudent.studentId = studentId;
+            foundStudent.chineseScore = dat1.scoreAt(index, QueryBySubjectScoreRange.FIELD_CHINESE);
+            foundStudent.mathScore = dat1.scoreAt(index, QueryBySubjectScoreRange.FIELD_MATH);
+            foundStudent.englishScore = dat1.scoreAt(index, QueryBySubjectScoreRange.FIELD_ENGLISH);
+            foundStudent.comprehensiveScore = dat1.scoreAt(index, QueryBySubjectScoreRange.FIELD_COMPREHENSIVE);
+        }
+
+        long endTime = System.currentTimeMillis();
+        long queryTime = endTime - startTime;
+
+        return new QueryResult(foundStudent, queryTime);
+    }
+
+    /**
+     * 在已打开的 dat1 文件通道上查询指定学号的学生信息
+     * 使用顺序查找方式和定位读取（不改变通道位置），多个线程可以共享同一个通道
+     *
+     * @param dat1Channel dat1 文件通道
+     * @param studentId 要查询的学号
+     * @return 包含学生信息和查询时间的结果
+     */
+    public static QueryResult queryStudentById(FileChannel dat1Channel, int studentId) throws IOException {
+        long startTime = System.currentTimeMillis();
+
         Student foundStudent = null;
+        ByteBuffer buffer = ByteBuffer.allocate(MappedRecordFile.RECORD_SIZE * RECORDS_PER_READ);
+        long position = 0;
 
         // 读取 dat1 文件（已按学号从小到大排序）
-        try (FileInputStream fis = new FileInputStream(datFile);
-             DataInputStream dis = new DataInputStream(new BufferedInputStream(fis))) {
-
-            try {
-                while (true) {
-                    // 读取学生信息（20字节）
-                    int id = dis.readInt();
-                    float chineseScore = dis.readFloat();
-                    float mathScore = dis.readFloat();
-                    float englishScore = dis.readFloat();
-                    float comprehensiveScore = dis.readFloat();
-
-                    // 如果找到匹配的学号
-                    if (id == studentId) {
-                        foundStudent = new Student();
-                        foundStudent.studentId = id;
-                        foundStudent.chineseScore = chineseScore;
-                        foundStudent.mathScore = mathScore;
-                        foundStudent.englishScore = englishScore;
-                        foundStudent.comprehensiveScore = comprehensiveScore;
-                        break;
-                    }
+        scan:
+        while (true) {
+            int bytesRead = readFully(dat1Channel, buffer, position);
+            int recordCount = bytesRead / MappedRecordFile.RECORD_SIZE;
+            if (recordCount == 0) {
+                // 文件读取完毕
+                break;
+            }
 
-                    // 因为文件按学号从小到大排序，如果当前学号大于目标学号，可以提前退出
-                    if (id > studentId) {
-                        break;
-                    }
+            for (int i = 0; i < recordCount; i++) {
+                int id = buffer.getInt();
+
+                // 如果找到匹配的学号
+                if (id == studentId) {
+                    foundStudent = new Student();
+                    foundStudent.studentId = id;
+                    foundStudent.chineseScore = buffer.getFloat();
+                    foundStudent.mathScore = buffer.getFloat();
+                    foundStudent.englishScore = buffer.getFloat();
+                    foundStudent.comprehensiveScore = buffer.getFloat();
+                    break scan;
                 }
-            } catch (EOFException e) {
-                // 文件读取完毕
+
+                // 因为文件按学号从小到大排序，如果当前学号大于目标学号，可以提前退出
+                if (id > studentId) {
+                    break scan;
+                }
+
+                buffer.position(buffer.position() + MappedRecordFile.RECORD_SIZE - 4);
             }
+
+            position += (long) recordCount * MappedRecordFile.RECORD_SIZE;
         }
 
         long endTime = System.currentTimeMillis();
@@ -77,6 +394,60 @@ public class QueryByStudentId {
         return new QueryResult(foundStudent, queryTime);
     }
 
+    /**
+     * 从指定位置开始尽量填满缓冲区，返回实际读取的字节数
+     * 返回后缓冲区已切换为读模式
+     */
+    static int readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        buffer.clear();
+        int total = 0;
+        while (buffer.hasRemaining()) {
+            int n = channel.read(buffer, position + total);
+            if (n < 0) {
+                break;
+            }
+            total += n;
+        }
+        buffer.flip();
+        return total;
+    }
+
+    /**
+     * 输出查询结果（命令行和服务器共用）
+     */
+    static void printQueryResult(int studentId, QueryResult result, PrintWriter out) {
+        if (result.student != null) {
+            out.println("=== 查询结果 ===");
+            out.println(result.student);
+            out.println("\n查询耗时: " + result.queryTime + " 毫秒");
+        } else {
+            out.println("未找到学号为 " + studentId + " 的学生");
+            out.println("查询耗时: " + result.queryTime + " 毫秒");
+        }
+    }
+
+    /**
+     * 输出批量查询结果（命令行和服务器共用）
+     */
+    static void printBatchResult(BatchResult result, PrintWriter out) {
+        out.println("=== 查询结果 ===");
+        out.println("请求学号: " + result.studentIds.length + " 个（不重复 " + result.uniqueCount + " 个）");
+        for (int i = 0; i < result.studentIds.length; i++) {
+            Student student = result.students[i];
+            if (student != null) {
+                out.printf("%d. 学号: %d, 语文: %.1f, 数学: %.1f, 英语: %.1f, 综合: %.1f%n", i + 1, student.studentId,
+                    student.chineseScore, student.mathScore, student.englishScore, student.comprehensiveScore);
+            } else {
+                out.println((i + 1) + ". 未找到学号为 " + result.studentIds[i] + " 的学生");
+            }
+        }
+        int[] missingIds = result.missingIds();
+        if (missingIds.length > 0) {
+            out.println("未找到的学号: " + Arrays.toString(missingIds));
+        }
+        out.println("\n查询耗时: " + result.queryTime + " 毫秒");
+    }
+
     // 查询结果类
     static class QueryResult {
         Student student;
@@ -88,6 +459,44 @@ public class QueryByStudentId {
         }
     }
 
+    // 批量查询结果类
+    static class BatchResult {
+        int[] studentIds;     // 请求的学号（按请求顺序）
+        Student[] students;   // 与 studentIds 一一对应，未找到为 null
+        int uniqueCount;      // 不重复的学号数
+        long queryTime;
+
+        public BatchResult(int[] studentIds, Student[] students, int uniqueCount, long queryTime) {
+            this.studentIds = studentIds;
+            this.students = students;
+            this.uniqueCount = uniqueCount;
+            this.queryTime = queryTime;
+        }
+
+        // 未找到的学号（按请求顺序，不重复）
+        int[] missingIds() {
+            Set<Integer> missing = new LinkedHashSet<>();
+            for (int i = 0; i < studentIds.length; i++) {
+                if (students[i] == null) {
+                    missing.add(studentIds[i]);
+                }
+            }
+            return missing.stream().mapToInt(Integer::intValue).toArray();
+        }
+    }
+
+    /**
+     * 解析用逗号或空白分隔的学号列表
+     */
+    static int[] parseIds(String text) {
+        String[] fields = text.trim().split("[,\\s]+");
+        int[] studentIds = new int[fields.length];
+        for (int i = 0; i < fields.length; i++) {
+            studentIds[i] = Integer.parseInt(fields[i]);
+        }
+        return studentIds;
+    }
+
     public static void main(String[] args) {
         try {
             System.out.println("=== 学生信息查询系统 ===");
@@ -95,27 +504,33 @@ public class QueryByStudentId {
             System.out.println();
 
             // 检查命令行参数
-            if (args.length != 1) {
-                System.out.println("使用方法: java QueryByStudentId <学号>");
+            if (args.length != 1 && !(args.length == 2 && (args[1].equals("scan") || args[1].equals("compact")))) {
+                System.out.println("使用方法: java QueryByStudentId <学号> [scan|compact]");
+                System.out.println("     或: java QueryByStudentId <学号1>,<学号2>,...");
                 System.out.println("例如: java QueryByStudentId 2023001");
+                System.out.println("默认使用内存映射查找，指定 scan 时使用顺序查找，指定 compact 时查询紧凑格式文件 2353250-hw2.dat1c");
+                System.out.println("用逗号分隔多个学号时批量查询，按输入顺序输出结果");
+                return;
+            }
+
+            if (args.length == 1 && args[0].contains(",")) {
+                int[] studentIds = parseIds(args[0]);
+                System.out.println("要查询的学号: " + studentIds.length + " 个");
+                System.out.println("\n正在批量查询...\n");
+                printBatchResult(queryStudentsByIds(studentIds), new PrintWriter(System.out, true));
                 return;
             }
 
             int studentId = Integer.parseInt(args[0]);
+            boolean compact = args.length == 2 && args[1].equals("compact");
+            boolean useMmap = args.length == 1;
 
             System.out.println("要查询的学号: " + studentId);
             System.out.println("\n正在查询学号 " + studentId + " 的信息...\n");
 
-            QueryResult result = queryStudentById(studentId);
+            QueryResult result = compact ? queryCompactStudentById(studentId) : queryStudentById(studentId, useMmap);
 
-            if (result.student != null) {
-                System.out.println("=== 查询结果 ===");
-                System.out.println(result.student);
-                System.out.println("\n查询耗时: " + result.queryTime + " 毫秒");
-            } else {
-                System.out.println("未找到学号为 " + studentId + " 的学生");
-                System.out.println("查询耗时: " + result.queryTime + " 毫秒");
-            }
+            printQueryResult(studentId, result, new PrintWriter(System.out, true));
 
         } catch (IOException e) {
             System.err.println("错误: " + e.getMessage());
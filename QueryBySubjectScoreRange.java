@@ -0,0 +1,264 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * 任意科目成绩的范围查询（使用二级索引，不需要为每个科目另存一份排序后的数据文件）
+ *
+ * 二级索引是 B+ 树索引文件（见 BPlusTreeIndex），每条 dat1 记录对应一个条目：
+ *   键: 成绩的可排序编码（按成绩从高到低） 值: long 该记录在 dat1 中的字节位置
+ * 成绩相同时按字节位置（即学号）从小到大排列，因此结果顺序与 dat2 一致。
+ * 编码可以还原出成绩，只统计人数和平均成绩时不需要读取 dat1。
+ */
+public class QueryBySubjectScoreRange {
+
+    // 科目（与记录中成绩的顺序一致）
+    static final int FIELD_CHINESE = 0;
+    static final int FIELD_MATH = 1;
+    static final int FIELD_ENGLISH = 2;
+    static final int FIELD_COMPREHENSIVE = 3;
+
+    static final String[] FIELD_NAMES = {"chinese", "math", "english", "comprehensive"};
+    static final String[] FIELD_LABELS = {"语文", "数学", "英语", "综合"};
+
+    // 索引条目值：long dat1 字节位置
+    static final int VALUE_SIZE = 8;
+
+    // 科目成绩在记录中的字节偏移
+    static int fieldOffset(int field) {
+        return 4 + field * 4;
+    }
+
+    // 科目名称对应的编号，无法识别时返回 -1
+    static int parseField(String name) {
+        for (int i = 0; i < FIELD_NAMES.length; i++) {
+            if (FIELD_NAMES[i].equalsIgnoreCase(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // 二级索引文件名
+    static String indexFileName(int field) {
+        return "2353250-hw2." + FIELD_NAMES[field] + ".idx";
+    }
+
+    // 学生记录中指定科目的成绩（各查询类的学生记录字段相同）
+    static float score(QueryByStudentId.Student student, int field) {
+        return score(field, student.chineseScore, student.mathScore, student.englishScore, student.comprehensiveScore);
+    }
+
+    static float score(QueryByChineseScoreRange.Student student, int field) {
+        return score(field, student.chineseScore, student.mathScore, student.englishScore, student.comprehensiveScore);
+    }
+
+    static float score(BinaryProtocol.Student student, int field) {
+        return score(field, student.chineseScore, student.mathScore, student.englishScore, student.comprehensiveScore);
+    }
+
+    private static float score(int field, float chineseScore, float mathScore, float englishScore,
+                               float comprehensiveScore) {
+        switch (field) {
+            case FIELD_MATH: return mathScore;
+            case FIELD_ENGLISH: return englishScore;
+            case FIELD_COMPREHENSIVE: return comprehensiveScore;
+            default: return chineseScore;
+        }
+    }
+
+    // 在各查询类的学生记录之间转换
+    static QueryByChineseScoreRange.Student toRangeStudent(QueryByStudentId.Student source) {
+        return toRangeStudent(source.studentId, source.chineseScore, source.mathScore, source.englishScore,
+                              source.comprehensiveScore);
+    }
+
+    static QueryByChineseScoreRange.Student toRangeStudent(BinaryProtocol.Student source) {
+        return toRangeStudent(source.studentId, source.chineseScore, source.mathScore, source.englishScore,
+                              source.comprehensiveScore);
+    }
+
+    private static QueryByChineseScoreRange.Student toRangeStudent(int studentId, float chineseScore, float mathScore,
+                                                                   float englishScore, float comprehensiveScore) {
+        QueryByChineseScoreRange.Student student = new QueryByChineseScoreRange.Student();
+        student.studentId = studentId;
+        student.chineseScore = chineseScore;
+        student.mathScore = mathScore;
+        student.englishScore = englishScore;
+        student.comprehensiveScore = comprehensiveScore;
+        return student;
+    }
+
+    static QueryByStudentId.Student toStudent(BinaryProtocol.Student source) {
+        QueryByStudentId.Student student = new QueryByStudentId.Student();
+        student.studentId = source.studentId;
+        student.chineseScore = source.chineseScore;
+        student.mathScore = source.mathScore;
+        student.englishScore = source.englishScore;
+        student.comprehensiveScore = source.comprehensiveScore;
+        return student;
+    }
+
+    /**
+     * 成绩的索引键：成绩越高键越小，与 float 的大小顺序完全一致
+     * （-0.0 与 0.0 视为相同，NaN 排在所有成绩之前，不会落入任何范围）
+     */
+    static int encodeScore(float score) {
+        int bits = Float.floatToIntBits(score + 0.0f);
+        return ~(bits ^ ((bits >> 31) & 0x7fffffff));
+    }
+
+    static float decodeScore(int key) {
+        int sortable = ~key;
+        return Float.intBitsToFloat(sortable ^ ((sortable >> 31) & 0x7fffffff));
+    }
+
+    /**
+     * 打开并校验二级索引文件
+     */
+    static BPlusTreeIndex openIndex(File indexFile) throws IOException {
+        BPlusTreeIndex index = new BPlusTreeIndex(indexFile);
+        if (index.getKeyType() != BPlusTreeIndex.KEY_SCORE_DESC || index.getValueSize() != VALUE_SIZE) {
+            throw new IOException("索引文件格式不正确，请重新运行 BuildSecondaryIndex: " + indexFile.getPath());
+        }
+        return index;
+    }
+
+    /**
+     * 从索引文件中查询指定科目的成绩范围
+     *
+     * @param field 科目编号
+     * @param minScore 最小成绩（包含）
+     * @param maxScore 最大成绩（包含）
+     * @param includeStudents false 时只统计人数和平均成绩，不返回学生列表
+     * @return 查询结果
+     */
+    public static QueryByChineseScoreRange.QueryResult queryByScoreRange(int field, float minScore, float maxScore,
+                                                                         boolean includeStudents) throws IOException {
+        String indexFile = indexFileName(field);
+        String datFile = "2353250-hw2.dat1";
+
+        // 检查文件是否存在
+        if (!new File(indexFile).exists()) {
+            throw new FileNotFoundException("索引文件不存在: " + indexFile + "\n请先运行 BuildSecondaryIndex 生成该文件");
+        }
+        if (!new File(datFile).exists()) {
+            throw new FileNotFoundException("数据文件不存在: " + datFile);
+        }
+
+        BPlusTreeIndex index = openIndex(new File(indexFile));
+        System.out.println("索引文件信息:");
+        System.out.println("  条目总数: " + index.getEntryCount());
+        System.out.println("  树高度: " + index.getTreeHeight());
+
+        try (FileChannel channel = FileChannel.open(new File(datFile).toPath(), StandardOpenOption.READ)) {
+            return queryByScoreRange(index, new MappedRecordFile(channel), minScore, maxScore, includeStudents);
+        }
+    }
+
+    /**
+     * 使用已打开的二级索引和内存映射的 dat1 文件进行范围查询
+     * 只使用绝对位置读取，多个线程可以共享同一个索引和映射
+     *
+     * @param index 科目的二级索引
+     * @param dat1 内存映射的 dat1 文件
+     * @param minScore 最小成绩（包含）
+     * @param maxScore 最大成绩（包含）
+     * @param includeStudents false 时只统计人数和平均成绩，不读取 dat1
+     * @return 查询结果
+     */
+    public static QueryByChineseScoreRange.QueryResult queryByScoreRange(BPlusTreeIndex index, MappedRecordFile dat1,
+                                                                         float minScore, float maxScore,
+                                                                         boolean includeStudents) {
+        long startTime = System.currentTimeMillis();
+
+        // 键按成绩从高到低排列：从 maxScore 的键开始，到 minScore 的键结束
+        int endKey = encodeScore(minScore);
+        List<QueryByChineseScoreRange.Student> studentsInRange = includeStudents ? new ArrayList<>() : null;
+        int count = 0;
+        double totalScore = 0;
+
+        for (long slot = index.lowerBound(encodeScore(maxScore));
+             slot != BPlusTreeIndex.NONE && index.keyAt(slot) <= endKey;
+             slot = index.next(slot)) {
+            count++;
+            totalScore += decodeScore(index.keyAt(slot));
+
+            if (includeStudents) {
+                long record = index.longValue(slot, 0) / MappedRecordFile.RECORD_SIZE;
+                ByteBuffer segment = dat1.segment(record);
+                int offset = MappedRecordFile.offsetInSegment(record);
+
+                QueryByChineseScoreRange.Student student = new QueryByChineseScoreRange.Student();
+                student.studentId = segment.getInt(offset);
+                student.chineseScore = segment.getFloat(offset + 4);
+                student.mathScore = segment.getFloat(offset + 8);
+                student.englishScore = segment.getFloat(offset + 12);
+                student.comprehensiveScore = segment.getFloat(offset + 16);
+                studentsInRange.add(student);
+            }
+        }
+
+        long endTime = System.currentTimeMillis();
+        long queryTime = endTime - startTime;
+
+        // 计算平均成绩
+        double averageScore = count == 0 ? 0.0 : totalScore / count;
+
+        QueryByChineseScoreRange.QueryResult result =
+            new QueryByChineseScoreRange.QueryResult(count, averageScore, queryTime, studentsInRange);
+        result.totalScore = totalScore;
+        return result;
+    }
+
+    public static void main(String[] args) {
+        try {
+            System.out.println("=== 科目成绩范围查询系统 ===");
+            System.out.println("数据文件: 2353250-hw2.dat1");
+            System.out.println();
+
+            // 检查命令行参数
+            int field = args.length >= 1 ? parseField(args[0]) : -1;
+            if (field < 0 || !(args.length == 3 || (args.length == 4 && args[3].equals("count")))) {
+                System.out.println("使用方法: java QueryBySubjectScoreRange <科目> <最小成绩> <最大成绩> [count]");
+                System.out.println("科目: " + String.join(" | ", FIELD_NAMES));
+                System.out.println("例如: java QueryBySubjectScoreRange math 89.5 92.1");
+                System.out.println("指定 count 时只统计人数和平均成绩，不输出学生信息");
+                return;
+            }
+
+            float minScore = Float.parseFloat(args[1]);
+            float maxScore = Float.parseFloat(args[2]);
+            boolean includeStudents = args.length == 3;
+
+            System.out.println("科目: " + FIELD_LABELS[field]);
+            System.out.println("最小成绩: " + minScore);
+            System.out.println("最大成绩: " + maxScore);
+
+            if (minScore > maxScore) {
+                System.out.println("错误: 最小成绩不能大于最大成绩");
+                return;
+            }
+
+            System.out.println("\n正在查询" + FIELD_LABELS[field] + "成绩在 [" + minScore + ", " + maxScore + "] 范围内的学生...\n");
+            System.out.println("=".repeat(60));
+
+            QueryByChineseScoreRange.QueryResult result = queryByScoreRange(field, minScore, maxScore, includeStudents);
+
+            QueryByChineseScoreRange.printQueryResult(result, new PrintWriter(System.out, true));
+
+        } catch (IOException e) {
+            System.err.println("错误: " + e.getMessage());
+            e.printStackTrace();
+        } catch (NumberFormatException e) {
+            System.err.println("参数错误: 请输入有效的成绩（浮点数）");
+            System.err.println("使用方法: java QueryBySubjectScoreRange <科目> <最小成绩> <最大成绩> [count]");
+            e.printStackTrace();
+        } catch (Exception e) {
+            System.err.println("程序执行错误: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,325 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * 任意科目成绩最高的 K 个学生
+ *
+ * 排序规则与 dat2 相同：成绩从高到低，相同成绩按学号从小到大（MergeSortStudentData.compareStudents）。
+ *   语文: dat2 已按该顺序排列，直接读取前 K × 20 字节
+ *   其他科目: 并行扫描 dat1，每个任务用大小为 K 的堆保留当前最好的 K 条记录，最后合并各任务的堆；
+ *            扫描时只读取学号和该科目成绩，结果确定后再读取这 K 条完整记录
+ */
+public class QueryTopStudents {
+
+    // 并行扫描时每个任务至少处理的记录数
+    private static final int SCAN_THRESHOLD = 1 << 16;
+
+    // 服务器一次排名查询最多返回的人数（更大的人数直接返回错误，不分配结果；
+    // 结果在一个响应帧中返回，不能超过 BinaryProtocol.MAX_FRAME_RECORDS）
+    static final int MAX_TOP_K = 100_000;
+
+    // 查询结果类
+    static class QueryResult {
+        List<QueryByChineseScoreRange.Student> students;
+        long scanned;      // 读取的记录数
+        long queryTime;
+
+        public QueryResult(List<QueryByChineseScoreRange.Student> students, long scanned, long queryTime) {
+            this.students = students;
+            this.scanned = scanned;
+            this.queryTime = queryTime;
+        }
+    }
+
+    /**
+     * 保留最好的 capacity 条记录的堆：堆顶是其中排名最后的记录，新记录比堆顶好时替换堆顶
+     * 只保存学号、成绩和记录下标，不创建学生对象
+     */
+    static class TopHeap {
+        private final int capacity;
+        private final int[] ids;
+        private final float[] scores;
+        private final long[] records;
+        private int size;
+
+        TopHeap(int capacity) {
+            this.capacity = capacity;
+            this.ids = new int[capacity];
+            this.scores = new float[capacity];
+            this.records = new long[capacity];
+        }
+
+        // a 是否排在 b 之后
+        private boolean after(int a, int b) {
+            return MergeSortStudentData.compareStudents(ids[a], scores[a], ids[b], scores[b]) > 0;
+        }
+
+        void offer(int studentId, float score, long record) {
+            if (size < capacity) {
+                ids[size] = studentId;
+                scores[size] = score;
+                records[size] = record;
+                siftUp(size++);
+            } else if (capacity > 0
+                       && MergeSortStudentData.compareStudents(studentId, score, ids[0], scores[0]) < 0) {
+                ids[0] = studentId;
+                scores[0] = score;
+                records[0] = record;
+                siftDown(0);
+            }
+        }
+
+        // 把另一个堆中的记录加入本堆
+        void addAll(TopHeap other) {
+            for (int i = 0; i < other.size; i++) {
+                offer(other.ids[i], other.scores[i], other.records[i]);
+            }
+        }
+
+        // 合并两个堆，保留最好的 k 条（容量不够时换用更大的堆）
+        static TopHeap merge(TopHeap a, TopHeap b, int k) {
+            int capacity = (int) Math.min(k, (long) a.size + b.size);
+            if (a.capacity < capacity) {
+                TopHeap larger = new TopHeap(capacity);
+                larger.addAll(a);
+                a = larger;
+            }
+            a.addAll(b);
+            return a;
+        }
+
+        // 按排名顺序返回记录下标：原地堆排序，每次把排名最后的堆顶换到末尾（之后堆不再可用）
+        long[] sortedRecords() {
+            int count = size;
+            while (size > 1) {
+                swap(0, --size);
+                siftDown(0);
+            }
+            size = count;
+            return Arrays.copyOf(records, count);
+        }
+
+        private void siftUp(int i) {
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (!after(i, parent)) {
+                    break;
+                }
+                swap(i, parent);
+                i = parent;
+            }
+        }
+
+        private void siftDown(int i) {
+            while (true) {
+                int worst = i;
+                int left = 2 * i + 1;
+                int right = left + 1;
+                if (left < size && after(left, worst)) {
+                    worst = left;
+                }
+                if (right < size && after(right, worst)) {
+                    worst = right;
+                }
+                if (worst == i) {
+                    return;
+                }
+                swap(i, worst);
+                i = worst;
+            }
+        }
+
+        private void swap(int a, int b) {
+            int id = ids[a];
+            ids[a] = ids[b];
+            ids[b] = id;
+            float score = scores[a];
+            scores[a] = scores[b];
+            scores[b] = score;
+            long record = records[a];
+            records[a] = records[b];
+            records[b] = record;
+        }
+    }
+
+    // 并行扫描任务：扫描 dat1 的 [low, high) 条记录，返回其中最好的 k 条
+    private static class ScanTask extends RecursiveTask<TopHeap> {
+        private static final long serialVersionUID = 1L;
+
+        private final MappedRecordFile dat1;
+        private final int field;
+        private final int k;
+        private final long low;
+        private final long high;
+
+        ScanTask(MappedRecordFile dat1, int field, int k, long low, long high) {
+            this.dat1 = dat1;
+            this.field = field;
+            this.k = k;
+            this.low = low;
+            this.high = high;
+        }
+
+        @Override
+        protected TopHeap compute() {
+            if (high - low <= SCAN_THRESHOLD) {
+                return scan(dat1, field, k, low, high);
+            }
+            long mid = (low + high) >>> 1;
+            ScanTask right = new ScanTask(dat1, field, k, mid, high);
+            right.fork();
+            TopHeap left = new ScanTask(dat1, field, k, low, mid).compute();
+            return TopHeap.merge(left, right.join(), k);
+        }
+    }
+
+    // 单线程扫描 dat1 的 [low, high) 条记录
+    private static TopHeap scan(MappedRecordFile dat1, int field, int k, long low, long high) {
+        TopHeap heap = new TopHeap((int) Math.min(k, high - low));
+        int scoreOffset = QueryBySubjectScoreRange.fieldOffset(field);
+        long record = low;
+        while (record < high) {
+            ByteBuffer segment = dat1.segment(record);
+            int offset = MappedRecordFile.offsetInSegment(record);
+            long end = record + Math.min(dat1.recordsLeftInSegment(record), high - record);
+            for (; record < end; record++, offset += MappedRecordFile.RECORD_SIZE) {
+                float score = segment.getFloat(offset + scoreOffset);
+                // 堆已满且成绩低于堆顶时不可能进入前 k 名，不需要再比较学号
+                if (heap.size == heap.capacity && heap.capacity > 0 && score < heap.scores[0]) {
+                    continue;
+                }
+                heap.offer(segment.getInt(offset), score, record);
+            }
+        }
+        return heap;
+    }
+
+    // 读取第 record 条记录
+    static QueryByChineseScoreRange.Student readStudent(MappedRecordFile file, long record) {
+        ByteBuffer segment = file.segment(record);
+        int offset = MappedRecordFile.offsetInSegment(record);
+
+        QueryByChineseScoreRange.Student student = new QueryByChineseScoreRange.Student();
+        student.studentId = segment.getInt(offset);
+        student.chineseScore = segment.getFloat(offset + 4);
+        student.mathScore = segment.getFloat(offset + 8);
+        student.englishScore = segment.getFloat(offset + 12);
+        student.comprehensiveScore = segment.getFloat(offset + 16);
+        return student;
+    }
+
+    /**
+     * 语文成绩最高的 k 个学生：读取 dat2 的前 k 条记录
+     * 只使用绝对位置读取，多个线程可以共享同一个映射
+     */
+    public static QueryResult topByChineseScore(MappedRecordFile dat2, int k) {
+        long startTime = System.currentTimeMillis();
+
+        int count = (int) Math.min(k, dat2.getRecordCount());
+        List<QueryByChineseScoreRange.Student> students = new ArrayList<>(count);
+        for (long record = 0; record < count; record++) {
+            students.add(readStudent(dat2, record));
+        }
+        return new QueryResult(students, count, System.currentTimeMillis() - startTime);
+    }
+
+    /**
+     * 指定科目成绩最高的 k 个学生：在 ForkJoinPool.commonPool() 中并行扫描 dat1
+     * 只使用绝对位置读取，多个线程可以共享同一个映射
+     */
+    public static QueryResult topByScan(MappedRecordFile dat1, int field, int k) {
+        long startTime = System.currentTimeMillis();
+
+        long recordCount = dat1.getRecordCount();
+        k = (int) Math.min(k, recordCount);
+        TopHeap heap = ForkJoinPool.commonPool().invoke(new ScanTask(dat1, field, k, 0, recordCount));
+
+        long[] records = heap.sortedRecords();
+        List<QueryByChineseScoreRange.Student> students = new ArrayList<>(records.length);
+        for (long record : records) {
+            students.add(readStudent(dat1, record));
+        }
+        return new QueryResult(students, recordCount, System.currentTimeMillis() - startTime);
+    }
+
+    /**
+     * 指定科目成绩最高的 k 个学生（语文读取 dat2，其他科目扫描 dat1）
+     */
+    public static QueryResult queryTopStudents(int field, int k) throws IOException {
+        String datFile = field == QueryBySubjectScoreRange.FIELD_CHINESE ? "2353250-hw2.dat2" : "2353250-hw2.dat1";
+
+        // 检查文件是否存在
+        if (!new File(datFile).exists()) {
+            throw new FileNotFoundException("数据文件不存在: " + datFile);
+        }
+
+        try (FileChannel channel = FileChannel.open(new File(datFile).toPath(), StandardOpenOption.READ)) {
+            MappedRecordFile file = new MappedRecordFile(channel);
+            return field == QueryBySubjectScoreRange.FIELD_CHINESE ? topByChineseScore(file, k) : topByScan(file, field, k);
+        }
+    }
+
+    static void printQueryResult(int field, QueryResult result, PrintWriter out) {
+        out.println("\n=== 查询结果 ===");
+        out.println("学生数量: " + result.students.size());
+        out.println("读取记录: " + result.scanned + " 条");
+        out.println("查询耗时: " + result.queryTime + " 毫秒");
+
+        int count = result.students.size();
+        if (count > 0) {
+            out.println("\n" + QueryBySubjectScoreRange.FIELD_LABELS[field] + "成绩前" + Math.min(20, count) + "名:");
+            for (int i = 0; i < Math.min(20, count); i++) {
+                out.println((i + 1) + ". " + result.students.get(i));
+            }
+            if (count > 20) {
+                out.println("...");
+                out.println(count + ". " + result.students.get(count - 1));
+            }
+        }
+        out.flush();
+    }
+
+    public static void main(String[] args) {
+        try {
+            System.out.println("=== 成绩排名查询系统 ===");
+            System.out.println();
+
+            // 检查命令行参数
+            int field = args.length == 2 ? QueryBySubjectScoreRange.parseField(args[0]) : -1;
+            if (field < 0) {
+                System.out.println("使用方法: java QueryTopStudents <科目> <人数>");
+                System.out.println("科目: " + String.join(" | ", QueryBySubjectScoreRange.FIELD_NAMES));
+                System.out.println("例如: java QueryTopStudents math 100");
+                return;
+            }
+
+            int k = Integer.parseInt(args[1]);
+            if (k < 0) {
+                System.out.println("错误: 人数不能为负数");
+                return;
+            }
+
+            System.out.println("正在查询" + QueryBySubjectScoreRange.FIELD_LABELS[field] + "成绩前 " + k + " 名的学生...");
+            System.out.println("=".repeat(60));
+
+            QueryResult result = queryTopStudents(field, k);
+            printQueryResult(field, result, new PrintWriter(System.out, true));
+
+        } catch (IOException e) {
+            System.err.println("错误: " + e.getMessage());
+            e.printStackTrace();
+        } catch (NumberFormatException e) {
+            System.err.println("参数错误: 请输入有效的人数（整数）");
+            System.err.println("使用方法: java QueryTopStudents <科目> <人数>");
+            e.printStackTrace();
+        } catch (Exception e) {
+            System.err.println("程序执行错误: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,218 @@
+import java.nio.ByteBuffer;
+import java.util.*;
+
+/**
+ * 语文成绩范围查询的流式游标
+ *
+ * 按 dat2 的顺序（成绩从高到低，相同成绩按学号从小到大）逐条读取范围内的记录，
+ * 不生成学生列表，内存占用与结果大小无关。分页方式：
+ *   skip(n)              跳过前 n 条（OFFSET，没有增量数据时为 O(1)）
+ *   seekAfter(成绩, 学号) 从这条记录之后开始（键集分页：用上一页最后一条记录继续，O(log n)）
+ * 可以叠加增量数据（见 DeltaStore）：被修改学生在 dat2 中的旧记录被跳过，范围内的新记录按顺序插入。
+ * 游标只使用绝对位置读取映射，多个游标可以同时读取同一个 dat2，但单个游标只能由一个线程使用。
+ */
+public class RangeCursor {
+
+    private final QueryByChineseScoreRange.ScoreIndex index;
+    private final MappedRecordFile dat2;
+    // dat2 中下一条待读取的记录，以及范围的结束位置（不包含）
+    private long position;
+    private final long end;
+
+    // 增量数据：被修改的学号，以及修改后在范围内的记录（按 dat2 的顺序排列）
+    private final Set<Integer> updatedIds;
+    private final List<QueryByStudentId.Student> added;
+    private int addedIndex;
+
+    // 已读取的 dat2 记录数（包括被增量覆盖而跳过的记录）
+    private long scanned;
+
+    public RangeCursor(QueryByChineseScoreRange.ScoreIndex index, MappedRecordFile dat2,
+                       float minScore, float maxScore) {
+        this(index, dat2, minScore, maxScore, Collections.emptyMap());
+    }
+
+    /**
+     * @param updates 按学号索引的增量记录（构造时复制，之后的修改不影响游标）
+     */
+    public RangeCursor(QueryByChineseScoreRange.ScoreIndex index, MappedRecordFile dat2,
+                       float minScore, float maxScore, Map<Integer, QueryByStudentId.Student> updates) {
+        this.index = index;
+        this.dat2 = dat2;
+
+        // 与 QueryByChineseScoreRange 相同：从索引中找到范围的起止位置
+        long firstNode = index.tree.lowerBound(QueryBySubjectScoreRange.encodeScore(maxScore));
+        long lastNode = index.tree.floor(QueryBySubjectScoreRange.encodeScore(minScore));
+        long first = 0;
+        long last = 0;
+        if (firstNode != BPlusTreeIndex.NONE && lastNode != BPlusTreeIndex.NONE
+            && index.tree.keyAt(firstNode) <= index.tree.keyAt(lastNode)) {
+            first = index.position(firstNode) / MappedRecordFile.RECORD_SIZE;
+            last = Math.min(index.cumulativeCount(lastNode), dat2.getRecordCount());
+        }
+        this.position = first;
+        this.end = Math.max(first, last);
+
+        // 一次遍历同时取得学号和记录，即使 updates 正在被修改，两者也是一致的
+        this.updatedIds = new HashSet<>();
+        this.added = new ArrayList<>();
+        for (Map.Entry<Integer, QueryByStudentId.Student> entry : updates.entrySet()) {
+            QueryByStudentId.Student student = entry.getValue();
+            updatedIds.add(entry.getKey());
+            if (student.chineseScore >= minScore && student.chineseScore <= maxScore) {
+                added.add(student);
+            }
+        }
+        added.sort((a, b) -> compare(a, QueryBySubjectScoreRange.encodeScore(b.chineseScore), b.studentId));
+    }
+
+    // 增量记录与 (成绩键, 学号) 在 dat2 顺序中的先后
+    private static int compare(QueryByStudentId.Student student, int scoreKey, int studentId) {
+        int byScore = Integer.compare(QueryBySubjectScoreRange.encodeScore(student.chineseScore), scoreKey);
+        return byScore != 0 ? byScore : Integer.compare(student.studentId, studentId);
+    }
+
+    /**
+     * 从 (afterScore, afterId) 这条记录之后开始（该记录本身不需要存在）
+     */
+    public void seekAfter(float afterScore, int afterId) {
+        int afterKey = QueryBySubjectScoreRange.encodeScore(afterScore);
+        long start;
+        long node = index.tree.lowerBound(afterKey);
+        if (node == BPlusTreeIndex.NONE) {
+            start = end;
+        } else if (index.tree.keyAt(node) == afterKey) {
+            // 同一成绩的记录按学号从小到大排列，二分查找第一个学号大于 afterId 的记录
+            long low = index.position(node) / MappedRecordFile.RECORD_SIZE;
+            long high = Math.min(index.cumulativeCount(node), dat2.getRecordCount());
+            while (low < high) {
+                long mid = (low + high) >>> 1;
+                if (dat2.idAt(mid) <= afterId) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            start = low;
+        } else {
+            start = index.position(node) / MappedRecordFile.RECORD_SIZE;
+        }
+        position = Math.min(end, Math.max(position, start));
+
+        while (addedIndex < added.size() && compare(added.get(addedIndex), afterKey, afterId) <= 0) {
+            addedIndex++;
+        }
+    }
+
+    /**
+     * 跳过 n 条记录
+     *
+     * @return 实际跳过的记录数
+     */
+    public long skip(long n) {
+        if (updatedIds.isEmpty()) {
+            long skipped = Math.min(n, end - position);
+            position += skipped;
+            return skipped;
+        }
+        long skipped = 0;
+        while (skipped < n && advance(null)) {
+            skipped++;
+        }
+        return skipped;
+    }
+
+    public boolean hasNext() {
+        skipUpdated();
+        return position < end || addedIndex < added.size();
+    }
+
+    /**
+     * 把之后最多 maxRecords 条记录按 20 字节记录格式写入 out（out 需要有足够的剩余空间）
+     *
+     * @return 写入的记录数，0 表示已经没有记录
+     */
+    public int next(ByteBuffer out, int maxRecords) {
+        int count = 0;
+        if (updatedIds.isEmpty()) {
+            // 没有增量数据：整段复制 dat2 中的原始记录
+            while (count < maxRecords && position < end) {
+                int batch = (int) Math.min(Math.min(maxRecords - count, end - position),
+                                           dat2.recordsLeftInSegment(position));
+                out.put(dat2.segment(position).slice(MappedRecordFile.offsetInSegment(position),
+                                                     batch * MappedRecordFile.RECORD_SIZE));
+                position += batch;
+                scanned += batch;
+                count += batch;
+            }
+            return count;
+        }
+        while (count < maxRecords && advance(out)) {
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * 读取下一条记录
+     *
+     * @return 下一条记录，没有更多记录时返回 null
+     */
+    public QueryByChineseScoreRange.Student next() {
+        ByteBuffer record = ByteBuffer.allocate(MappedRecordFile.RECORD_SIZE);
+        if (next(record, 1) == 0) {
+            return null;
+        }
+        QueryByChineseScoreRange.Student student = new QueryByChineseScoreRange.Student();
+        student.studentId = record.getInt(0);
+        student.chineseScore = record.getFloat(4);
+        student.mathScore = record.getFloat(8);
+        student.englishScore = record.getFloat(12);
+        student.comprehensiveScore = record.getFloat(16);
+        return student;
+    }
+
+    // 已读取的 dat2 记录数
+    public long getScanned() {
+        return scanned;
+    }
+
+    // 跳过 dat2 中被增量覆盖的旧记录
+    private void skipUpdated() {
+        while (position < end && !updatedIds.isEmpty() && updatedIds.contains(dat2.idAt(position))) {
+            position++;
+            scanned++;
+        }
+    }
+
+    // 按合并后的顺序输出下一条记录（out 为 null 时只跳过），没有更多记录时返回 false
+    private boolean advance(ByteBuffer out) {
+        skipUpdated();
+        QueryByStudentId.Student pending = addedIndex < added.size() ? added.get(addedIndex) : null;
+        if (position < end) {
+            ByteBuffer segment = dat2.segment(position);
+            int offset = MappedRecordFile.offsetInSegment(position);
+            int scoreKey = QueryBySubjectScoreRange.encodeScore(segment.getFloat(offset + 4));
+            if (pending == null || compare(pending, scoreKey, segment.getInt(offset)) > 0) {
+                if (out != null) {
+                    out.put(segment.slice(offset, MappedRecordFile.RECORD_SIZE));
+                }
+                position++;
+                scanned++;
+                return true;
+            }
+        }
+        if (pending == null) {
+            return false;
+        }
+        if (out != null) {
+            out.putInt(pending.studentId);
+            out.putFloat(pending.chineseScore);
+            out.putFloat(pending.mathScore);
+            out.putFloat(pending.englishScore);
+            out.putFloat(pending.comprehensiveScore);
+        }
+        addedIndex++;
+        return true;
+    }
+}
@@ -0,0 +1,221 @@
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 成绩范围查询的结果缓存（服务器使用，按最近最少使用淘汰）
+ *
+ * 键为 (科目, 最小成绩, 最大成绩, 是否返回学生列表)，成绩按索引键编码（-0.0 与 0.0 视为同一个成绩）。
+ * 缓存的是数据文件上的查询结果（不含增量数据），增量合并由调用方在每次查询时进行。
+ * 每个条目记录生成时使用的数据文件组，服务器切换到新的数据文件组（压缩或文件被替换后重新打开）后条目失效；
+ * 同一个键同时未命中时只执行一次查询，其他请求等待并共享该结果。
+ * 结果按估算的内存占用计入容量，单个结果超过容量时不缓存。
+ */
+public class RangeResultCache {
+
+    // 默认容量（字节）
+    static final long DEFAULT_CAPACITY = 64L * 1024 * 1024;
+
+    // 内存占用估算：每个学生对象（对象头 + 学号 + 4个成绩）加列表中的引用，以及每个条目的固定开销
+    private static final long BYTES_PER_STUDENT = 40;
+    private static final long BYTES_PER_ENTRY = 256;
+
+    // 缓存未命中时执行的查询
+    interface Loader {
+        QueryByChineseScoreRange.QueryResult load() throws IOException;
+    }
+
+    private static final class Key {
+        final int field;
+        final int minKey;
+        final int maxKey;
+        final boolean includeStudents;
+
+        Key(int field, float minScore, float maxScore, boolean includeStudents) {
+            this.field = field;
+            this.minKey = QueryBySubjectScoreRange.encodeScore(minScore);
+            this.maxKey = QueryBySubjectScoreRange.encodeScore(maxScore);
+            this.includeStudents = includeStudents;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return field == other.field && minKey == other.minKey && maxKey == other.maxKey
+                   && includeStudents == other.includeStudents;
+        }
+
+        @Override
+        public int hashCode() {
+            return ((field * 31 + minKey) * 31 + maxKey) * 2 + (includeStudents ? 1 : 0);
+        }
+    }
+
+    private static final class Entry {
+        final QueryByChineseScoreRange.QueryResult result;
+        final Object source;
+        final long bytes;
+
+        Entry(QueryByChineseScoreRange.QueryResult result, Object source) {
+            this.result = result;
+            this.source = source;
+            this.bytes = BYTES_PER_ENTRY + (result.students == null ? 0 : result.students.size() * BYTES_PER_STUDENT);
+        }
+    }
+
+    private final long capacity;
+    // 按访问顺序排列，最久未访问的在最前面；以下字段使用 this 加锁
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<Key, CompletableFuture<QueryByChineseScoreRange.QueryResult>> inFlight = new HashMap<>();
+    private long usedBytes;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong sharedMisses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public RangeResultCache(long capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * 查询缓存，未命中时执行 loader 并缓存结果
+     * 返回的结果被缓存共享，调用方不能修改
+     *
+     * @param source 生成结果所用的数据文件组（切换到新的数据文件后旧结果失效）
+     * @param cached 可为 null；返回时 cached[0] 表示结果是否来自缓存（包括等待其他请求的结果）
+     */
+    public QueryByChineseScoreRange.QueryResult get(int field, float minScore, float maxScore, boolean includeStudents,
+                                                    Object source, boolean[] cached,
+                                                    Loader loader) throws IOException {
+        Key key = new Key(field, minScore, maxScore, includeStudents);
+        CompletableFuture<QueryByChineseScoreRange.QueryResult> future;
+        boolean owner = false;
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                if (entry.source == source) {
+                    hits.incrementAndGet();
+                    setCached(cached, true);
+                    return entry.result;
+                }
+                entries.remove(key);
+                usedBytes -= entry.bytes;
+                invalidations.incrementAndGet();
+            }
+
+            future = inFlight.get(key);
+            if (future == null) {
+                future = new CompletableFuture<>();
+                inFlight.put(key, future);
+                owner = true;
+                misses.incrementAndGet();
+            } else {
+                sharedMisses.incrementAndGet();
+            }
+        }
+
+        if (!owner) {
+            setCached(cached, true);
+            return await(future);
+        }
+
+        setCached(cached, false);
+        QueryByChineseScoreRange.QueryResult result;
+        try {
+            result = loader.load();
+        } catch (IOException | RuntimeException e) {
+            synchronized (this) {
+                inFlight.remove(key);
+            }
+            future.completeExceptionally(e);
+            throw e;
+        }
+
+        synchronized (this) {
+            inFlight.remove(key);
+            Entry entry = new Entry(result, source);
+            if (entry.bytes <= capacity) {
+                Entry previous = entries.put(key, entry);
+                if (previous != null) {
+                    usedBytes -= previous.bytes;
+                }
+                usedBytes += entry.bytes;
+                evict();
+            }
+        }
+        future.complete(result);
+        return result;
+    }
+
+    private static void setCached(boolean[] cached, boolean value) {
+        if (cached != null) {
+            cached[0] = value;
+        }
+    }
+
+    // 等待同一个键正在执行的查询
+    private static QueryByChineseScoreRange.QueryResult await(
+            CompletableFuture<QueryByChineseScoreRange.QueryResult> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("等待查询结果时被中断");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw new IOException(cause.getMessage(), cause);
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    // 淘汰最久未访问的条目，直到占用不超过容量
+    private void evict() {
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (usedBytes > capacity && iterator.hasNext()) {
+            usedBytes -= iterator.next().bytes;
+            iterator.remove();
+            evictions.incrementAndGet();
+        }
+    }
+
+    /**
+     * 清空缓存（数据文件整组替换后调用）
+     */
+    public synchronized void clear() {
+        invalidations.addAndGet(entries.size());
+        entries.clear();
+        usedBytes = 0;
+    }
+
+    /**
+     * 输出缓存统计
+     */
+    public void report(PrintWriter out) {
+        long hitCount = hits.get();
+        long missCount = misses.get();
+        long sharedCount = sharedMisses.get();
+        long total = hitCount + missCount + sharedCount;
+        int entryCount;
+        long used;
+        synchronized (this) {
+            entryCount = entries.size();
+            used = usedBytes;
+        }
+        out.printf("结果缓存: 命中 %d，未命中 %d，等待相同查询 %d，命中率 %.1f%%，淘汰 %d，失效 %d%n",
+            hitCount, missCount, sharedCount, total == 0 ? 0.0 : 100.0 * (hitCount + sharedCount) / total,
+            evictions.get(), invalidations.get());
+        out.println("  条目 " + entryCount + " 个，约 " + used + " / " + capacity + " 字节");
+    }
+}
@@ -1,130 +1,1412 @@
 import java.io.*;
 import java.net.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 
-public class Server {
+class Server {
     public static void main(String[] args) {
+        // "--port <端口>" 指定监听端口（分片部署时同一台机器上的各节点使用不同端口），其余参数按位置解析
         int port = 12345;
+        List<String> positional = new ArrayList<>(Arrays.asList(args));
+        int portOption = positional.indexOf("--port");
+        if (portOption >= 0 && portOption + 1 < positional.size()) {
+            port = Integer.parseInt(positional.remove(portOption + 1));
+            positional.remove(portOption);
+            args = positional.toArray(new String[0]);
+        }
+
+        // 数据文件所在目录，默认与原先子进程的工作目录一致
+        String dataDir = args.length > 0 ? args[0] : System.getProperty("user.home") + "/DistributedSystemHw2";
+
+        // 查询工作线程数，默认等于CPU核数
+        int workerThreads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+
+        // 定期追加写入运行统计的文件（不指定时只能通过 stats 命令查看），以及写入间隔（秒）
+        String statsFile = args.length > 2 ? args[2] : null;
+        long statsInterval = args.length > 3 ? Long.parseLong(args[3]) : 60;
+
+        ExecutorService workers = Executors.newFixedThreadPool(workerThreads);
+        try (QueryEngine engine = new QueryEngine(new File(dataDir));
+             Selector selector = Selector.open();
+             ServerSocketChannel serverChannel = ServerSocketChannel.open()) {
+            serverChannel.bind(new InetSocketAddress(port), 1024);
+            serverChannel.configureBlocking(false);
+            serverChannel.register(selector, SelectionKey.OP_ACCEPT);
 
-        try (ServerSocket serverSocket = new ServerSocket(port)) {
             System.out.println("服务器启动，监听端口: " + port);
+            System.out.println("查询工作线程数: " + workerThreads);
+            if (statsFile != null) {
+                engine.getMetrics().startPeriodicDump(new File(statsFile), statsInterval);
+                System.out.println("运行统计每 " + statsInterval + " 秒写入: " + statsFile);
+            }
             System.out.println("等待客户端连接...");
 
-            while (true) {
-                Socket clientSocket = serverSocket.accept();
-                System.out.println("客户端连接成功: " + clientSocket.getInetAddress());
+            // 单线程 Selector 事件循环负责所有连接的读写，查询交给工作线程池执行
+            new ConnectionEventLoop(selector, workers, engine).run();
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            workers.shutdownNow();
+        }
+    }
+}
+
+// 常驻查询引擎：启动时打开 dat1、dat2 并加载索引，所有客户端线程共享
+// 新增或修改的学生信息写入增量数据（见 DeltaStore），查询时与数据文件合并；
+// 增量记录数达到阈值后在后台压缩线程中重新生成数据文件，完成后切换到新文件
+class QueryEngine implements Closeable {
+
+    // 一组数据文件和索引（压缩完成后整组替换）
+    private static class BaseFiles implements Closeable {
+        final File dat1File;
+        final File dat2File;
+        final File indexFile;
+        private final File dataDir;
+        // 打开时各数据文件的修改时间和大小（见 changed）
+        private final long[] stamp;
+        final FileChannel dat1Channel;
+        final QueryByStudentId.MappedDat1 dat1;
+        final FileChannel dat2Channel;
+        final MappedRecordFile dat2;
+        final QueryByChineseScoreRange.ScoreIndex scoreIndex;
+        // 各科目的二级索引（按科目编号，未生成索引文件的科目为 null）
+        final BPlusTreeIndex[] subjectIndexes = new BPlusTreeIndex[QueryBySubjectScoreRange.FIELD_NAMES.length];
+
+        BaseFiles(File dataDir) throws IOException {
+            this.dataDir = dataDir;
+            this.dat1File = new File(dataDir, "2353250-hw2.dat1");
+            this.dat2File = new File(dataDir, "2353250-hw2.dat2");
+            this.indexFile = new File(dataDir, "2353250-hw2.idx");
+            // 先记录文件状态再打开文件：打开期间文件被替换时，下次检查会再次重新加载
+            this.stamp = stamp(files());
+
+            // 检查文件是否存在
+            for (File file : new File[] {dat1File, dat2File, indexFile}) {
+                if (!file.exists()) {
+                    throw new FileNotFoundException("数据文件不存在: " + file.getPath());
+                }
+            }
 
-                // 为每个客户端创建新线程处理
-                new ClientHandler(clientSocket).start();
+            this.scoreIndex = QueryByChineseScoreRange.loadIndexFile(indexFile.getPath());
+            for (int field = 0; field < subjectIndexes.length; field++) {
+                File subjectIndexFile = new File(dataDir, QueryBySubjectScoreRange.indexFileName(field));
+                if (field != QueryBySubjectScoreRange.FIELD_CHINESE && subjectIndexFile.exists()) {
+                    subjectIndexes[field] = QueryBySubjectScoreRange.openIndex(subjectIndexFile);
+                    System.out.println("已加载" + QueryBySubjectScoreRange.FIELD_LABELS[field] + "成绩索引: "
+                                       + subjectIndexFile.getName());
+                }
+            }
+            this.dat1Channel = FileChannel.open(dat1File.toPath(), StandardOpenOption.READ);
+            try {
+                this.dat1 = new QueryByStudentId.MappedDat1(dat1Channel);
+                this.dat2Channel = FileChannel.open(dat2File.toPath(), StandardOpenOption.READ);
+            } catch (IOException e) {
+                dat1Channel.close();
+                throw e;
             }
+            try {
+                this.dat2 = new MappedRecordFile(dat2Channel);
+            } catch (IOException e) {
+                close();
+                throw e;
+            }
+        }
+
+        // 数据目录中查询使用的所有文件（包括尚未生成的二级索引文件）
+        private File[] files() {
+            List<File> files = new ArrayList<>(Arrays.asList(dat1File, dat2File, indexFile));
+            for (int field = 0; field < QueryBySubjectScoreRange.FIELD_NAMES.length; field++) {
+                if (field != QueryBySubjectScoreRange.FIELD_CHINESE) {
+                    files.add(new File(dataDir, QueryBySubjectScoreRange.indexFileName(field)));
+                }
+            }
+            return files.toArray(new File[0]);
+        }
+
+        // 文件的修改时间和大小（文件不存在时为 0）
+        private static long[] stamp(File[] files) {
+            long[] stamp = new long[files.length * 2];
+            for (int i = 0; i < files.length; i++) {
+                stamp[2 * i] = files[i].lastModified();
+                stamp[2 * i + 1] = files[i].length();
+            }
+            return stamp;
+        }
+
+        // 数据目录中的文件是否在打开之后被修改、替换、生成或删除
+        boolean changed() {
+            return !Arrays.equals(stamp, stamp(files()));
+        }
+
+        // 关闭文件通道（映射在不再被引用后才释放，正在进行的查询不受影响）
+        @Override
+        public void close() throws IOException {
+            try {
+                dat1Channel.close();
+            } finally {
+                dat2Channel.close();
+            }
+        }
+    }
+
+    private final File dataDir;
+    private final DeltaStore delta;
+    private volatile BaseFiles base;
+    // 数据文件上的范围查询结果缓存（不含增量数据）
+    private final RangeResultCache rangeCache = new RangeResultCache(RangeResultCache.DEFAULT_CAPACITY);
+    private final ServerMetrics metrics = new ServerMetrics(rangeCache);
+    // 后台压缩线程，同一时间最多一个压缩任务
+    private final ExecutorService compactor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "delta-compactor");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private boolean compactionScheduled;
+
+    // 检查数据文件是否在服务器之外被替换（如重新运行 BuildAllData）的间隔（毫秒）
+    private static final long RELOAD_CHECK_INTERVAL = 1000;
+    private volatile long nextReloadCheck;
+    private boolean reloadScheduled;
+
+    public QueryEngine(File dataDir) throws IOException {
+        this.dataDir = dataDir;
+        this.base = new BaseFiles(dataDir);
+        try {
+            this.delta = new DeltaStore(dataDir);
         } catch (IOException e) {
-            e.printStackTrace();
+            base.close();
+            throw e;
+        }
+        int pending = delta.snapshot().active.size();
+        if (pending > 0) {
+            System.out.println("已加载增量记录: " + pending + " 条");
+        }
+    }
+
+    public ServerMetrics getMetrics() {
+        return metrics;
+    }
+
+    public QueryByStudentId.QueryResult queryStudentById(int studentId) throws IOException {
+        // 先取增量快照再取数据文件：压缩期间看到的要么是旧文件 + 压缩层，要么是已包含压缩层的新文件
+        DeltaStore.Layers layers = delta.snapshot();
+        QueryByStudentId.Student updated = layers.get(studentId);
+        if (updated != null) {
+            return new QueryByStudentId.QueryResult(updated, 0);
+        }
+        return QueryByStudentId.queryStudentById(baseFiles().dat1, studentId);
+    }
+
+    /**
+     * 批量查询多个学号（按请求顺序返回，增量中的记录优先）
+     */
+    public QueryByStudentId.BatchResult queryStudentsByIds(int[] studentIds) {
+        DeltaStore.Layers layers = delta.snapshot();
+        QueryByStudentId.BatchResult result = QueryByStudentId.queryStudentsByIds(baseFiles().dat1, studentIds);
+        if (!layers.isEmpty()) {
+            for (int i = 0; i < studentIds.length; i++) {
+                QueryByStudentId.Student updated = layers.get(studentIds[i]);
+                if (updated != null) {
+                    result.students[i] = updated;
+                }
+            }
+        }
+        return result;
+    }
+
+    public QueryByChineseScoreRange.QueryResult queryByChineseScoreRange(float minScore, float maxScore) throws IOException {
+        return queryByChineseScoreRange(minScore, maxScore, true);
+    }
+
+    /**
+     * @param includeStudents false 时只统计人数和平均成绩，不返回学生列表
+     */
+    public QueryByChineseScoreRange.QueryResult queryByChineseScoreRange(float minScore, float maxScore,
+                                                                         boolean includeStudents) throws IOException {
+        return queryByScoreRange(QueryBySubjectScoreRange.FIELD_CHINESE, minScore, maxScore, includeStudents);
+    }
+
+    /**
+     * 任意科目的成绩范围查询：语文成绩使用 dat2 和 idx，其他科目使用二级索引和 dat1
+     *
+     * @param field 科目编号（QueryBySubjectScoreRange.FIELD_*）
+     * @param includeStudents false 时只统计人数和平均成绩，不返回学生列表
+     */
+    public QueryByChineseScoreRange.QueryResult queryByScoreRange(int field, float minScore, float maxScore,
+                                                                  boolean includeStudents) throws IOException {
+        DeltaStore.Layers layers = delta.snapshot();
+        BaseFiles files = baseFiles();
+
+        if (field != QueryBySubjectScoreRange.FIELD_CHINESE && files.subjectIndexes[field] == null) {
+            throw new FileNotFoundException("索引文件不存在: " + QueryBySubjectScoreRange.indexFileName(field)
+                                            + "，请先运行 BuildSecondaryIndex");
+        }
+
+        boolean[] cached = new boolean[1];
+        QueryByChineseScoreRange.QueryResult baseResult = rangeCache.get(field, minScore, maxScore, includeStudents,
+            files, cached, () -> queryBaseFiles(files, field, minScore, maxScore, includeStudents));
+
+        long scanned = 0;
+        int lookups = 0;
+        if (!cached[0]) {
+            if (field == QueryBySubjectScoreRange.FIELD_CHINESE) {
+                // 索引定位范围两端，只统计人数时不读取 dat2
+                lookups = 2;
+                scanned = includeStudents
+                          ? (baseResult.endBytePos - baseResult.startBytePos) / MappedRecordFile.RECORD_SIZE : 0;
+            } else {
+                // 索引定位范围起点后顺序遍历，每个条目读取一条 dat1 记录
+                lookups = 1;
+                scanned = includeStudents ? baseResult.studentCount : 0;
+            }
+        }
+
+        // 缓存中的结果被多个查询共享，合并增量前复制学生列表
+        QueryByChineseScoreRange.QueryResult result = copyOf(baseResult, !layers.isEmpty(), cached[0]);
+        if (!layers.isEmpty()) {
+            mergeDelta(result, layers.merged(), files.dat1, field, minScore, maxScore);
+        }
+        metrics.recordRangeQuery(scanned, result.students == null ? 0 : result.students.size(), lookups);
+        return result;
+    }
+
+    /**
+     * 指定科目成绩最高的 k 个学生（合并增量数据）：语文读取 dat2 的开头，其他科目并行扫描 dat1
+     */
+    public QueryTopStudents.QueryResult queryTopStudents(int field, int k) {
+        DeltaStore.Layers layers = delta.snapshot();
+        BaseFiles files = baseFiles();
+        long recordCount = files.dat1.getRecordCount();
+        if (layers.isEmpty()) {
+            QueryTopStudents.QueryResult result = queryTopBaseFiles(files, field, (int) Math.min(k, recordCount));
+            metrics.recordRangeQuery(result.scanned, result.students.size(), 0);
+            return result;
+        }
+
+        // 被修改学生在数据文件中的记录（同一学号可能有多条）都会失效，多取这么多条候选即可（不超过数据文件的记录数）
+        NavigableMap<Integer, QueryByStudentId.Student> updates = layers.merged();
+        long invalidated = 0;
+        for (int studentId : updates.keySet()) {
+            invalidated += files.dat1.countOf(studentId);
+        }
+        QueryTopStudents.QueryResult result = queryTopBaseFiles(files, field,
+            (int) Math.min(k + invalidated, recordCount));
+
+        long startTime = System.currentTimeMillis();
+        List<QueryByChineseScoreRange.Student> students = result.students;
+        students.removeIf(student -> updates.containsKey(student.studentId));
+        for (QueryByStudentId.Student student : updates.values()) {
+            students.add(QueryBySubjectScoreRange.toRangeStudent(student));
+        }
+        students.sort((a, b) -> MergeSortStudentData.compareStudents(
+            a.studentId, QueryBySubjectScoreRange.score(a, field), b.studentId, QueryBySubjectScoreRange.score(b, field)));
+        if (students.size() > k) {
+            result.students = new ArrayList<>(students.subList(0, k));
+        }
+        result.queryTime += System.currentTimeMillis() - startTime;
+
+        metrics.recordRangeQuery(result.scanned, result.students.size(), 0);
+        return result;
+    }
+
+    private static QueryTopStudents.QueryResult queryTopBaseFiles(BaseFiles files, int field, int k) {
+        if (field == QueryBySubjectScoreRange.FIELD_CHINESE) {
+            return QueryTopStudents.topByChineseScore(files.dat2, k);
+        }
+        return QueryTopStudents.topByScan(files.dat1, field, k);
+    }
+
+    /**
+     * 打开语文成绩范围的流式游标（合并当前的增量数据，不使用结果缓存）
+     * 游标持有打开时的数据文件映射，之后压缩切换数据文件不影响正在进行的读取
+     */
+    public RangeCursor openRangeCursor(float minScore, float maxScore) {
+        DeltaStore.Layers layers = delta.snapshot();
+        BaseFiles files = baseFiles();
+        if (layers.isEmpty()) {
+            return new RangeCursor(files.scoreIndex, files.dat2, minScore, maxScore);
+        }
+        return new RangeCursor(files.scoreIndex, files.dat2, minScore, maxScore, layers.merged());
+    }
+
+    // 在数据文件上执行范围查询（不含增量数据）
+    private static QueryByChineseScoreRange.QueryResult queryBaseFiles(BaseFiles files, int field, float minScore,
+                                                                       float maxScore, boolean includeStudents) {
+        if (field == QueryBySubjectScoreRange.FIELD_CHINESE) {
+            return QueryByChineseScoreRange.queryByChineseScoreRange(files.scoreIndex, files.dat2,
+                                                                     minScore, maxScore, includeStudents);
+        }
+        return QueryBySubjectScoreRange.queryByScoreRange(files.subjectIndexes[field], files.dat1,
+                                                          minScore, maxScore, includeStudents);
+    }
+
+    private static QueryByChineseScoreRange.QueryResult copyOf(QueryByChineseScoreRange.QueryResult source,
+                                                               boolean copyStudents, boolean cached) {
+        List<QueryByChineseScoreRange.Student> students = source.students;
+        if (copyStudents && students != null) {
+            students = new ArrayList<>(students);
+        }
+        QueryByChineseScoreRange.QueryResult result = new QueryByChineseScoreRange.QueryResult(
+            source.studentCount, source.averageScore, cached ? 0 : source.queryTime, students);
+        result.totalScore = source.totalScore;
+        result.startBytePos = source.startBytePos;
+        result.endBytePos = source.endBytePos;
+        return result;
+    }
+
+    /**
+     * 把增量记录合并进数据文件的查询结果：
+     * 被修改学生的旧记录在范围内时移出结果，新记录在范围内时加入结果
+     * 学生列表保持与 dat2 相同的顺序（成绩从高到低，相同成绩按学号从小到大）
+     */
+    private static void mergeDelta(QueryByChineseScoreRange.QueryResult result,
+                                   NavigableMap<Integer, QueryByStudentId.Student> updates,
+                                   QueryByStudentId.MappedDat1 dat1, int field, float minScore, float maxScore) {
+        long startTime = System.currentTimeMillis();
+
+        Set<Integer> removedIds = new HashSet<>();
+        List<QueryByChineseScoreRange.Student> added = new ArrayList<>();
+        for (QueryByStudentId.Student student : updates.values()) {
+            // 数据文件中同一学号可能有多条相邻的记录，都是旧记录
+            for (long index = dat1.findFirst(student.studentId);
+                 index >= 0 && index < dat1.getRecordCount() && dat1.idAt(index) == student.studentId; index++) {
+                float oldScore = QueryBySubjectScoreRange.score(dat1.studentAt(index), field);
+                if (oldScore >= minScore && oldScore <= maxScore) {
+                    removedIds.add(student.studentId);
+                    result.studentCount--;
+                    result.totalScore -= oldScore;
+                }
+            }
+
+            float newScore = QueryBySubjectScoreRange.score(student, field);
+            if (newScore >= minScore && newScore <= maxScore) {
+                result.studentCount++;
+                result.totalScore += newScore;
+                if (result.students != null) {
+                    added.add(QueryBySubjectScoreRange.toRangeStudent(student));
+                }
+            }
+        }
+
+        if (result.students != null && (!removedIds.isEmpty() || !added.isEmpty())) {
+            if (!removedIds.isEmpty()) {
+                result.students.removeIf(student -> removedIds.contains(student.studentId));
+            }
+            result.students.addAll(added);
+            // 原结果已有序，新增部分为一段，排序只需一次归并
+            result.students.sort(Comparator
+                .comparingInt((QueryByChineseScoreRange.Student student) ->
+                    QueryBySubjectScoreRange.encodeScore(QueryBySubjectScoreRange.score(student, field)))
+                .thenComparingInt(student -> student.studentId));
+        }
+
+        result.averageScore = result.studentCount == 0 ? 0.0 : result.totalScore / result.studentCount;
+        result.queryTime += System.currentTimeMillis() - startTime;
+    }
+
+    /**
+     * 新增或修改一批学生信息（写入增量文件后立即对查询可见），增量达到阈值时安排后台压缩
+     *
+     * @return 当前未压缩的增量记录数
+     */
+    public int upsertStudents(Collection<QueryByStudentId.Student> students) throws IOException {
+        int pending = delta.upsert(students);
+        if (pending >= DeltaStore.COMPACTION_THRESHOLD) {
+            scheduleCompaction();
+        }
+        return pending;
+    }
+
+    private synchronized void scheduleCompaction() {
+        if (compactionScheduled) {
+            return;
+        }
+        compactionScheduled = true;
+        compactor.execute(() -> {
+            try {
+                compact();
+            } catch (IOException | RuntimeException e) {
+                System.err.println("增量压缩失败: " + e.getMessage());
+                e.printStackTrace();
+            } finally {
+                synchronized (this) {
+                    compactionScheduled = false;
+                }
+            }
+        });
+    }
+
+    /**
+     * 当前的数据文件组
+     * 每隔 RELOAD_CHECK_INTERVAL 检查一次文件是否在打开之后变化，变化时由压缩线程重新打开并切换，
+     * 之后的查询使用新文件（结果缓存按数据文件组区分，切换后旧结果不再命中）
+     */
+    private BaseFiles baseFiles() {
+        BaseFiles files = base;
+        long now = System.currentTimeMillis();
+        if (now >= nextReloadCheck) {
+            nextReloadCheck = now + RELOAD_CHECK_INTERVAL;
+            if (files.changed()) {
+                scheduleReload();
+            }
+        }
+        return files;
+    }
+
+    private synchronized void scheduleReload() {
+        if (reloadScheduled) {
+            return;
+        }
+        reloadScheduled = true;
+        compactor.execute(() -> {
+            try {
+                // 压缩切换后文件已是最新，不需要再次打开
+                if (base.changed()) {
+                    swapBaseFiles();
+                    System.out.println("数据文件已变化，已重新加载");
+                }
+            } catch (IOException | RuntimeException e) {
+                System.err.println("重新加载数据文件失败: " + e.getMessage());
+                e.printStackTrace();
+            } finally {
+                synchronized (this) {
+                    reloadScheduled = false;
+                }
+            }
+        });
+    }
+
+    // 打开数据目录中的文件并切换，清空结果缓存后关闭旧文件（在压缩线程中执行）
+    private void swapBaseFiles() throws IOException {
+        BaseFiles oldFiles = base;
+        base = new BaseFiles(dataDir);
+        rangeCache.clear();
+        oldFiles.close();
+    }
+
+    // 把增量合并进数据文件并切换到新文件（在压缩线程中执行）
+    private void compact() throws IOException {
+        long startTime = System.currentTimeMillis();
+
+        NavigableMap<Integer, QueryByStudentId.Student> updates = delta.freeze();
+        if (updates == null) {
+            return;
+        }
+        UpdateStudentData.rewriteDataFiles(dataDir, updates);
+
+        swapBaseFiles();
+        delta.release();
+
+        System.out.println("增量压缩完成: 合并 " + updates.size() + " 条记录，耗时 "
+                           + (System.currentTimeMillis() - startTime) + " 毫秒");
+    }
+
+    @Override
+    public void close() throws IOException {
+        compactor.shutdownNow();
+        try {
+            base.close();
+        } finally {
+            delta.close();
         }
     }
 }
 
-// 客户端处理线程
-class ClientHandler extends Thread {
-    private Socket clientSocket;
+// NIO 事件循环：一个 Selector 线程管理全部连接
+// 空闲连接只占用一个 SocketChannel 和少量会话状态，不占用线程
+class ConnectionEventLoop implements Runnable {
+    private final Selector selector;
+    private final ExecutorService workers;
+    private final QueryEngine engine;
+
+    // 所有连接共用的读缓冲区（只在事件循环线程中使用）
+    private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(16 * 1024);
+
+    // 工作线程产生了待发送数据的会话，由事件循环线程注册 OP_WRITE
+    private final Queue<ClientSession> pendingWrites = new ConcurrentLinkedQueue<>();
 
-    public ClientHandler(Socket socket) {
-        this.clientSocket = socket;
+    public ConnectionEventLoop(Selector selector, ExecutorService workers, QueryEngine engine) {
+        this.selector = selector;
+        this.workers = workers;
+        this.engine = engine;
     }
 
     public void run() {
-        try (
-            BufferedReader in = new BufferedReader(
-                new InputStreamReader(clientSocket.getInputStream()));
-            PrintWriter out = new PrintWriter(clientSocket.getOutputStream(), true)
-        ) {
-            String inputLine;
-            out.println("欢迎连接到服务器！输入 'bye' 退出");
-
-            while ((inputLine = in.readLine()) != null) {
-                System.out.println("收到客户端消息: " + inputLine);
-
-                if ("bye".equalsIgnoreCase(inputLine)) {
-                    out.println("Bye!");
-                    break;
-                }
-
-                if (inputLine.equals("id")) {
-                    out.println("请输入要查询的学生id");
-                    if((inputLine = in.readLine()) != null) {
-                        try {
-                            int studentId = Integer.parseInt(inputLine);
-                            ProcessBuilder pb = new ProcessBuilder("java", "QueryByStudentId.java", String.valueOf(studentId));
-                            pb.directory(new File(System.getProperty("user.home") + "/DistributedSystemHw2"));
-                            pb.redirectErrorStream(true);
-                            Process process = pb.start();
-
-                            // 读取子进程的输出
-                            BufferedReader processOutput = new BufferedReader(
-                                new InputStreamReader(process.getInputStream()));
-                            String line;
-                            while ((line = processOutput.readLine()) != null) {
-                                out.println(line);
-                            }
-                            process.waitFor();
-                        } catch (InterruptedException e) {
-                            out.println("查询被中断");
-                            Thread.currentThread().interrupt();
-                        } catch (NumberFormatException e) {
-                            out.println("请输入有效的学号（整数）");
+        while (selector.isOpen()) {
+            try {
+                selector.select();
+            } catch (IOException e) {
+                e.printStackTrace();
+                return;
+            }
+
+            // 为有待发送数据的会话打开写事件
+            ClientSession pending;
+            while ((pending = pendingWrites.poll()) != null) {
+                SelectionKey key = pending.key;
+                if (key.isValid()) {
+                    key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+                }
+            }
+
+            Iterator<SelectionKey> iterator = selector.selectedKeys().iterator();
+            while (iterator.hasNext()) {
+                SelectionKey key = iterator.next();
+                iterator.remove();
+
+                try {
+                    if (key.isAcceptable()) {
+                        accept((ServerSocketChannel) key.channel());
+                    } else {
+                        ClientSession session = (ClientSession) key.attachment();
+                        if (key.isReadable()) {
+                            read(session);
                         }
+                        if (key.isValid() && key.isWritable()) {
+                            write(session);
+                        }
+                    }
+                } catch (IOException e) {
+                    if (key.attachment() instanceof ClientSession) {
+                        close((ClientSession) key.attachment());
+                    } else {
+                        e.printStackTrace();
                     }
                 }
-                else if (inputLine.equals("score")) {
-                    out.println("请输入要查询的最小语文成绩:");
-                    String minScoreStr = in.readLine();
-                    if (minScoreStr != null) {
-                        out.println("请输入要查询的最大语文成绩:");
-                        String maxScoreStr = in.readLine();
-                        if (maxScoreStr != null) {
-                            try {
-                                float minScore = Float.parseFloat(minScoreStr);
-                                float maxScore = Float.parseFloat(maxScoreStr);
-
-                                if (minScore > maxScore) {
-                                    out.println("错误: 最小成绩不能大于最大成绩");
-                                } else {
-                                    ProcessBuilder pb = new ProcessBuilder("java", "QueryByChineseScoreRange.java",
-                                        String.valueOf(minScore), String.valueOf(maxScore));
-                                    pb.directory(new File(System.getProperty("user.home") + "/DistributedSystemHw2"));
-                                    pb.redirectErrorStream(true);
-                                    Process process = pb.start();
-
-                                    // 读取子进程的输出
-                                    BufferedReader processOutput = new BufferedReader(
-                                        new InputStreamReader(process.getInputStream()));
-                                    String line;
-                                    while ((line = processOutput.readLine()) != null) {
-                                        out.println(line);
-                                    }
-                                    process.waitFor();
-                                }
-                            } catch (InterruptedException e) {
-                                out.println("查询被中断");
-                                Thread.currentThread().interrupt();
-                            } catch (NumberFormatException e) {
-                                out.println("请输入有效的分数（浮点数）");
-                            }
-                        }
+            }
+        }
+    }
+
+    private void accept(ServerSocketChannel serverChannel) throws IOException {
+        SocketChannel channel;
+        while ((channel = serverChannel.accept()) != null) {
+            channel.configureBlocking(false);
+            System.out.println("客户端连接成功: " + channel.socket().getInetAddress());
+            engine.getMetrics().connectionOpened();
+
+            ClientSession session = new ClientSession(channel, new ClientHandler(engine), this);
+            session.key = channel.register(selector, SelectionKey.OP_READ, session);
+            session.start();
+        }
+    }
+
+    private void read(ClientSession session) throws IOException {
+        readBuffer.clear();
+        int bytesRead = session.channel.read(readBuffer);
+        if (bytesRead < 0) {
+            close(session);
+            return;
+        }
+        readBuffer.flip();
+        session.receive(readBuffer);
+    }
+
+    private void write(ClientSession session) throws IOException {
+        if (session.flush()) {
+            if (session.isClosing()) {
+                close(session);
+            } else {
+                session.key.interestOps(SelectionKey.OP_READ);
+            }
+        }
+    }
+
+    private void close(ClientSession session) {
+        session.key.cancel();
+        if (!session.channel.isOpen()) {
+            return;
+        }
+        engine.getMetrics().connectionClosed();
+        try {
+            session.channel.close();
+            System.out.println("客户端连接关闭: " + session.channel.socket().getInetAddress());
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // 工作线程调用：提交会话的输入处理任务
+    void submit(Runnable task) {
+        workers.execute(task);
+    }
+
+    // 工作线程调用：会话有数据待发送
+    void requestWrite(ClientSession session) {
+        pendingWrites.add(session);
+        selector.wakeup();
+    }
+}
+
+// 分段生成的回复：每次调用返回下一段数据，全部生成后返回 null
+interface ResponseStream {
+    ByteBuffer next();
+
+    // 只有一段数据的回复
+    static ResponseStream of(ByteBuffer data) {
+        ByteBuffer[] remaining = {data};
+        return () -> {
+            ByteBuffer next = remaining[0];
+            remaining[0] = null;
+            return next;
+        };
+    }
+}
+
+// 单个连接的会话状态：未完成的输入、待处理的请求和待发送的回复
+// 流式回复按待发送数据量控制生成速度：超过 HIGH_WATER_MARK 时暂停生成并释放工作线程，
+// 事件循环把数据写到 LOW_WATER_MARK 以下后再恢复
+class ClientSession {
+    static final int HIGH_WATER_MARK = 256 * 1024;
+    static final int LOW_WATER_MARK = 64 * 1024;
+
+    final SocketChannel channel;
+    SelectionKey key;
+    private final ClientHandler handler;
+    private final ConnectionEventLoop eventLoop;
+
+    // 以下字段只在事件循环线程中访问
+    // 尚未遇到换行符的输入字节
+    private final ByteArrayOutputStream partialLine = new ByteArrayOutputStream(0);
+    private boolean lastWasCarriageReturn;
+    // 是否已切换到二进制协议，以及尚未收完的二进制帧
+    private boolean binaryMode;
+    private ByteBuffer partialFrame;
+
+    // 以下字段由事件循环线程和工作线程共同访问，使用 this 加锁
+    private final Deque<Runnable> pendingRequests = new ArrayDeque<>();
+    private final Deque<ByteBuffer> outbound = new ArrayDeque<>();
+    private long outboundBytes;
+    private boolean processing;
+    private boolean closing;
+    // 因待发送数据过多而暂停的流式回复
+    private boolean suspended;
+
+    // 正在生成的流式回复，以及回复是否已改用二进制帧（只在持有处理权的工作线程中访问）
+    private ResponseStream stream;
+    private boolean binaryReplies;
+
+    public ClientSession(SocketChannel channel, ClientHandler handler, ConnectionEventLoop eventLoop) {
+        this.channel = channel;
+        this.handler = handler;
+        this.eventLoop = eventLoop;
+    }
+
+    // 发送欢迎信息
+    void start() {
+        StringWriter text = new StringWriter();
+        handler.welcome(new PrintWriter(text));
+        send(text.toString());
+    }
+
+    // 处理收到的字节，拆分为文本行或二进制帧
+    void receive(ByteBuffer bytes) {
+        if (binaryMode) {
+            receiveFrames(bytes);
+        } else {
+            receiveLines(bytes);
+        }
+    }
+
+    // 按行切分收到的字节（与 BufferedReader.readLine 一致：\n、\r 或 \r\n 结尾）
+    private void receiveLines(ByteBuffer bytes) {
+        while (bytes.hasRemaining()) {
+            byte b = bytes.get();
+            if (b == '\n' && lastWasCarriageReturn) {
+                lastWasCarriageReturn = false;
+                continue;
+            }
+            lastWasCarriageReturn = b == '\r';
+            if (b == '\n' || b == '\r') {
+                String line = new String(partialLine.toByteArray(), Charset.defaultCharset());
+                partialLine.reset();
+
+                if (line.equals(BinaryProtocol.SWITCH_COMMAND)) {
+                    // 切换到二进制协议，同一批数据中剩余的字节按二进制帧处理
+                    binaryMode = true;
+                    partialFrame = ByteBuffer.allocate(64);
+                    enqueue(() -> {
+                        binaryReplies = true;
+                        send(handler.switchToBinary());
+                    });
+                    if (b == '\r' && bytes.hasRemaining() && bytes.get(bytes.position()) == '\n') {
+                        bytes.get();
                     }
+                    receiveFrames(bytes);
+                    return;
+                }
+                enqueue(() -> processLine(line));
+            } else {
+                partialLine.write(b);
+            }
+        }
+    }
+
+    // 按长度前缀切分二进制帧
+    private void receiveFrames(ByteBuffer bytes) {
+        while (bytes.hasRemaining()) {
+            // 先收齐4字节长度
+            if (partialFrame.position() < 4) {
+                while (partialFrame.position() < 4 && bytes.hasRemaining()) {
+                    partialFrame.put(bytes.get());
                 }
-                else {
-                    out.println("服务器收到: " + inputLine);
+                if (partialFrame.position() < 4) {
+                    return;
                 }
+                int length = partialFrame.getInt(0);
+                if (length < BinaryProtocol.HEADER_SIZE || length > BinaryProtocol.MAX_REQUEST_LENGTH) {
+                    // 非法帧，之后的数据无法再对齐，回复错误后断开
+                    enqueue(() -> {
+                        send(BinaryProtocol.encodeError(-1, "非法的请求帧长度: " + length));
+                        markClosing();
+                    });
+                    bytes.position(bytes.limit());
+                    return;
+                }
+                if (partialFrame.capacity() < 4 + length) {
+                    ByteBuffer larger = ByteBuffer.allocate(4 + length);
+                    partialFrame.flip();
+                    larger.put(partialFrame);
+                    partialFrame = larger;
+                }
+                partialFrame.limit(4 + length);
             }
-        } catch (IOException e) {
+
+            int count = Math.min(partialFrame.remaining(), bytes.remaining());
+            ByteBuffer slice = bytes.slice();
+            slice.limit(count);
+            partialFrame.put(slice);
+            bytes.position(bytes.position() + count);
+
+            if (!partialFrame.hasRemaining()) {
+                partialFrame.flip();
+                partialFrame.position(4);
+                ByteBuffer frame = ByteBuffer.allocate(partialFrame.remaining());
+                frame.put(partialFrame).flip();
+                partialFrame.clear();
+                enqueue(() -> processFrame(frame));
+            }
+        }
+    }
+
+    private synchronized void enqueue(Runnable request) {
+        if (closing) {
+            return;
+        }
+        pendingRequests.add(request);
+        if (!processing) {
+            processing = true;
+            eventLoop.submit(this::processRequests);
+        }
+    }
+
+    // 在工作线程中按到达顺序处理该会话的所有待处理请求
+    private void processRequests() {
+        try {
+            while (true) {
+                // 先写完当前的流式回复，暂停时释放工作线程，由事件循环恢复
+                if (stream != null && !continueStream()) {
+                    return;
+                }
+
+                Runnable request;
+                synchronized (this) {
+                    request = pendingRequests.poll();
+                    if (request == null || closing) {
+                        processing = false;
+                        return;
+                    }
+                }
+                request.run();
+            }
+        } catch (Throwable e) {
+            abort(e);
+        }
+    }
+
+    // 处理请求或生成流式回复时出现无法恢复的错误（流式回复已发出一部分、内存不足等）：
+    // 放弃当前回复和之后的请求，回复错误后关闭连接
+    private void abort(Throwable error) {
+        error.printStackTrace();
+        stream = null;
+        synchronized (this) {
+            pendingRequests.clear();
+            processing = false;
+            suspended = false;
+            closing = true;
+        }
+        String message = "服务器内部错误: " + error;
+        try {
+            if (binaryReplies) {
+                send(BinaryProtocol.encodeError(-1, message));
+            } else {
+                send(message + System.lineSeparator());
+            }
+        } catch (Throwable e) {
+            // 无法生成错误信息时直接关闭连接
+            eventLoop.requestWrite(this);
+        }
+    }
+
+    // 生成流式回复的后续数据，全部生成返回 true；待发送数据过多而暂停或连接正在关闭时返回 false
+    private boolean continueStream() {
+        while (true) {
+            synchronized (this) {
+                if (closing) {
+                    stream = null;
+                    processing = false;
+                    return false;
+                }
+                if (outboundBytes > HIGH_WATER_MARK) {
+                    suspended = true;
+                    return false;
+                }
+            }
+            ByteBuffer data = stream.next();
+            if (data == null) {
+                stream = null;
+                return true;
+            }
+            send(data);
+        }
+    }
+
+    // 处理一个二进制请求帧，处理时出现异常则回复该请求失败，连接继续可用
+    private void processFrame(ByteBuffer frame) {
+        int requestId = frame.getInt(0);
+        try {
+            stream = handler.handleFrame(frame);
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+            send(BinaryProtocol.encodeError(requestId, "服务器内部错误: " + e));
+        }
+    }
+
+    private void processLine(String line) {
+        StringWriter text = new StringWriter();
+        boolean keepOpen = true;
+        try (PrintWriter out = new PrintWriter(text)) {
+            keepOpen = handler.handleLine(line, out);
+        } catch (RuntimeException e) {
             e.printStackTrace();
+            text.write("服务器内部错误: " + e + System.lineSeparator());
+        }
+
+        if (!keepOpen) {
+            markClosing();
+        }
+        send(text.toString());
+    }
+
+    private synchronized void markClosing() {
+        closing = true;
+    }
+
+    private void send(String text) {
+        if (text.isEmpty()) {
+            return;
+        }
+        send(ByteBuffer.wrap(text.getBytes(Charset.defaultCharset())));
+    }
+
+    private void send(ByteBuffer data) {
+        synchronized (this) {
+            outbound.add(data);
+            outboundBytes += data.remaining();
+        }
+        eventLoop.requestWrite(this);
+    }
+
+    // 在事件循环线程中写出待发送数据，全部写完返回 true
+    synchronized boolean flush() throws IOException {
+        try {
+            while (!outbound.isEmpty()) {
+                ByteBuffer buffer = outbound.peek();
+                outboundBytes -= channel.write(buffer);
+                if (buffer.hasRemaining()) {
+                    return false;
+                }
+                outbound.poll();
+            }
+            return true;
         } finally {
-            try {
-                clientSocket.close();
-                System.out.println("客户端连接关闭: " + clientSocket.getInetAddress());
-            } catch (IOException e) {
-                e.printStackTrace();
+            if (suspended && outboundBytes <= LOW_WATER_MARK) {
+                suspended = false;
+                eventLoop.submit(this::processRequests);
+            }
+        }
+    }
+
+    synchronized boolean isClosing() {
+        return closing;
+    }
+}
+
+// 客户端命令处理（文本交互协议的状态机，每个连接一个实例）
+class ClientHandler {
+    // 等待命令
+    private static final int STATE_COMMAND = 0;
+    // 已收到 id，等待学号
+    private static final int STATE_STUDENT_ID = 1;
+    // 已收到 score，等待最小成绩
+    private static final int STATE_MIN_SCORE = 2;
+    // 已收到最小成绩，等待最大成绩
+    private static final int STATE_MAX_SCORE = 3;
+    // 已收到 update，等待学生信息
+    private static final int STATE_UPDATE = 4;
+    // 已收到 top，等待科目和人数
+    private static final int STATE_TOP = 5;
+    // 已收到 ids，等待学号列表
+    private static final int STATE_BATCH_ID = 6;
+
+    // 流式范围查询每个响应帧的最大记录数
+    private static final int STREAM_BATCH = 1024;
+
+    private final QueryEngine engine;
+    private final ServerMetrics metrics;
+    private int state = STATE_COMMAND;
+    private String minScoreStr;
+    // 当前成绩范围查询的科目，以及是否只统计人数和平均成绩（count 命令）
+    private int field;
+    private boolean countOnly;
+
+    public ClientHandler(QueryEngine engine) {
+        this.engine = engine;
+        this.metrics = engine.getMetrics();
+    }
+
+    public void welcome(PrintWriter out) {
+        out.println("欢迎连接到服务器！输入 'bye' 退出");
+    }
+
+    /**
+     * 客户端请求切换到二进制协议，返回确认行
+     */
+    public String switchToBinary() {
+        System.out.println("收到客户端消息: " + BinaryProtocol.SWITCH_COMMAND);
+        state = STATE_COMMAND;
+        return BinaryProtocol.SWITCH_ACK + System.lineSeparator();
+    }
+
+    /**
+     * 处理一个二进制请求帧（不含长度字段），返回响应帧（流式范围查询为多个帧）
+     */
+    public ResponseStream handleFrame(ByteBuffer frame) {
+        long startTime = System.nanoTime();
+        int requestId = frame.getInt();
+        byte type = frame.get();
+
+        if (type == BinaryProtocol.TYPE_RANGE_STREAM && frame.remaining() == BinaryProtocol.RANGE_STREAM_PARAMS_SIZE) {
+            return streamRange(requestId, frame, startTime);
+        }
+
+        ByteBuffer response = processFrame(requestId, type, frame);
+        // 响应帧: int 帧长度 | int 请求ID | byte 状态
+        metrics.recordCommand(binaryCommand(type), System.nanoTime() - startTime,
+                              response.get(8) != BinaryProtocol.STATUS_OK);
+        return ResponseStream.of(response);
+    }
+
+    /**
+     * 流式语文成绩范围查询：每帧最多 STREAM_BATCH 条记录，边读取边发送，不生成学生列表
+     */
+    private ResponseStream streamRange(int requestId, ByteBuffer frame, long startTime) {
+        float minScore = frame.getFloat();
+        float maxScore = frame.getFloat();
+        int offset = frame.getInt();
+        int limit = frame.getInt();
+        boolean hasAfter = frame.get() != 0;
+        float afterScore = frame.getFloat();
+        int afterId = frame.getInt();
+
+        String error = minScore > maxScore ? "最小成绩不能大于最大成绩"
+                       : offset < 0 ? "跳过条数不能为负数" : null;
+        if (error != null) {
+            metrics.recordCommand(ServerMetrics.CMD_STREAM, System.nanoTime() - startTime, true);
+            return ResponseStream.of(BinaryProtocol.encodeError(requestId, error));
+        }
+
+        RangeCursor cursor = engine.openRangeCursor(minScore, maxScore);
+        if (hasAfter) {
+            cursor.seekAfter(afterScore, afterId);
+        }
+        cursor.skip(offset);
+
+        long[] remaining = {limit < 0 ? Long.MAX_VALUE : limit};
+        long[] returned = {0};
+        boolean[] finished = {false};
+        return () -> {
+            if (finished[0]) {
+                return null;
+            }
+            ByteBuffer response = BinaryProtocol.allocateRecords(STREAM_BATCH);
+            int count = cursor.next(response, (int) Math.min(STREAM_BATCH, remaining[0]));
+            remaining[0] -= count;
+            returned[0] += count;
+
+            finished[0] = remaining[0] == 0 || !cursor.hasNext();
+            if (finished[0]) {
+                metrics.recordRangeQuery(cursor.getScanned(), returned[0], hasAfter ? 3 : 2);
+                metrics.recordCommand(ServerMetrics.CMD_STREAM, System.nanoTime() - startTime, false);
             }
+            return BinaryProtocol.finishRecords(response, requestId,
+                finished[0] ? BinaryProtocol.STATUS_OK : BinaryProtocol.STATUS_PARTIAL);
+        };
+    }
+
+    // 二进制请求类型对应的统计项
+    private static int binaryCommand(byte type) {
+        switch (type) {
+            case BinaryProtocol.TYPE_ID: return ServerMetrics.CMD_ID;
+            case BinaryProtocol.TYPE_RANGE: return ServerMetrics.CMD_SCORE;
+            case BinaryProtocol.TYPE_SUBJECT_RANGE: return ServerMetrics.CMD_SUBJECT;
+            case BinaryProtocol.TYPE_UPSERT: return ServerMetrics.CMD_UPDATE;
+            case BinaryProtocol.TYPE_TOP: return ServerMetrics.CMD_TOP;
+            case BinaryProtocol.TYPE_BATCH_ID: return ServerMetrics.CMD_BATCH_ID;
+            case BinaryProtocol.TYPE_COUNT: return ServerMetrics.CMD_COUNT;
+            default: return ServerMetrics.CMD_OTHER;
         }
     }
-}
\ No newline at end of file
+
+    private ByteBuffer processFrame(int requestId, byte type, ByteBuffer frame) {
+        try {
+            if (type == BinaryProtocol.TYPE_ID && frame.remaining() == 4) {
+                QueryByStudentId.Student student = engine.queryStudentById(frame.getInt()).student;
+                ByteBuffer response = BinaryProtocol.allocateOkResponse(requestId, student == null ? 0 : 1);
+                if (student != null) {
+                    BinaryProtocol.putRecord(response, student.studentId, student.chineseScore,
+                        student.mathScore, student.englishScore, student.comprehensiveScore);
+                }
+                return response.flip();
+            }
+
+            if (type == BinaryProtocol.TYPE_RANGE && frame.remaining() == 8) {
+                float minScore = frame.getFloat();
+                float maxScore = frame.getFloat();
+                if (minScore > maxScore) {
+                    return BinaryProtocol.encodeError(requestId, "最小成绩不能大于最大成绩");
+                }
+
+                QueryByChineseScoreRange.QueryResult result = engine.queryByChineseScoreRange(minScore, maxScore);
+                if (result.studentCount > BinaryProtocol.MAX_FRAME_RECORDS) {
+                    return tooManyRecords(requestId, result.studentCount, "，请改用流式范围查询（TYPE_RANGE_STREAM）");
+                }
+                ByteBuffer response = BinaryProtocol.allocateOkResponse(requestId, result.studentCount);
+                for (QueryByChineseScoreRange.Student student : result.students) {
+                    BinaryProtocol.putRecord(response, student.studentId, student.chineseScore,
+                        student.mathScore, student.englishScore, student.comprehensiveScore);
+                }
+                return response.flip();
+            }
+
+            if (type == BinaryProtocol.TYPE_SUBJECT_RANGE && frame.remaining() == 9) {
+                int field = frame.get();
+                float minScore = frame.getFloat();
+                float maxScore = frame.getFloat();
+                if (field < 0 || field >= QueryBySubjectScoreRange.FIELD_NAMES.length) {
+                    return BinaryProtocol.encodeError(requestId, "未知的科目: " + field);
+                }
+                if (minScore > maxScore) {
+                    return BinaryProtocol.encodeError(requestId, "最小成绩不能大于最大成绩");
+                }
+
+                QueryByChineseScoreRange.QueryResult result = engine.queryByScoreRange(field, minScore, maxScore, true);
+                if (result.studentCount > BinaryProtocol.MAX_FRAME_RECORDS) {
+                    return tooManyRecords(requestId, result.studentCount, "，请缩小成绩范围");
+                }
+                ByteBuffer response = BinaryProtocol.allocateOkResponse(requestId, result.studentCount);
+                for (QueryByChineseScoreRange.Student student : result.students) {
+                    BinaryProtocol.putRecord(response, student.studentId, student.chineseScore,
+                        student.mathScore, student.englishScore, student.comprehensiveScore);
+                }
+                return response.flip();
+            }
+
+            if (type == BinaryProtocol.TYPE_COUNT && frame.remaining() == 9) {
+                int field = frame.get();
+                float minScore = frame.getFloat();
+                float maxScore = frame.getFloat();
+                if (field < 0 || field >= QueryBySubjectScoreRange.FIELD_NAMES.length) {
+                    return BinaryProtocol.encodeError(requestId, "未知的科目: " + field);
+                }
+                if (minScore > maxScore) {
+                    return BinaryProtocol.encodeError(requestId, "最小成绩不能大于最大成绩");
+                }
+
+                QueryByChineseScoreRange.QueryResult result = engine.queryByScoreRange(field, minScore, maxScore, false);
+                return BinaryProtocol.encodeCount(requestId, result.studentCount, result.totalScore);
+            }
+
+            if (type == BinaryProtocol.TYPE_TOP && frame.remaining() == 5) {
+                int field = frame.get();
+                int k = frame.getInt();
+                if (field < 0 || field >= QueryBySubjectScoreRange.FIELD_NAMES.length) {
+                    return BinaryProtocol.encodeError(requestId, "未知的科目: " + field);
+                }
+                if (k < 0) {
+                    return BinaryProtocol.encodeError(requestId, "人数不能为负数");
+                }
+                if (k > QueryTopStudents.MAX_TOP_K) {
+                    return BinaryProtocol.encodeError(requestId, "人数不能超过 " + QueryTopStudents.MAX_TOP_K);
+                }
+
+                QueryTopStudents.QueryResult result = engine.queryTopStudents(field, k);
+                ByteBuffer response = BinaryProtocol.allocateOkResponse(requestId, result.students.size());
+                for (QueryByChineseScoreRange.Student student : result.students) {
+                    BinaryProtocol.putRecord(response, student.studentId, student.chineseScore,
+                        student.mathScore, student.englishScore, student.comprehensiveScore);
+                }
+                return response.flip();
+            }
+
+            if (type == BinaryProtocol.TYPE_BATCH_ID && frame.remaining() >= 4
+                && frame.remaining() == 4 + 4L * frame.getInt(frame.position())) {
+                int[] studentIds = new int[frame.getInt()];
+                for (int i = 0; i < studentIds.length; i++) {
+                    studentIds[i] = frame.getInt();
+                }
+
+                QueryByStudentId.BatchResult result = engine.queryStudentsByIds(studentIds);
+                int[] missingIds = result.missingIds();
+                ByteBuffer response = BinaryProtocol.allocateBatchResponse(requestId,
+                    studentIds.length - countMissing(result), missingIds.length);
+                for (QueryByStudentId.Student student : result.students) {
+                    if (student != null) {
+                        BinaryProtocol.putRecord(response, student.studentId, student.chineseScore,
+                            student.mathScore, student.englishScore, student.comprehensiveScore);
+                    }
+                }
+                response.putInt(missingIds.length);
+                for (int studentId : missingIds) {
+                    response.putInt(studentId);
+                }
+                return response.flip();
+            }
+
+            if (type == BinaryProtocol.TYPE_UPSERT && frame.remaining() > 0
+                && frame.remaining() % MappedRecordFile.RECORD_SIZE == 0) {
+                List<QueryByStudentId.Student> students = new ArrayList<>();
+                while (frame.hasRemaining()) {
+                    QueryByStudentId.Student student = new QueryByStudentId.Student();
+                    student.studentId = frame.getInt();
+                    student.chineseScore = frame.getFloat();
+                    student.mathScore = frame.getFloat();
+                    student.englishScore = frame.getFloat();
+                    student.comprehensiveScore = frame.getFloat();
+                    students.add(student);
+                }
+                engine.upsertStudents(students);
+                return BinaryProtocol.allocateOkResponse(requestId, 0).flip();
+            }
+
+            return BinaryProtocol.encodeError(requestId, "未知的请求类型: " + type);
+        } catch (IOException e) {
+            return BinaryProtocol.encodeError(requestId, "错误: " + e.getMessage());
+        }
+    }
+
+    // 结果超过一个响应帧能容纳的记录数时返回的错误帧
+    private static ByteBuffer tooManyRecords(int requestId, int recordCount, String hint) {
+        return BinaryProtocol.encodeError(requestId, "查询结果共 " + recordCount + " 条记录，超过一个响应帧最多 "
+                                          + BinaryProtocol.MAX_FRAME_RECORDS + " 条" + hint);
+    }
+
+    // 批量查询结果中未找到的请求数（重复的学号分别计数）
+    private static int countMissing(QueryByStudentId.BatchResult result) {
+        int missing = 0;
+        for (QueryByStudentId.Student student : result.students) {
+            if (student == null) {
+                missing++;
+            }
+        }
+        return missing;
+    }
+
+    /**
+     * 处理客户端发送的一行输入，回复写入 out
+     *
+     * @return false 表示客户端请求断开连接
+     */
+    public boolean handleLine(String inputLine, PrintWriter out) {
+        switch (state) {
+            case STATE_STUDENT_ID: {
+                state = STATE_COMMAND;
+                long commandStart = System.nanoTime();
+                boolean failed = true;
+                try {
+                    int studentId = Integer.parseInt(inputLine);
+                    QueryByStudentId.QueryResult result = engine.queryStudentById(studentId);
+                    QueryByStudentId.printQueryResult(studentId, result, out);
+                    failed = false;
+                } catch (NumberFormatException e) {
+                    out.println("请输入有效的学号（整数）");
+                } catch (IOException e) {
+                    out.println("错误: " + e.getMessage());
+                }
+                metrics.recordCommand(ServerMetrics.CMD_ID, System.nanoTime() - commandStart, failed);
+                return true;
+            }
+
+            case STATE_MIN_SCORE:
+                minScoreStr = inputLine;
+                state = STATE_MAX_SCORE;
+                out.println("请输入要查询的最大" + QueryBySubjectScoreRange.FIELD_LABELS[field] + "成绩:");
+                return true;
+
+            case STATE_MAX_SCORE: {
+                state = STATE_COMMAND;
+                long commandStart = System.nanoTime();
+                boolean failed = true;
+                try {
+                    float minScore = Float.parseFloat(minScoreStr);
+                    float maxScore = Float.parseFloat(inputLine);
+
+                    if (minScore > maxScore) {
+                        out.println("错误: 最小成绩不能大于最大成绩");
+                    } else {
+                        QueryByChineseScoreRange.QueryResult result =
+                            engine.queryByScoreRange(field, minScore, maxScore, !countOnly);
+                        QueryByChineseScoreRange.printQueryResult(result, out);
+                        failed = false;
+                    }
+                } catch (NumberFormatException e) {
+                    out.println("请输入有效的分数（浮点数）");
+                } catch (IOException e) {
+                    out.println("错误: " + e.getMessage());
+                }
+                int command = field != QueryBySubjectScoreRange.FIELD_CHINESE ? ServerMetrics.CMD_SUBJECT
+                              : countOnly ? ServerMetrics.CMD_COUNT : ServerMetrics.CMD_SCORE;
+                metrics.recordCommand(command, System.nanoTime() - commandStart, failed);
+                return true;
+            }
+
+            case STATE_UPDATE: {
+                state = STATE_COMMAND;
+                long commandStart = System.nanoTime();
+                boolean failed = true;
+                try {
+                    String[] fields = inputLine.split(",");
+                    if (fields.length != 5) {
+                        out.println("格式错误: 请输入 学号,语文成绩,数学成绩,英语成绩,综合成绩");
+                        metrics.recordCommand(ServerMetrics.CMD_UPDATE, System.nanoTime() - commandStart, true);
+                        return true;
+                    }
+                    QueryByStudentId.Student student = new QueryByStudentId.Student();
+                    student.studentId = Integer.parseInt(fields[0].trim());
+                    student.chineseScore = Float.parseFloat(fields[1].trim());
+                    student.mathScore = Float.parseFloat(fields[2].trim());
+                    student.englishScore = Float.parseFloat(fields[3].trim());
+                    student.comprehensiveScore = Float.parseFloat(fields[4].trim());
+
+                    long startTime = System.currentTimeMillis();
+                    int pending = engine.upsertStudents(List.of(student));
+                    out.println("已保存学号为 " + student.studentId + " 的学生信息");
+                    out.println("未压缩的增量记录数: " + pending);
+                    out.println("耗时: " + (System.currentTimeMillis() - startTime) + " 毫秒");
+                    failed = false;
+                } catch (NumberFormatException e) {
+                    out.println("请输入有效的学号（整数）和成绩（浮点数）");
+                } catch (IOException e) {
+                    out.println("错误: " + e.getMessage());
+                }
+                metrics.recordCommand(ServerMetrics.CMD_UPDATE, System.nanoTime() - commandStart, failed);
+                return true;
+            }
+
+            case STATE_TOP: {
+                state = STATE_COMMAND;
+                long commandStart = System.nanoTime();
+                boolean failed = true;
+                String[] fields = inputLine.trim().split("\\s+");
+                int topField = QueryBySubjectScoreRange.parseField(fields[0]);
+                try {
+                    if (fields.length != 2 || topField < 0) {
+                        out.println("格式错误: 请输入 科目 人数（科目: "
+                                    + String.join(" | ", QueryBySubjectScoreRange.FIELD_NAMES) + "）");
+                    } else if (Integer.parseInt(fields[1]) < 0) {
+                        out.println("错误: 人数不能为负数");
+                    } else if (Integer.parseInt(fields[1]) > QueryTopStudents.MAX_TOP_K) {
+                        out.println("错误: 人数不能超过 " + QueryTopStudents.MAX_TOP_K);
+                    } else {
+                        QueryTopStudents.QueryResult result = engine.queryTopStudents(topField, Integer.parseInt(fields[1]));
+                        QueryTopStudents.printQueryResult(topField, result, out);
+                        failed = false;
+                    }
+                } catch (NumberFormatException e) {
+                    out.println("请输入有效的人数（整数）");
+                }
+                metrics.recordCommand(ServerMetrics.CMD_TOP, System.nanoTime() - commandStart, failed);
+                return true;
+            }
+
+            case STATE_BATCH_ID: {
+                state = STATE_COMMAND;
+                long commandStart = System.nanoTime();
+                boolean failed = true;
+                try {
+                    int[] studentIds = QueryByStudentId.parseIds(inputLine);
+                    QueryByStudentId.printBatchResult(engine.queryStudentsByIds(studentIds), out);
+                    failed = false;
+                } catch (NumberFormatException e) {
+                    out.println("请输入有效的学号（整数，用逗号或空格分隔）");
+                }
+                metrics.recordCommand(ServerMetrics.CMD_BATCH_ID, System.nanoTime() - commandStart, failed);
+                return true;
+            }
+
+            default:
+                break;
+        }
+
+        System.out.println("收到客户端消息: " + inputLine);
+
+        if ("bye".equalsIgnoreCase(inputLine)) {
+            out.println("Bye!");
+            return false;
+        }
+
+        if (inputLine.equals("id")) {
+            out.println("请输入要查询的学生id");
+            state = STATE_STUDENT_ID;
+        }
+        else if (inputLine.equals("score") || inputLine.equals("count")) {
+            out.println("请输入要查询的最小语文成绩:");
+            field = QueryBySubjectScoreRange.FIELD_CHINESE;
+            countOnly = inputLine.equals("count");
+            state = STATE_MIN_SCORE;
+        }
+        else if (inputLine.equals("update")) {
+            out.println("请输入学生信息（学号,语文成绩,数学成绩,英语成绩,综合成绩）:");
+            state = STATE_UPDATE;
+        }
+        else if (inputLine.equals("ids")) {
+            out.println("请输入要查询的学号（用逗号或空格分隔）:");
+            state = STATE_BATCH_ID;
+        }
+        else if (inputLine.equals("top")) {
+            out.println("请输入要查询的科目和人数（例如 math 100）:");
+            state = STATE_TOP;
+        }
+        else if (inputLine.equals("stats")) {
+            long commandStart = System.nanoTime();
+            metrics.report(out);
+            metrics.recordCommand(ServerMetrics.CMD_STATS, System.nanoTime() - commandStart, false);
+        }
+        else if (QueryBySubjectScoreRange.parseField(inputLine) > QueryBySubjectScoreRange.FIELD_CHINESE) {
+            field = QueryBySubjectScoreRange.parseField(inputLine);
+            out.println("请输入要查询的最小" + QueryBySubjectScoreRange.FIELD_LABELS[field] + "成绩:");
+            countOnly = false;
+            state = STATE_MIN_SCORE;
+        }
+        else {
+            out.println("服务器收到: " + inputLine);
+        }
+        return true;
+    }
+}
@@ -0,0 +1,148 @@
+import java.io.*;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 服务器运行统计：各命令的次数和处理延迟、范围查询读取的记录数、索引查找次数和连接数
+ *
+ * 所有计数器都是原子变量，延迟使用 LatencyHistogram，记录时不加锁也不分配对象，
+ * 工作线程和事件循环线程可以直接在处理请求的路径上调用。
+ * 通过文本协议的 stats 命令查看，也可以定期追加写入文件。
+ */
+public class ServerMetrics {
+
+    // 命令（文本协议和二进制协议的同一种查询计入同一项）
+    static final int CMD_ID = 0;
+    static final int CMD_SCORE = 1;
+    static final int CMD_COUNT = 2;
+    static final int CMD_SUBJECT = 3;
+    static final int CMD_UPDATE = 4;
+    static final int CMD_STREAM = 5;
+    static final int CMD_TOP = 6;
+    static final int CMD_BATCH_ID = 7;
+    static final int CMD_STATS = 8;
+    static final int CMD_OTHER = 9;
+    static final String[] COMMAND_NAMES = {"id", "score", "count", "subject", "update", "stream", "top", "ids",
+                                           "stats", "other"};
+
+    private final long startTime = System.currentTimeMillis();
+
+    private final AtomicLongArray commandCounts = new AtomicLongArray(COMMAND_NAMES.length);
+    private final AtomicLongArray commandErrors = new AtomicLongArray(COMMAND_NAMES.length);
+    private final LatencyHistogram[] latencies = new LatencyHistogram[COMMAND_NAMES.length];
+
+    // 范围查询从数据文件中读取的记录数，以及返回给客户端的记录数
+    private final AtomicLong recordsScanned = new AtomicLong();
+    private final AtomicLong recordsReturned = new AtomicLong();
+    // B+ 树索引的查找次数（每次从根节点定位到叶子节点计一次）
+    private final AtomicLong indexLookups = new AtomicLong();
+
+    private final AtomicLong openConnections = new AtomicLong();
+    private final AtomicLong totalConnections = new AtomicLong();
+
+    // 范围查询结果缓存（统计由缓存自己维护，可为 null）
+    private final RangeResultCache rangeCache;
+
+    public ServerMetrics(RangeResultCache rangeCache) {
+        this.rangeCache = rangeCache;
+        for (int i = 0; i < latencies.length; i++) {
+            latencies[i] = new LatencyHistogram();
+        }
+    }
+
+    /**
+     * 记录一次命令处理
+     *
+     * @param command 命令（CMD_*）
+     * @param nanos 处理耗时（纳秒，从收到完整请求到生成回复）
+     * @param failed 是否返回了错误
+     */
+    public void recordCommand(int command, long nanos, boolean failed) {
+        commandCounts.incrementAndGet(command);
+        if (failed) {
+            commandErrors.incrementAndGet(command);
+        }
+        latencies[command].record(nanos);
+    }
+
+    /**
+     * 记录一次范围查询读取和返回的记录数
+     *
+     * @param scanned 从 dat1/dat2 中读取的记录数
+     * @param returned 结果中的记录数（只统计人数时为 0）
+     * @param lookups 索引查找次数
+     */
+    public void recordRangeQuery(long scanned, long returned, int lookups) {
+        recordsScanned.addAndGet(scanned);
+        recordsReturned.addAndGet(returned);
+        indexLookups.addAndGet(lookups);
+    }
+
+    public void connectionOpened() {
+        openConnections.incrementAndGet();
+        totalConnections.incrementAndGet();
+    }
+
+    public void connectionClosed() {
+        openConnections.decrementAndGet();
+    }
+
+    /**
+     * 输出当前统计（各项分别读取，不是同一时刻的一致快照）
+     */
+    public void report(PrintWriter out) {
+        out.println("=== 服务器统计 ===");
+        out.println("运行时间: " + (System.currentTimeMillis() - startTime) / 1000 + " 秒");
+        out.println("连接数: 当前 " + openConnections.get() + "，累计 " + totalConnections.get());
+
+        out.println("命令（次数 / 错误 / 延迟毫秒: 平均 p50 p99 p999 max）:");
+        for (int i = 0; i < COMMAND_NAMES.length; i++) {
+            long count = commandCounts.get(i);
+            if (count == 0) {
+                continue;
+            }
+            LatencyHistogram histogram = latencies[i];
+            out.printf("  %s: %d / %d / %.3f %.3f %.3f %.3f %.3f%n", COMMAND_NAMES[i], count, commandErrors.get(i),
+                histogram.getMean() / 1e6,
+                histogram.getValueAtPercentile(50) / 1e6,
+                histogram.getValueAtPercentile(99) / 1e6,
+                histogram.getValueAtPercentile(99.9) / 1e6,
+                histogram.getMaxValue() / 1e6);
+        }
+
+        long scanned = recordsScanned.get();
+        out.println("范围查询: 读取记录 " + scanned + " 条（" + scanned * MappedRecordFile.RECORD_SIZE + " 字节），"
+                    + "返回记录 " + recordsReturned.get() + " 条");
+        out.println("索引查找: " + indexLookups.get() + " 次");
+        if (rangeCache != null) {
+            rangeCache.report(out);
+        }
+        out.flush();
+    }
+
+    /**
+     * 每隔 intervalSeconds 秒把统计追加写入文件（后台守护线程）
+     */
+    public ScheduledExecutorService startPeriodicDump(File file, long intervalSeconds) {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "stats-dump");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleAtFixedRate(() -> {
+            try (PrintWriter out = new PrintWriter(new FileWriter(file, true))) {
+                out.println("[" + new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date()) + "]");
+                report(out);
+                out.println();
+            } catch (IOException e) {
+                System.err.println("写入统计文件失败: " + e.getMessage());
+            }
+        }, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+        return scheduler;
+    }
+}
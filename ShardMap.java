@@ -0,0 +1,133 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * 分片映射：按学号范围把数据分到多个服务器节点（由 PartitionStudentData 生成，ShardRouter 读取）
+ *
+ * 文本文件，每行一个分片: 最小学号 最大学号 主机 端口 数据目录（# 开头的行为注释）
+ * 各分片的学号范围按顺序首尾相接，覆盖整个 int 范围，因此任何学号（包括之后新增的学号）都属于唯一的分片。
+ */
+public class ShardMap {
+
+    // 分片映射文件名（位于分片输出目录中）
+    static final String FILE_NAME = "shards.txt";
+
+    // 一个分片：负责 [minId, maxId] 范围内的学号
+    static class Shard {
+        final int index;
+        final int minId;
+        final int maxId;
+        final String host;
+        final int port;
+        final String dataDir;
+
+        Shard(int index, int minId, int maxId, String host, int port, String dataDir) {
+            this.index = index;
+            this.minId = minId;
+            this.maxId = maxId;
+            this.host = host;
+            this.port = port;
+            this.dataDir = dataDir;
+        }
+
+        @Override
+        public String toString() {
+            return "分片 " + index + " [" + minId + ", " + maxId + "] " + host + ":" + port;
+        }
+    }
+
+    private final List<Shard> shards;
+
+    public ShardMap(List<Shard> shards) {
+        if (shards.isEmpty()) {
+            throw new IllegalArgumentException("分片映射为空");
+        }
+        if (shards.get(0).minId != Integer.MIN_VALUE || shards.get(shards.size() - 1).maxId != Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("分片的学号范围必须覆盖整个 int 范围");
+        }
+        for (int i = 0; i < shards.size(); i++) {
+            Shard shard = shards.get(i);
+            if (shard.minId > shard.maxId || (i > 0 && shard.minId != shards.get(i - 1).maxId + 1)) {
+                throw new IllegalArgumentException("分片 " + i + " 的学号范围与前一个分片不相接: " + shard);
+            }
+        }
+        this.shards = List.copyOf(shards);
+    }
+
+    public List<Shard> getShards() {
+        return shards;
+    }
+
+    public int size() {
+        return shards.size();
+    }
+
+    /**
+     * 学号所属的分片（二分查找）
+     */
+    public Shard shardFor(int studentId) {
+        int low = 0;
+        int high = shards.size() - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (shards.get(mid).minId <= studentId) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return shards.get(low);
+    }
+
+    /**
+     * 读取分片映射文件
+     */
+    public static ShardMap load(File file) throws IOException {
+        if (!file.exists()) {
+            throw new FileNotFoundException("分片映射文件不存在: " + file.getPath() + "\n请先运行 PartitionStudentData 生成该文件");
+        }
+
+        List<Shard> shards = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(
+                 new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] fields = line.split("\\s+");
+                if (fields.length < 4) {
+                    throw new IOException(file.getPath() + " 第 " + lineNumber + " 行格式错误: " + line);
+                }
+                try {
+                    shards.add(new Shard(shards.size(), Integer.parseInt(fields[0]), Integer.parseInt(fields[1]),
+                                         fields[2], Integer.parseInt(fields[3]), fields.length > 4 ? fields[4] : ""));
+                } catch (NumberFormatException e) {
+                    throw new IOException(file.getPath() + " 第 " + lineNumber + " 行格式错误: " + line);
+                }
+            }
+        }
+
+        try {
+            return new ShardMap(shards);
+        } catch (IllegalArgumentException e) {
+            throw new IOException(file.getPath() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * 写出分片映射文件
+     */
+    public void save(File file) throws IOException {
+        try (PrintWriter out = new PrintWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8))) {
+            out.println("# 最小学号 最大学号 主机 端口 数据目录");
+            for (Shard shard : shards) {
+                out.println(shard.minId + " " + shard.maxId + " " + shard.host + " " + shard.port + " " + shard.dataDir);
+            }
+        }
+    }
+}
@@ -0,0 +1,494 @@
+import java.io.*;
+import java.net.*;
+import java.nio.charset.Charset;
+import java.util.*;
+
+/**
+ * 按学号范围分片部署时的查询路由（分片映射见 ShardMap，数据由 PartitionStudentData 生成）
+ *
+ * 与每个分片服务器保持一个二进制协议连接：
+ *   学号查询、新增或修改: 只发给学号所属的分片
+ *   批量学号查询: 按分片分组，每个相关分片一个请求
+ *   成绩范围、人数和平均成绩、成绩排名: 发给所有分片，合并各分片的部分结果
+ * 需要多个分片的请求先全部发出再依次读取响应，各分片同时处理，总耗时取决于最慢的分片。
+ * 各分片的结果都按成绩从高到低、相同成绩按学号从小到大排列，多路归并后与单个服务器的结果顺序一致。
+ * 结果使用与单机查询相同的结果类，可以直接用各查询类的 printQueryResult 输出。
+ * 所有查询方法都加锁，多个线程共享同一个路由时按顺序执行。
+ * 某个分片连接出错（不是分片返回的错误）时，其他连接上可能还有未读取的响应，因此关闭所有连接，
+ * 下一次请求时再重新连接。
+ */
+public class ShardRouter implements Closeable {
+
+    // 与一个分片服务器的连接
+    private static class Connection {
+        final ShardMap.Shard shard;
+        final Socket socket;
+        final DataInputStream in;
+        final DataOutputStream out;
+
+        Connection(ShardMap.Shard shard) throws IOException {
+            this.shard = shard;
+            this.socket = new Socket(shard.host, shard.port);
+            try {
+                socket.setTcpNoDelay(true);
+                this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+                // 读取欢迎信息后切换到二进制协议
+                BinaryProtocol.readLine(in);
+                out.write((BinaryProtocol.SWITCH_COMMAND + "\n").getBytes(Charset.defaultCharset()));
+                out.flush();
+                while (!BinaryProtocol.readLine(in).equals(BinaryProtocol.SWITCH_ACK)) {
+                    // 跳过切换前的其他输出
+                }
+            } catch (IOException e) {
+                socket.close();
+                throw e;
+            }
+        }
+    }
+
+    // 向一个分片写出请求
+    private interface RequestWriter {
+        void write(DataOutputStream out, int requestId) throws IOException;
+    }
+
+    // 使用分片连接的一次请求
+    private interface ShardCall<T> {
+        T call() throws IOException;
+    }
+
+    // 只统计人数和平均成绩的结果（各分片人数之和可能超过 int 范围）
+    static class CountResult {
+        long studentCount;
+        double totalScore;
+        long queryTime;
+
+        CountResult(long studentCount, double totalScore, long queryTime) {
+            this.studentCount = studentCount;
+            this.totalScore = totalScore;
+            this.queryTime = queryTime;
+        }
+
+        double averageScore() {
+            return studentCount == 0 ? 0.0 : totalScore / studentCount;
+        }
+    }
+
+    private final ShardMap map;
+    // 各分片的连接（出错后为 null，使用时重新连接）
+    private final Connection[] connections;
+    private int nextRequestId = 1;
+
+    /**
+     * 连接分片映射中的所有分片服务器
+     */
+    public ShardRouter(ShardMap map) throws IOException {
+        this.map = map;
+        this.connections = new Connection[map.size()];
+        try {
+            for (int i = 0; i < connections.length; i++) {
+                connection(i);
+            }
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    // 第 index 个分片的连接（尚未连接或出错关闭后重新连接）
+    private Connection connection(int index) throws IOException {
+        if (connections[index] == null) {
+            ShardMap.Shard shard = map.getShards().get(index);
+            try {
+                connections[index] = new Connection(shard);
+            } catch (IOException e) {
+                throw new IOException("无法连接" + shard + ": " + e.getMessage(), e);
+            }
+        }
+        return connections[index];
+    }
+
+    // 执行一次请求；连接出错时关闭所有连接，避免之后读到其他请求的响应
+    private <T> T execute(ShardCall<T> call) throws IOException {
+        try {
+            return call.call();
+        } catch (ShardException e) {
+            throw e;
+        } catch (IOException e) {
+            closeConnections();
+            throw e;
+        }
+    }
+
+    public ShardMap getShardMap() {
+        return map;
+    }
+
+    /**
+     * 按学号查询（只访问学号所属的分片）
+     */
+    public synchronized QueryByStudentId.QueryResult queryStudentById(int studentId) throws IOException {
+        long startTime = System.currentTimeMillis();
+
+        BinaryProtocol.Response response = execute(() -> {
+            Connection connection = connection(map.shardFor(studentId).index);
+            int requestId = nextRequestId++;
+            BinaryProtocol.writeIdRequest(connection.out, requestId, studentId);
+            connection.out.flush();
+            return readResponse(connection, requestId);
+        });
+
+        QueryByStudentId.Student student = response.students.length > 0
+                                           ? QueryBySubjectScoreRange.toStudent(response.students[0]) : null;
+        return new QueryByStudentId.QueryResult(student, System.currentTimeMillis() - startTime);
+    }
+
+    /**
+     * 批量按学号查询：按分片分组，各相关分片同时查询，结果按请求顺序排列
+     */
+    public synchronized QueryByStudentId.BatchResult queryStudentsByIds(int[] studentIds) throws IOException {
+        long startTime = System.currentTimeMillis();
+
+        // 按分片分组（去重），每组按 MAX_BATCH_IDS 拆成多个请求
+        Set<Integer> uniqueIds = new LinkedHashSet<>();
+        for (int studentId : studentIds) {
+            uniqueIds.add(studentId);
+        }
+        List<List<Integer>> groups = new ArrayList<>();
+        for (int i = 0; i < connections.length; i++) {
+            groups.add(new ArrayList<>());
+        }
+        for (int studentId : uniqueIds) {
+            groups.get(map.shardFor(studentId).index).add(studentId);
+        }
+
+        BinaryProtocol.Response[] responses = execute(() -> {
+            List<Connection> targets = new ArrayList<>();
+            List<Integer> requestIds = new ArrayList<>();
+            for (int i = 0; i < connections.length; i++) {
+                List<Integer> group = groups.get(i);
+                if (group.isEmpty()) {
+                    continue;
+                }
+                Connection connection = connection(i);
+                for (int from = 0; from < group.size(); from += BinaryProtocol.MAX_BATCH_IDS) {
+                    int[] batch = group.subList(from, Math.min(group.size(), from + BinaryProtocol.MAX_BATCH_IDS))
+                                       .stream().mapToInt(Integer::intValue).toArray();
+                    int requestId = nextRequestId++;
+                    BinaryProtocol.writeBatchIdRequest(connection.out, requestId, batch);
+                    targets.add(connection);
+                    requestIds.add(requestId);
+                }
+                connection.out.flush();
+            }
+            return readResponses(targets, requestIds);
+        });
+
+        Map<Integer, QueryByStudentId.Student> found = new HashMap<>();
+        for (BinaryProtocol.Response response : responses) {
+            for (BinaryProtocol.Student student : response.students) {
+                found.put(student.studentId, QueryBySubjectScoreRange.toStudent(student));
+            }
+        }
+
+        QueryByStudentId.Student[] students = new QueryByStudentId.Student[studentIds.length];
+        for (int i = 0; i < studentIds.length; i++) {
+            students[i] = found.get(studentIds[i]);
+        }
+        return new QueryByStudentId.BatchResult(studentIds, students, uniqueIds.size(),
+                                                System.currentTimeMillis() - startTime);
+    }
+
+    /**
+     * 任意科目的成绩范围查询：所有分片同时查询，多路归并各分片的有序结果
+     */
+    public synchronized QueryByChineseScoreRange.QueryResult queryByScoreRange(int field, float minScore,
+                                                                               float maxScore) throws IOException {
+        long startTime = System.currentTimeMillis();
+
+        BinaryProtocol.Response[] responses = fanOut((out, requestId) ->
+            BinaryProtocol.writeSubjectRangeRequest(out, requestId, field, minScore, maxScore));
+        // 合并结果与单台服务器一样最多 MAX_FRAME_RECORDS 条
+        long recordCount = recordCount(responses);
+        if (recordCount > BinaryProtocol.MAX_FRAME_RECORDS) {
+            throw new ShardException("查询结果共 " + recordCount + " 条记录，超过一次查询最多 "
+                                     + BinaryProtocol.MAX_FRAME_RECORDS + " 条，请缩小成绩范围或只统计人数");
+        }
+        List<QueryByChineseScoreRange.Student> students = merge(responses, field, BinaryProtocol.MAX_FRAME_RECORDS);
+
+        double totalScore = 0;
+        for (QueryByChineseScoreRange.Student student : students) {
+            totalScore += QueryBySubjectScoreRange.score(student, field);
+        }
+        QueryByChineseScoreRange.QueryResult result = new QueryByChineseScoreRange.QueryResult(students.size(),
+            students.isEmpty() ? 0.0 : totalScore / students.size(), System.currentTimeMillis() - startTime, students);
+        result.totalScore = totalScore;
+        return result;
+    }
+
+    /**
+     * 只统计人数和平均成绩：所有分片同时统计，汇总人数和成绩总和
+     */
+    public synchronized CountResult countByScoreRange(int field, float minScore, float maxScore) throws IOException {
+        long startTime = System.currentTimeMillis();
+
+        BinaryProtocol.Response[] responses = fanOut((out, requestId) ->
+            BinaryProtocol.writeCountRequest(out, requestId, field, minScore, maxScore));
+        long count = 0;
+        double totalScore = 0;
+        for (BinaryProtocol.Response response : responses) {
+            count += response.studentCount();
+            totalScore += response.totalScore();
+        }
+
+        return new CountResult(count, totalScore, System.currentTimeMillis() - startTime);
+    }
+
+    /**
+     * 指定科目成绩最高的 k 个学生：每个分片返回各自的前 k 名，归并后取前 k 名
+     * 结果中的 scanned 为从各分片收到的候选记录数
+     */
+    public synchronized QueryTopStudents.QueryResult queryTopStudents(int field, int k) throws IOException {
+        long startTime = System.currentTimeMillis();
+
+        BinaryProtocol.Response[] responses = fanOut((out, requestId) ->
+            BinaryProtocol.writeTopRequest(out, requestId, field, k));
+        return new QueryTopStudents.QueryResult(merge(responses, field, k), recordCount(responses),
+                                                System.currentTimeMillis() - startTime);
+    }
+
+    /**
+     * 新增或修改学生信息（只发给学号所属的分片）
+     */
+    public synchronized void upsertStudent(QueryByStudentId.Student student) throws IOException {
+        execute(() -> {
+            Connection connection = connection(map.shardFor(student.studentId).index);
+            int requestId = nextRequestId++;
+            BinaryProtocol.writeUpsertRequest(connection.out, requestId, student.studentId, student.chineseScore,
+                student.mathScore, student.englishScore, student.comprehensiveScore);
+            connection.out.flush();
+            return readResponse(connection, requestId);
+        });
+    }
+
+    // 向所有分片发送同一个请求，返回各分片的响应（按分片顺序）
+    private BinaryProtocol.Response[] fanOut(RequestWriter writer) throws IOException {
+        return execute(() -> {
+            int requestId = nextRequestId++;
+            List<Connection> targets = new ArrayList<>();
+            List<Integer> requestIds = new ArrayList<>();
+            for (int i = 0; i < connections.length; i++) {
+                Connection connection = connection(i);
+                writer.write(connection.out, requestId);
+                connection.out.flush();
+                targets.add(connection);
+                requestIds.add(requestId);
+            }
+            return readResponses(targets, requestIds);
+        });
+    }
+
+    // 依次读取已发出请求的响应；即使某个分片返回错误，也读完其余响应，使各连接保持同步
+    // （连接出错时由 execute 关闭所有连接）
+    private BinaryProtocol.Response[] readResponses(List<Connection> targets, List<Integer> requestIds) throws IOException {
+        BinaryProtocol.Response[] responses = new BinaryProtocol.Response[targets.size()];
+        IOException error = null;
+        for (int i = 0; i < targets.size(); i++) {
+            try {
+                responses[i] = readResponse(targets.get(i), requestIds.get(i));
+            } catch (ShardException e) {
+                if (error == null) {
+                    error = e;
+                }
+            }
+        }
+        if (error != null) {
+            throw error;
+        }
+        return responses;
+    }
+
+    // 分片返回的错误（连接仍然可用）
+    private static class ShardException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        ShardException(String message) {
+            super(message);
+        }
+    }
+
+    private static BinaryProtocol.Response readResponse(Connection connection, int requestId) throws IOException {
+        BinaryProtocol.Response response;
+        try {
+            response = BinaryProtocol.readResponse(connection.in);
+        } catch (IOException e) {
+            String reason = e instanceof EOFException ? "服务器关闭了连接" : e.getMessage();
+            throw new IOException(connection.shard + " 连接出错: " + reason, e);
+        }
+        if (response.requestId != requestId) {
+            throw new IOException(connection.shard + " 返回了其他请求的响应: #" + response.requestId);
+        }
+        if (response.status != BinaryProtocol.STATUS_OK) {
+            throw new ShardException(connection.shard + ": " + response.errorMessage);
+        }
+        return response;
+    }
+
+    // 多路归并各分片的有序记录（成绩从高到低，相同成绩按学号从小到大），最多取 limit 条
+    private static List<QueryByChineseScoreRange.Student> merge(BinaryProtocol.Response[] responses, int field,
+                                                                int limit) {
+        List<QueryByChineseScoreRange.Student> merged = new ArrayList<>((int) Math.min(recordCount(responses), limit));
+
+        // 队列元素为分片序号，按该分片下一条记录排序
+        int[] positions = new int[responses.length];
+        PriorityQueue<Integer> queue = new PriorityQueue<>((a, b) -> {
+            BinaryProtocol.Student x = responses[a].students[positions[a]];
+            BinaryProtocol.Student y = responses[b].students[positions[b]];
+            return MergeSortStudentData.compareStudents(x.studentId, QueryBySubjectScoreRange.score(x, field),
+                                                        y.studentId, QueryBySubjectScoreRange.score(y, field));
+        });
+        for (int i = 0; i < responses.length; i++) {
+            if (responses[i].students.length > 0) {
+                queue.add(i);
+            }
+        }
+        while (!queue.isEmpty() && merged.size() < limit) {
+            int shard = queue.poll();
+            merged.add(QueryBySubjectScoreRange.toRangeStudent(responses[shard].students[positions[shard]++]));
+            if (positions[shard] < responses[shard].students.length) {
+                queue.add(shard);
+            }
+        }
+        return merged;
+    }
+
+    // 各分片响应中的记录数之和
+    private static long recordCount(BinaryProtocol.Response[] responses) {
+        long total = 0;
+        for (BinaryProtocol.Response response : responses) {
+            total += response.students.length;
+        }
+        return total;
+    }
+
+    // 关闭所有分片连接（下次使用时重新连接）
+    private void closeConnections() {
+        for (int i = 0; i < connections.length; i++) {
+            if (connections[i] != null) {
+                try {
+                    connections[i].socket.close();
+                } catch (IOException e) {
+                    // 连接已经不可用，忽略关闭时的错误
+                }
+                connections[i] = null;
+            }
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        closeConnections();
+    }
+
+    static void printCountResult(CountResult result, PrintWriter out) {
+        out.println("\n=== 查询结果 ===");
+        out.println("学生数量: " + result.studentCount);
+        out.printf("平均成绩: %.2f\n", result.averageScore());
+        out.println("查询耗时: " + result.queryTime + " 毫秒");
+        out.flush();
+    }
+
+    private static void printShards(ShardMap map) {
+        for (ShardMap.Shard shard : map.getShards()) {
+            System.out.println("  " + shard + "（数据目录: " + shard.dataDir + "）");
+        }
+    }
+
+    /**
+     * 交互式路由客户端：每行输入一个查询，输入 bye 结束
+     */
+    public static void main(String[] args) {
+        String mapFile = args.length > 0 ? args[0]
+                         : PartitionStudentData.DEFAULT_OUTPUT_DIR + File.separator + ShardMap.FILE_NAME;
+        try (ShardRouter router = new ShardRouter(ShardMap.load(new File(mapFile)));
+             Scanner scanner = new Scanner(System.in)) {
+            System.out.println("已连接 " + router.getShardMap().size() + " 个分片（" + mapFile + "）:");
+            printShards(router.getShardMap());
+            String subjects = String.join(" | ", QueryBySubjectScoreRange.FIELD_NAMES);
+            String usage = "可用命令: \"id <学号>\"、\"ids <学号> <学号> ...\"、\"score <最小成绩> <最大成绩>\"、"
+                           + "\"<科目> <最小成绩> <最大成绩>\"、\"count [科目] <最小成绩> <最大成绩>\"、\"top <科目> <人数>\"、"
+                           + "\"update <学号> <语文> <数学> <英语> <综合>\"、\"shards\"，输入 bye 结束（科目: " + subjects + "）";
+            System.out.println(usage);
+
+            PrintWriter out = new PrintWriter(System.out, true);
+            while (scanner.hasNextLine()) {
+                String[] fields = scanner.nextLine().trim().split("\\s+");
+                if (fields[0].equalsIgnoreCase("bye")) {
+                    break;
+                }
+
+                try {
+                    if (fields[0].equals("shards") && fields.length == 1) {
+                        printShards(router.getShardMap());
+                    } else if (fields[0].equals("id") && fields.length == 2) {
+                        int studentId = Integer.parseInt(fields[1]);
+                        System.out.println("学号 " + studentId + " 属于" + router.getShardMap().shardFor(studentId));
+                        QueryByStudentId.printQueryResult(studentId, router.queryStudentById(studentId), out);
+                    } else if (fields[0].equals("ids") && fields.length >= 2) {
+                        int[] studentIds = QueryByStudentId.parseIds(
+                            String.join(" ", Arrays.asList(fields).subList(1, fields.length)));
+                        QueryByStudentId.printBatchResult(router.queryStudentsByIds(studentIds), out);
+                    } else if ((fields[0].equals("score") || QueryBySubjectScoreRange.parseField(fields[0]) >= 0)
+                               && fields.length == 3) {
+                        int field = fields[0].equals("score") ? QueryBySubjectScoreRange.FIELD_CHINESE
+                                    : QueryBySubjectScoreRange.parseField(fields[0]);
+                        float minScore = Float.parseFloat(fields[1]);
+                        float maxScore = Float.parseFloat(fields[2]);
+                        QueryByChineseScoreRange.printQueryResult(
+                            router.queryByScoreRange(field, minScore, maxScore), out);
+                    } else if (fields[0].equals("count") && (fields.length == 3 || fields.length == 4)) {
+                        int field = fields.length == 4 ? QueryBySubjectScoreRange.parseField(fields[1])
+                                    : QueryBySubjectScoreRange.FIELD_CHINESE;
+                        if (field < 0) {
+                            System.out.println("未知的科目: " + fields[1]);
+                            continue;
+                        }
+                        float minScore = Float.parseFloat(fields[fields.length - 2]);
+                        float maxScore = Float.parseFloat(fields[fields.length - 1]);
+                        printCountResult(router.countByScoreRange(field, minScore, maxScore), out);
+                    } else if (fields[0].equals("top") && fields.length == 3
+                               && QueryBySubjectScoreRange.parseField(fields[1]) >= 0) {
+                        int field = QueryBySubjectScoreRange.parseField(fields[1]);
+                        QueryTopStudents.printQueryResult(field,
+                            router.queryTopStudents(field, Integer.parseInt(fields[2])), out);
+                    } else if (fields[0].equals("update") && fields.length == 6) {
+                        QueryByStudentId.Student student = new QueryByStudentId.Student();
+                        student.studentId = Integer.parseInt(fields[1]);
+                        student.chineseScore = Float.parseFloat(fields[2]);
+                        student.mathScore = Float.parseFloat(fields[3]);
+                        student.englishScore = Float.parseFloat(fields[4]);
+                        student.comprehensiveScore = Float.parseFloat(fields[5]);
+                        router.upsertStudent(student);
+                        System.out.println("已保存学号为 " + student.studentId + " 的学生信息（"
+                                           + router.getShardMap().shardFor(student.studentId) + "）");
+                    } else {
+                        System.out.println("无法识别的查询。" + usage);
+                    }
+                } catch (NumberFormatException e) {
+                    System.out.println("参数错误: 请输入有效的数字");
+                } catch (ShardException e) {
+                    System.out.println("错误: " + e.getMessage());
+                } catch (IOException e) {
+                    // 连接已全部关闭，下一条查询会重新连接
+                    System.out.println("错误: " + e.getMessage() + "（下一次查询时重新连接）");
+                } catch (IllegalArgumentException e) {
+                    System.out.println("参数错误: " + e.getMessage());
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("错误: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+}
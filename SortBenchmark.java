@@ -0,0 +1,94 @@
+import java.util.*;
+
+public class SortBenchmark {
+
+    /**
+     * 生成 count 个学生（学号递增，各科成绩服从均值50、标准差15的正态分布，保留一位小数，
+     * 与 generate_student_data.py 的生成方式相同）
+     */
+    static StudentColumns generateStudents(int count, long seed) {
+        Random random = new Random(seed);
+        StudentColumns students = new StudentColumns(count);
+        for (int i = 0; i < count; i++) {
+            students.add(i + 1, randomScore(random), randomScore(random),
+                         randomScore(random), randomScore(random));
+        }
+        return students;
+    }
+
+    private static float randomScore(Random random) {
+        double score = Math.min(100.0, Math.max(0.0, 50 + 15 * random.nextGaussian()));
+        return Math.round(score * 10) / 10.0f;
+    }
+
+    /**
+     * 排序性能对比：原归并排序 vs 并行归并排序 vs 计数排序
+     * 每种规模先预热一轮，再各运行若干轮取最短时间，并检查各排序结果完全一致
+     *
+     * 使用方法: java -Xmx4g SortBenchmark [记录数...]（默认 1000000 10000000）
+     */
+    public static void main(String[] args) {
+        int[] sizes = args.length > 0
+            ? Arrays.stream(args).mapToInt(Integer::parseInt).toArray()
+            : new int[] {1_000_000, 10_000_000};
+        int rounds = 3;
+
+        System.out.println("=== 排序性能对比 ===");
+        System.out.println("CPU核数: " + Runtime.getRuntime().availableProcessors());
+        System.out.println("每种规模运行 " + rounds + " 轮，取最短时间");
+
+        for (int size : sizes) {
+            StudentColumns students = generateStudents(size, 42);
+
+            // 预热
+            runMergeSort(students, students.identityOrder());
+            runParallelMergeSort(students, students.identityOrder());
+            runCountingSort(students, students.identityOrder());
+
+            long bestMerge = Long.MAX_VALUE;
+            long bestParallel = Long.MAX_VALUE;
+            long bestCounting = Long.MAX_VALUE;
+            int[] expected = null;
+            int[] actual = null;
+            int[] counted = null;
+            for (int round = 0; round < rounds; round++) {
+                expected = students.identityOrder();
+                bestMerge = Math.min(bestMerge, runMergeSort(students, expected));
+
+                actual = students.identityOrder();
+                bestParallel = Math.min(bestParallel, runParallelMergeSort(students, actual));
+
+                counted = students.identityOrder();
+                bestCounting = Math.min(bestCounting, runCountingSort(students, counted));
+            }
+
+            boolean identical = Arrays.equals(expected, actual) && Arrays.equals(expected, counted);
+
+            System.out.println("\n记录数: " + size);
+            System.out.printf("  归并排序:     %8.1f 毫秒%n", bestMerge / 1e6);
+            System.out.printf("  并行归并排序: %8.1f 毫秒%n", bestParallel / 1e6);
+            System.out.printf("  计数排序:     %8.1f 毫秒%n", bestCounting / 1e6);
+            System.out.printf("  加速比: 并行 %.2f，计数 %.2f%n",
+                (double) bestMerge / bestParallel, (double) bestMerge / bestCounting);
+            System.out.println("  结果一致: " + (identical ? "是" : "否"));
+        }
+    }
+
+    private static long runMergeSort(StudentColumns students, int[] order) {
+        long start = System.nanoTime();
+        MergeSortStudentData.mergeSort(students, order, 0, order.length - 1);
+        return System.nanoTime() - start;
+    }
+
+    private static long runParallelMergeSort(StudentColumns students, int[] order) {
+        long start = System.nanoTime();
+        MergeSortStudentData.parallelMergeSort(students, order);
+        return System.nanoTime() - start;
+    }
+
+    private static long runCountingSort(StudentColumns students, int[] order) {
+        long start = System.nanoTime();
+        MergeSortStudentData.countingSort(students, order);
+        return System.nanoTime() - start;
+    }
+}
@@ -0,0 +1,154 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * 学生数据的列式存储（导入和排序共用）
+ * 每个字段一个基本类型数组，不为每个学生创建对象，每条记录约占 20 字节内存；
+ * 排序时只排列下标数组，写文件时按下标顺序直接编码到可复用的输出缓冲区
+ */
+public class StudentColumns {
+
+    // 写文件时输出缓冲区可容纳的记录数
+    private static final int RECORDS_PER_WRITE = 4096;
+
+    int size;
+    int[] studentIds;
+    float[] chineseScores;
+    float[] mathScores;
+    float[] englishScores;
+    float[] comprehensiveScores;
+
+    public StudentColumns(int initialCapacity) {
+        int capacity = Math.max(16, initialCapacity);
+        studentIds = new int[capacity];
+        chineseScores = new float[capacity];
+        mathScores = new float[capacity];
+        englishScores = new float[capacity];
+        comprehensiveScores = new float[capacity];
+    }
+
+    /**
+     * 读取CSV文件中的学生数据（列式存储）
+     */
+    public static StudentColumns readCsv(String csvFile) throws IOException {
+        return StudentCsvParser.parse(csvFile);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return studentIds.length;
+    }
+
+    // 追加一条记录，容量不足时扩容为原来的两倍
+    public void add(int studentId, float chineseScore, float mathScore,
+                    float englishScore, float comprehensiveScore) {
+        if (size == studentIds.length) {
+            grow((int) Math.min((long) size * 2, Integer.MAX_VALUE - 8));
+        }
+        studentIds[size] = studentId;
+        chineseScores[size] = chineseScore;
+        mathScores[size] = mathScore;
+        englishScores[size] = englishScore;
+        comprehensiveScores[size] = comprehensiveScore;
+        size++;
+    }
+
+    // 追加 other 中的全部记录
+    public void addAll(StudentColumns other) {
+        if (size + other.size > studentIds.length) {
+            grow(Math.max(size + other.size, (int) Math.min((long) size * 2, Integer.MAX_VALUE - 8)));
+        }
+        System.arraycopy(other.studentIds, 0, studentIds, size, other.size);
+        System.arraycopy(other.chineseScores, 0, chineseScores, size, other.size);
+        System.arraycopy(other.mathScores, 0, mathScores, size, other.size);
+        System.arraycopy(other.englishScores, 0, englishScores, size, other.size);
+        System.arraycopy(other.comprehensiveScores, 0, comprehensiveScores, size, other.size);
+        size += other.size;
+    }
+
+    private void grow(int capacity) {
+        studentIds = Arrays.copyOf(studentIds, capacity);
+        chineseScores = Arrays.copyOf(chineseScores, capacity);
+        mathScores = Arrays.copyOf(mathScores, capacity);
+        englishScores = Arrays.copyOf(englishScores, capacity);
+        comprehensiveScores = Arrays.copyOf(comprehensiveScores, capacity);
+    }
+
+    // 清空记录，保留已分配的数组
+    public void clear() {
+        size = 0;
+    }
+
+    // 原始顺序的下标数组 0, 1, ..., size - 1
+    public int[] identityOrder() {
+        int[] order = new int[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        return order;
+    }
+
+    /**
+     * 按学号从小到大排序后的下标数组（学号相同时保持原始顺序）
+     * 输入已按学号有序时直接返回原始顺序
+     */
+    public int[] orderById() {
+        boolean sorted = true;
+        for (int i = 1; i < size && sorted; i++) {
+            sorted = studentIds[i - 1] <= studentIds[i];
+        }
+        if (sorted) {
+            return identityOrder();
+        }
+
+        // 高32位为学号，低32位为原始下标，排序后即为稳定的学号顺序
+        long[] keys = new long[size];
+        for (int i = 0; i < size; i++) {
+            keys[i] = ((long) studentIds[i] << 32) | i;
+        }
+        Arrays.sort(keys);
+
+        int[] order = new int[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = (int) keys[i];
+        }
+        return order;
+    }
+
+    // 把第 index 条记录按 20 字节格式写入缓冲区
+    public void putRecord(ByteBuffer buffer, int index) {
+        buffer.putInt(studentIds[index]);
+        buffer.putFloat(chineseScores[index]);
+        buffer.putFloat(mathScores[index]);
+        buffer.putFloat(englishScores[index]);
+        buffer.putFloat(comprehensiveScores[index]);
+    }
+
+    /**
+     * 按下标数组的顺序把记录写到输出流
+     * 所有记录编码到同一个可复用的缓冲区，写满后整块输出
+     */
+    public void writeRecords(int[] order, OutputStream out) throws IOException {
+        byte[] bytes = new byte[MappedRecordFile.RECORD_SIZE * RECORDS_PER_WRITE];
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+
+        for (int index : order) {
+            if (!buffer.hasRemaining()) {
+                out.write(bytes, 0, buffer.position());
+                buffer.clear();
+            }
+            putRecord(buffer, index);
+        }
+        out.write(bytes, 0, buffer.position());
+    }
+
+    // 第 index 条记录的文本形式（用于打印）
+    public String format(int index) {
+        return String.format("%d\t%.1f\t%.1f\t%.1f\t%.1f", studentIds[index], chineseScores[index],
+            mathScores[index], englishScores[index], comprehensiveScores[index]);
+    }
+}
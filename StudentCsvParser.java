@@ -0,0 +1,337 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * 学生数据CSV文件的字节级并行解析器
+ * 文件按换行符边界切成若干块，每块单独做内存映射，由多个线程并行解析；
+ * 解析时直接读取字节，学号和一位小数的成绩不经过 String，每行不产生任何对象。
+ * 各块的结果按文件中的顺序交付，因此结果与逐行读取完全一致。
+ */
+public class StudentCsvParser {
+
+    // 每块的目标大小（块边界会顺延到下一个换行符之后）
+    private static final int CHUNK_SIZE = 32 * 1024 * 1024;
+
+    // 按文件顺序交付解析结果的回调
+    interface ChunkConsumer {
+        void accept(StudentColumns chunk) throws IOException;
+    }
+
+    /**
+     * 解析整个CSV文件，返回全部学生数据
+     */
+    public static StudentColumns parse(String csvFile) throws IOException {
+        List<StudentColumns> chunks = new ArrayList<>();
+        long[] total = new long[1];
+        parse(csvFile, chunk -> {
+            chunks.add(chunk);
+            total[0] += chunk.size();
+        });
+
+        if (chunks.size() == 1) {
+            return chunks.get(0);
+        }
+        if (total[0] > Integer.MAX_VALUE - 8) {
+            throw new IOException("记录数超过单个数组上限: " + total[0]);
+        }
+
+        StudentColumns students = new StudentColumns((int) total[0]);
+        for (int i = 0; i < chunks.size(); i++) {
+            students.addAll(chunks.get(i));
+            chunks.set(i, null);
+        }
+        return students;
+    }
+
+    /**
+     * 并行解析CSV文件，按文件中的顺序把每块的解析结果交给 consumer
+     * 同时最多有 2 × CPU核数 个块在解析或等待交付，内存占用与文件大小无关
+     */
+    public static void parse(String csvFile, ChunkConsumer consumer) throws IOException {
+        int threads = Runtime.getRuntime().availableProcessors();
+        ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "csv-parser");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        try (FileChannel channel = FileChannel.open(new File(csvFile).toPath(), StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+
+            // 跳过表头（包括可能存在的BOM）
+            long position = findLineEnd(channel, 0, fileSize);
+
+            Deque<Future<ParsedChunk>> window = new ArrayDeque<>();
+            while (position < fileSize || !window.isEmpty()) {
+                // 提交新的块，直到窗口填满
+                while (position < fileSize && window.size() < threads * 2) {
+                    long chunkEnd = findLineEnd(channel, Math.min(fileSize, position + CHUNK_SIZE), fileSize);
+                    MappedByteBuffer chunk = channel.map(FileChannel.MapMode.READ_ONLY, position, chunkEnd - position);
+                    window.add(executor.submit(() -> parseChunk(chunk)));
+                    position = chunkEnd;
+                }
+
+                // 按顺序交付最早提交的块
+                ParsedChunk parsed = await(window.poll());
+                for (String invalidRow : parsed.invalidRows) {
+                    System.err.println("跳过无效行: " + invalidRow);
+                }
+                consumer.accept(parsed.students);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static ParsedChunk await(Future<ParsedChunk> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("CSV解析被中断");
+        } catch (ExecutionException e) {
+            throw new IOException("CSV解析失败: " + e.getCause(), e.getCause());
+        }
+    }
+
+    /**
+     * 返回 from 位置起第一个换行符之后的位置（找不到时返回文件末尾）
+     */
+    private static long findLineEnd(FileChannel channel, long from, long fileSize) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        long position = from;
+        while (position < fileSize) {
+            buffer.clear();
+            int bytesRead = channel.read(buffer, position);
+            if (bytesRead <= 0) {
+                break;
+            }
+            for (int i = 0; i < bytesRead; i++) {
+                if (buffer.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += bytesRead;
+        }
+        return fileSize;
+    }
+
+    // 一块的解析结果
+    private static class ParsedChunk {
+        final StudentColumns students;
+        final List<String> invalidRows = new ArrayList<>();
+
+        ParsedChunk(StudentColumns students) {
+            this.students = students;
+        }
+    }
+
+    private static ParsedChunk parseChunk(ByteBuffer chunk) {
+        // 按平均每行约 20 字节预估记录数
+        ParsedChunk result = new ParsedChunk(new StudentColumns(chunk.limit() / 20));
+        new LineParser(chunk).parseAll(result);
+        return result;
+    }
+
+    /**
+     * 单个块的逐行解析器（每块一个实例，解析过程中不分配对象）
+     */
+    private static class LineParser {
+        private final ByteBuffer buffer;
+        // 当前解析位置和当前行的结束位置（不含换行符）
+        private int position;
+        private int lineEnd;
+        // 最近一次解析出的字段值
+        private int intValue;
+        private float floatValue;
+
+        LineParser(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        void parseAll(ParsedChunk result) {
+            int limit = buffer.limit();
+            int lineStart = 0;
+            while (lineStart < limit) {
+                lineEnd = lineStart;
+                while (lineEnd < limit && buffer.get(lineEnd) != '\n') {
+                    lineEnd++;
+                }
+                // 去掉行尾的 \r
+                int contentEnd = lineEnd;
+                if (contentEnd > lineStart && buffer.get(contentEnd - 1) == '\r') {
+                    contentEnd--;
+                }
+
+                if (contentEnd > lineStart) {
+                    int nextLine = lineEnd + 1;
+                    lineEnd = contentEnd;
+                    position = lineStart;
+                    if (!parseLine(result.students)) {
+                        result.invalidRows.add(text(lineStart, contentEnd));
+                    }
+                    lineStart = nextLine;
+                } else {
+                    // 空行
+                    lineStart = lineEnd + 1;
+                }
+            }
+        }
+
+        // 解析一行的5个字段（多余的字段忽略），成功时追加到 students
+        private boolean parseLine(StudentColumns students) {
+            if (!parseIntField()) {
+                return false;
+            }
+            int studentId = intValue;
+            if (!nextField() || !parseScoreField()) {
+                return false;
+            }
+            float chineseScore = floatValue;
+            if (!nextField() || !parseScoreField()) {
+                return false;
+            }
+            float mathScore = floatValue;
+            if (!nextField() || !parseScoreField()) {
+                return false;
+            }
+            float englishScore = floatValue;
+            if (!nextField() || !parseScoreField()) {
+                return false;
+            }
+            float comprehensiveScore = floatValue;
+
+            students.add(studentId, chineseScore, mathScore, englishScore, comprehensiveScore);
+            return true;
+        }
+
+        // 跳过当前字段末尾的逗号，行已结束时返回 false
+        private boolean nextField() {
+            if (position >= lineEnd || buffer.get(position) != ',') {
+                return false;
+            }
+            position++;
+            return true;
+        }
+
+        // 当前字段的结束位置（逗号或行尾）
+        private int fieldEnd() {
+            int end = position;
+            while (end < lineEnd && buffer.get(end) != ',') {
+                end++;
+            }
+            return end;
+        }
+
+        // 解析整数字段（与 Integer.parseInt(field.trim()) 的结果相同）
+        private boolean parseIntField() {
+            int end = fieldEnd();
+            int start = skipLeadingSpace(position, end);
+            int stop = skipTrailingSpace(start, end);
+            position = end;
+
+            int i = start;
+            boolean negative = false;
+            if (i < stop && (buffer.get(i) == '-' || buffer.get(i) == '+')) {
+                negative = buffer.get(i) == '-';
+                i++;
+            }
+            if (i == stop || stop - i > 9) {
+                // 空字段或位数较多（可能溢出），交给 Integer.parseInt 判断
+                return parseIntSlow(start, stop);
+            }
+
+            int value = 0;
+            for (; i < stop; i++) {
+                int digit = buffer.get(i) - '0';
+                if (digit < 0 || digit > 9) {
+                    return false;
+                }
+                value = value * 10 + digit;
+            }
+            intValue = negative ? -value : value;
+            return true;
+        }
+
+        /**
+         * 解析成绩字段（与 Float.parseFloat(field.trim()) 的结果相同）
+         * 常见格式"整数部分.一位小数"或纯整数直接按十分位整数计算：
+         * 十分位整数除以 10 的浮点除法结果是正确舍入的，与 Float.parseFloat 得到同一个 float
+         */
+        private boolean parseScoreField() {
+            int end = fieldEnd();
+            int start = skipLeadingSpace(position, end);
+            int stop = skipTrailingSpace(start, end);
+            position = end;
+
+            int integerPart = 0;
+            int i = start;
+            while (i < stop && i - start < 6 && isDigit(buffer.get(i))) {
+                integerPart = integerPart * 10 + (buffer.get(i) - '0');
+                i++;
+            }
+            if (i > start) {
+                if (i == stop) {
+                    floatValue = integerPart;
+                    return true;
+                }
+                if (i + 2 == stop && buffer.get(i) == '.' && isDigit(buffer.get(i + 1))) {
+                    floatValue = (integerPart * 10 + (buffer.get(i + 1) - '0')) / 10.0f;
+                    return true;
+                }
+            }
+            return parseFloatSlow(start, stop);
+        }
+
+        private boolean parseIntSlow(int start, int stop) {
+            try {
+                intValue = Integer.parseInt(text(start, stop));
+                return true;
+            } catch (NumberFormatException e) {
+                return false;
+            }
+        }
+
+        private boolean parseFloatSlow(int start, int stop) {
+            try {
+                floatValue = Float.parseFloat(text(start, stop));
+                return true;
+            } catch (NumberFormatException e) {
+                return false;
+            }
+        }
+
+        private int skipLeadingSpace(int start, int end) {
+            while (start < end && (buffer.get(start) & 0xFF) <= ' ') {
+                start++;
+            }
+            return start;
+        }
+
+        private int skipTrailingSpace(int start, int end) {
+            while (end > start && (buffer.get(end - 1) & 0xFF) <= ' ') {
+                end--;
+            }
+            return end;
+        }
+
+        private static boolean isDigit(byte b) {
+            return b >= '0' && b <= '9';
+        }
+
+        // 只在慢路径和报告无效行时使用
+        private String text(int start, int end) {
+            byte[] bytes = new byte[end - start];
+            for (int i = 0; i < bytes.length; i++) {
+                bytes[i] = buffer.get(start + i);
+            }
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,172 @@
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+public class UpdateStudentData {
+
+    /**
+     * 把CSV文件中的学生信息作为新增或修改追加到当前目录的增量文件（见 DeltaStore），
+     * 不重新生成 dat1、dat2 和 idx；同一学号以最后一条为准
+     *
+     * @param csvFile 新增或修改的学生信息（格式与 student_data.csv 相同）
+     * @return 写入增量文件所需时间（单位：毫秒，不含读取CSV）
+     */
+    public static long updateStudentData(String csvFile) throws IOException {
+        StudentColumns students = StudentColumns.readCsv(csvFile);
+        List<QueryByStudentId.Student> updates = new ArrayList<>(students.size());
+        for (int i = 0; i < students.size(); i++) {
+            QueryByStudentId.Student student = new QueryByStudentId.Student();
+            student.studentId = students.studentIds[i];
+            student.chineseScore = students.chineseScores[i];
+            student.mathScore = students.mathScores[i];
+            student.englishScore = students.englishScores[i];
+            student.comprehensiveScore = students.comprehensiveScores[i];
+            updates.add(student);
+        }
+
+        long startTime = System.currentTimeMillis();
+        int pending;
+        try (DeltaStore delta = new DeltaStore(new File("."))) {
+            pending = delta.upsert(updates);
+        }
+        long elapsedTime = System.currentTimeMillis() - startTime;
+
+        System.out.println("增量写入完成: " + DeltaStore.DELTA_FILE);
+        System.out.println("本次记录数: " + updates.size());
+        System.out.println("待压缩的增量记录数: " + pending);
+        System.out.println("写入耗时: " + elapsedTime + " 毫秒");
+        if (pending >= DeltaStore.COMPACTION_THRESHOLD) {
+            System.out.println("增量记录较多，建议运行 java UpdateStudentData compact");
+        }
+        return elapsedTime;
+    }
+
+    /**
+     * 把当前目录的增量文件合并进 dat1、dat2、idx 和已生成的二级索引
+     *
+     * @return 压缩所需时间（单位：毫秒）
+     */
+    public static long compact() throws IOException {
+        long startTime = System.currentTimeMillis();
+
+        File dataDir = new File(".");
+        int merged = 0;
+        try (DeltaStore delta = new DeltaStore(dataDir)) {
+            NavigableMap<Integer, QueryByStudentId.Student> updates = delta.freeze();
+            if (updates != null) {
+                rewriteDataFiles(dataDir, updates);
+                delta.release();
+                merged = updates.size();
+            }
+        }
+
+        long elapsedTime = System.currentTimeMillis() - startTime;
+        System.out.println("压缩完成，合并增量记录数: " + merged);
+        System.out.println("压缩耗时: " + elapsedTime + " 毫秒");
+        return elapsedTime;
+    }
+
+    /**
+     * 用增量记录重新生成 dat1、dat2、idx 和目录中已存在的二级索引
+     * 新文件先写到临时文件，全部生成后再逐个原子替换旧文件；
+     * 已经映射旧文件的查询不受影响，重新打开后即可看到新数据
+     *
+     * @param dataDir 数据文件所在目录
+     * @param updates 按学号排序的新增或修改记录
+     */
+    static void rewriteDataFiles(File dataDir, NavigableMap<Integer, QueryByStudentId.Student> updates)
+            throws IOException {
+        File dat1File = new File(dataDir, "2353250-hw2.dat1");
+        List<File> targets = new ArrayList<>(List.of(dat1File,
+            new File(dataDir, "2353250-hw2.dat2"), new File(dataDir, "2353250-hw2.idx")));
+        List<Integer> fields = new ArrayList<>();
+        for (int field = 0; field < QueryBySubjectScoreRange.FIELD_NAMES.length; field++) {
+            File indexFile = new File(dataDir, QueryBySubjectScoreRange.indexFileName(field));
+            if (field != QueryBySubjectScoreRange.FIELD_CHINESE && indexFile.exists()) {
+                fields.add(field);
+                targets.add(indexFile);
+            }
+        }
+        List<File> temps = new ArrayList<>();
+        for (File target : targets) {
+            temps.add(new File(dataDir, target.getName() + ".tmp"));
+        }
+
+        // 1. 按学号归并旧的 dat1 和增量记录（dat1 中同一学号可能有多条记录，全部由增量记录替换）
+        StudentColumns students;
+        try (FileChannel channel = FileChannel.open(dat1File.toPath(), StandardOpenOption.READ)) {
+            QueryByStudentId.MappedDat1 dat1 = new QueryByStudentId.MappedDat1(channel);
+            long recordCount = dat1.getRecordCount();
+            students = new StudentColumns((int) Math.min(recordCount + updates.size(), Integer.MAX_VALUE - 8));
+
+            Iterator<QueryByStudentId.Student> pending = updates.values().iterator();
+            QueryByStudentId.Student next = pending.hasNext() ? pending.next() : null;
+            // 最近一条已写入的增量记录，之后学号相同的旧记录都跳过
+            QueryByStudentId.Student applied = null;
+            for (long i = 0; i < recordCount; i++) {
+                QueryByStudentId.Student base = dat1.studentAt(i);
+                while (next != null && next.studentId < base.studentId) {
+                    add(students, next);
+                    next = pending.hasNext() ? pending.next() : null;
+                }
+                if (next != null && next.studentId == base.studentId) {
+                    add(students, next);
+                    applied = next;
+                    next = pending.hasNext() ? pending.next() : null;
+                } else if (applied == null || applied.studentId != base.studentId) {
+                    add(students, base);
+                }
+            }
+            while (next != null) {
+                add(students, next);
+                next = pending.hasNext() ? pending.next() : null;
+            }
+        }
+
+        // 2. 写出新的 dat1 和 dat2（排序规则与 MergeSortStudentData 相同）
+        try (FileOutputStream fos = new FileOutputStream(temps.get(0))) {
+            students.writeRecords(students.identityOrder(), fos);
+        }
+        int[] order = students.identityOrder();
+        MergeSortStudentData.parallelMergeSort(students, order);
+        try (FileOutputStream fos = new FileOutputStream(temps.get(1))) {
+            students.writeRecords(order, fos);
+        }
+
+        // 3. 重新生成索引
+        BuildIndexTree.writeIndex(temps.get(1), temps.get(2));
+        for (int i = 0; i < fields.size(); i++) {
+            BuildSecondaryIndex.writeSecondaryIndex(fields.get(i), temps.get(0), temps.get(3 + i));
+        }
+
+        // 4. 替换旧文件
+        for (int i = 0; i < targets.size(); i++) {
+            Files.move(temps.get(i).toPath(), targets.get(i).toPath(),
+                       StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+
+    private static void add(StudentColumns students, QueryByStudentId.Student student) {
+        students.add(student.studentId, student.chineseScore, student.mathScore,
+                     student.englishScore, student.comprehensiveScore);
+    }
+
+    public static void main(String[] args) {
+        try {
+            if (args.length != 1) {
+                System.out.println("使用方法: java UpdateStudentData <CSV文件>   追加新增或修改的学生信息");
+                System.out.println("          java UpdateStudentData compact     把增量合并进 dat1、dat2 和索引");
+                return;
+            }
+
+            long elapsedTime = args[0].equals("compact") ? compact() : updateStudentData(args[0]);
+            System.out.println("\n返回值: " + elapsedTime + " 毫秒");
+        } catch (IOException e) {
+            System.err.println("错误: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,75 @@
+import java.io.*;
+
+public class WriteCompactData {
+
+    /**
+     * 把 20 字节记录格式的数据文件转换为紧凑格式（格式见 CompactRecordFile），记录顺序不变
+     *
+     * @param datFile 源数据文件（dat1 或 dat2）
+     * @param compactFile 紧凑格式文件
+     * @return 记录数
+     */
+    static long writeCompactFile(File datFile, File compactFile) throws IOException {
+        long recordCount = 0;
+        try (DataInputStream dis = new DataInputStream(new BufferedInputStream(new FileInputStream(datFile), 64 * 1024));
+             CompactRecordFile.Writer writer = new CompactRecordFile.Writer(compactFile)) {
+            try {
+                while (true) {
+                    int studentId = dis.readInt();
+                    writer.add(studentId, dis.readFloat(), dis.readFloat(), dis.readFloat(), dis.readFloat());
+                    recordCount++;
+                }
+            } catch (EOFException e) {
+                // 文件读取完毕
+            }
+        }
+        return recordCount;
+    }
+
+    /**
+     * 读取已存在的"2353250-hw2.dat1"和"2353250-hw2.dat2"，生成紧凑格式的
+     * "2353250-hw2.dat1c"和"2353250-hw2.dat2c"（dat2c 与 dat2 共用索引文件 idx）
+     *
+     * @return 文件生成所需时间（单位：毫秒）
+     */
+    public static long writeCompactData() throws IOException {
+        long startTime = System.currentTimeMillis();
+
+        String[][] files = {{"2353250-hw2.dat1", "2353250-hw2.dat1c"}, {"2353250-hw2.dat2", "2353250-hw2.dat2c"}};
+        for (String[] pair : files) {
+            File datFile = new File(pair[0]);
+            if (!datFile.exists()) {
+                throw new FileNotFoundException("数据文件不存在: " + pair[0]);
+            }
+        }
+
+        for (String[] pair : files) {
+            File datFile = new File(pair[0]);
+            File compactFile = new File(pair[1]);
+            long recordCount = writeCompactFile(datFile, compactFile);
+
+            System.out.println("文件生成完成: " + pair[1]);
+            System.out.println("  总记录数: " + recordCount);
+            System.out.println("  原文件大小: " + datFile.length() + " 字节");
+            System.out.printf("  紧凑格式大小: %d 字节（平均每条 %.2f 字节，减少 %.1f%%）\n",
+                compactFile.length(), recordCount == 0 ? 0.0 : (double) compactFile.length() / recordCount,
+                datFile.length() == 0 ? 0.0 : 100.0 * (datFile.length() - compactFile.length()) / datFile.length());
+        }
+
+        long endTime = System.currentTimeMillis();
+        long elapsedTime = endTime - startTime;
+        System.out.println("生成耗时: " + elapsedTime + " 毫秒");
+
+        return elapsedTime;
+    }
+
+    public static void main(String[] args) {
+        try {
+            long elapsedTime = writeCompactData();
+            System.out.println("\n返回值: " + elapsedTime + " 毫秒");
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("错误: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package benchmark;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 数据文件生成：WriteStudentData、MergeSortStudentData（三种排序方式）和 BuildIndexTree
+ *
+ * 每次调用都完整地读取CSV并写出文件，耗时从几十毫秒到几分钟不等，所以使用单次计时模式。
+ * 结果包含磁盘写入，多次运行之间页缓存的状态会影响结果，比较时应在同一台机器上连续运行。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx8g"})
+public class BuildBenchmark {
+
+    @Param({"131072", "10000000", "100000000"})
+    public int rows;
+
+    private File dataDir;
+
+    @Setup(Level.Trial)
+    public void setup() throws Throwable {
+        // buildIndexTree 需要已存在的 dat2
+        dataDir = Datasets.prepareDataFiles(rows);
+        StudentData.discardOutput();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        StudentData.restoreOutput();
+    }
+
+    @Benchmark
+    public long writeStudentDataToBinary() throws Throwable {
+        return StudentData.writeStudentDataToBinary(dataDir);
+    }
+
+    @Benchmark
+    public long sortAndWriteStudentData() throws Throwable {
+        return StudentData.sortAndWriteStudentData(dataDir, StudentData.SORT_MERGE);
+    }
+
+    @Benchmark
+    public long sortAndWriteStudentDataParallel() throws Throwable {
+        return StudentData.sortAndWriteStudentData(dataDir, StudentData.SORT_PARALLEL_MERGE);
+    }
+
+    @Benchmark
+    public long sortAndWriteStudentDataCounting() throws Throwable {
+        return StudentData.sortAndWriteStudentData(dataDir, StudentData.SORT_COUNTING);
+    }
+
+    @Benchmark
+    public long buildIndexTree() throws Throwable {
+        return StudentData.buildIndexTree(dataDir);
+    }
+}
@@ -0,0 +1,110 @@
+package benchmark;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Random;
+
+/**
+ * 基准测试使用的数据集
+ *
+ * 每种规模一个目录（默认 bench-data/<记录数>，可通过 -Dbench.dataDir 修改上级目录），
+ * 其中的"student_data.csv"与 generate_student_data.py 生成的格式和分布相同：
+ * 学号从 1 开始连续递增，各科成绩服从均值 50、标准差 15 的正态分布，裁剪到 0-100 并保留一位小数。
+ * 生成过的数据集会被后续运行直接复用（1 亿条记录的CSV约 2.6GB，生成需要几分钟）。
+ */
+final class Datasets {
+
+    static final String CSV_FILE = "student_data.csv";
+    static final String DAT1_FILE = "2353250-hw2.dat1";
+    static final String DAT2_FILE = "2353250-hw2.dat2";
+    static final String INDEX_FILE = "2353250-hw2.idx";
+
+    private static final long SEED = 42;
+
+    private Datasets() {
+    }
+
+    static File dataDir(int rows) {
+        return new File(System.getProperty("bench.dataDir", "bench-data"), Integer.toString(rows));
+    }
+
+    /**
+     * 确保数据集目录中有指定记录数的CSV文件
+     *
+     * @return 数据集目录
+     */
+    static File prepareCsv(int rows) throws IOException {
+        File dir = dataDir(rows);
+        File csvFile = new File(dir, CSV_FILE);
+        if (csvFile.exists()) {
+            return dir;
+        }
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("无法创建数据集目录: " + dir);
+        }
+
+        // 先写临时文件，完整生成后再改名，中断的生成不会被复用
+        File tmpFile = new File(dir, CSV_FILE + ".tmp");
+        writeCsv(tmpFile, rows);
+        Files.move(tmpFile.toPath(), csvFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                   StandardCopyOption.ATOMIC_MOVE);
+        return dir;
+    }
+
+    /**
+     * 确保数据集目录中有CSV文件以及由它生成的 dat1、dat2 和 idx
+     *
+     * @return 数据集目录
+     */
+    static File prepareDataFiles(int rows) throws Throwable {
+        File dir = prepareCsv(rows);
+        if (new File(dir, DAT1_FILE).exists() && new File(dir, DAT2_FILE).exists()
+                && new File(dir, INDEX_FILE).exists()) {
+            return dir;
+        }
+
+        StudentData.discardOutput();
+        try {
+            StudentData.writeStudentDataToBinary(dir);
+            StudentData.sortAndWriteStudentData(dir, StudentData.SORT_COUNTING);
+            StudentData.buildIndexTree(dir);
+        } finally {
+            StudentData.restoreOutput();
+        }
+        return dir;
+    }
+
+    private static void writeCsv(File file, int rows) throws IOException {
+        Random random = new Random(SEED);
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file),
+                                                                       StandardCharsets.UTF_8), 1 << 20)) {
+            // 与 pandas 的 utf-8-sig 一致，文件以 BOM 开头
+            writer.write('\uFEFF');
+            writer.write("学号,语文成绩,数学成绩,英语成绩,综合成绩\n");
+            StringBuilder line = new StringBuilder(32);
+            for (int id = 1; id <= rows; id++) {
+                line.setLength(0);
+                line.append(id);
+                for (int subject = 0; subject < 4; subject++) {
+                    int tenths = randomTenths(random);
+                    line.append(',').append(tenths / 10).append('.').append(tenths % 10);
+                }
+                line.append('\n');
+                writer.append(line);
+            }
+        }
+    }
+
+    // 以 0.1 分为单位的随机成绩（0 到 1000）
+    private static int randomTenths(Random random) {
+        double score = Math.min(100.0, Math.max(0.0, 50 + 15 * random.nextGaussian()));
+        return (int) Math.round(score * 10);
+    }
+}
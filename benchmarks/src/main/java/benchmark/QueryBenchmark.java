@@ -0,0 +1,77 @@
+package benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 查询：queryStudentById 和 queryByChineseScoreRange（文件已打开并映射，与服务器处理请求时相同）
+ *
+ * 学号查询按预先生成的随机学号序列轮流查询，其中约 1/16 的学号不存在；
+ * 成绩范围查询固定为 [80, 90]（约 2% 的记录），以及只统计人数和平均成绩的全范围查询。
+ * 不同选择率的对比见 SelectivityBenchmark。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx8g"})
+public class QueryBenchmark {
+
+    private static final int ID_COUNT = 1 << 16;
+
+    @Param({"131072", "10000000", "100000000"})
+    public int rows;
+
+    private QueryFiles files;
+    private int[] studentIds;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setup() throws Throwable {
+        files = QueryFiles.open(rows);
+
+        Random random = new Random(7);
+        studentIds = new int[ID_COUNT];
+        for (int i = 0; i < ID_COUNT; i++) {
+            // 学号范围是 [1, rows]，超出部分为不存在的学号
+            studentIds[i] = 1 + random.nextInt(rows + rows / 15);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        files.close();
+    }
+
+    @Benchmark
+    public Object queryStudentById() throws Throwable {
+        int studentId = studentIds[next];
+        next = (next + 1) & (ID_COUNT - 1);
+        return StudentData.queryStudentById(files.dat1, studentId);
+    }
+
+    @Benchmark
+    public Object queryByChineseScoreRange() throws Throwable {
+        return StudentData.queryByChineseScoreRange(files.index, files.dat2, 80.0f, 90.0f, true);
+    }
+
+    @Benchmark
+    public Object queryByChineseScoreRangeCountOnly() throws Throwable {
+        return StudentData.queryByChineseScoreRange(files.index, files.dat2, 0.0f, 100.0f, false);
+    }
+}
@@ -0,0 +1,65 @@
+package benchmark;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 查询基准测试使用的已打开数据文件：与 ServerEnd 相同，dat1、dat2 内存映射，索引常驻
+ */
+final class QueryFiles implements Closeable {
+
+    final int rows;
+    final Object dat1;      // QueryByStudentId.MappedDat1
+    final Object dat2;      // MappedRecordFile
+    final Object index;     // QueryByChineseScoreRange.ScoreIndex
+
+    private final FileChannel dat1Channel;
+    private final FileChannel dat2Channel;
+
+    private QueryFiles(int rows, FileChannel dat1Channel, FileChannel dat2Channel, Object dat1, Object dat2,
+                       Object index) {
+        this.rows = rows;
+        this.dat1Channel = dat1Channel;
+        this.dat2Channel = dat2Channel;
+        this.dat1 = dat1;
+        this.dat2 = dat2;
+        this.index = index;
+    }
+
+    static QueryFiles open(int rows) throws Throwable {
+        File dir = Datasets.prepareDataFiles(rows);
+        FileChannel dat1Channel = FileChannel.open(new File(dir, Datasets.DAT1_FILE).toPath(), StandardOpenOption.READ);
+        FileChannel dat2Channel = null;
+        try {
+            dat2Channel = FileChannel.open(new File(dir, Datasets.DAT2_FILE).toPath(), StandardOpenOption.READ);
+            Object dat1 = StudentData.openMappedDat1(dat1Channel);
+            Object dat2 = StudentData.openMappedRecordFile(dat2Channel);
+            Object index;
+            StudentData.discardOutput();
+            try {
+                index = StudentData.loadIndexFile(new File(dir, Datasets.INDEX_FILE));
+            } finally {
+                StudentData.restoreOutput();
+            }
+            return new QueryFiles(rows, dat1Channel, dat2Channel, dat1, dat2, index);
+        } catch (Throwable e) {
+            dat1Channel.close();
+            if (dat2Channel != null) {
+                dat2Channel.close();
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            dat1Channel.close();
+        } finally {
+            dat2Channel.close();
+        }
+    }
+}
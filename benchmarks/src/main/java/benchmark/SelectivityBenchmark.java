@@ -0,0 +1,86 @@
+package benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 语文成绩范围查询的选择率扫描
+ *
+ * 对每个目标选择率（范围内记录数 / 总记录数），在 setup 中从 100 分向下找到最小的 minScore，
+ * 使 [minScore, 100] 内的记录数不少于目标值（成绩以 0.1 分为单位，实际选择率会略高于目标值，
+ * 实际范围和记录数在 setup 时输出到标准错误）。
+ * rangeQuery 返回学生列表，耗时随选择率线性增长；rangeCount 只使用索引中的累计值，与选择率无关。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx8g"})
+public class SelectivityBenchmark {
+
+    @Param({"131072", "10000000", "100000000"})
+    public int rows;
+
+    @Param({"0.0001", "0.001", "0.01", "0.1", "0.5", "1.0"})
+    public double selectivity;
+
+    private QueryFiles files;
+    private float minScore;
+
+    @Setup(Level.Trial)
+    public void setup() throws Throwable {
+        files = QueryFiles.open(rows);
+
+        // 二分查找：[minScore, 100] 内记录数随 minScore 减小而单调不减
+        long target = (long) Math.ceil(selectivity * rows);
+        int low = 0;
+        int high = 1000;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (count(mid / 10.0f) >= target) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        minScore = low / 10.0f;
+
+        int matched = count(minScore);
+        System.err.printf("选择率 %s: 语文成绩 [%.1f, 100.0]，%d / %d 条记录（%.4f%%）%n",
+            selectivity, minScore, matched, rows, 100.0 * matched / rows);
+    }
+
+    private int count(float score) throws Throwable {
+        return StudentData.studentCount(
+            StudentData.queryByChineseScoreRange(files.index, files.dat2, score, 100.0f, false));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        files.close();
+    }
+
+    @Benchmark
+    public Object rangeQuery() throws Throwable {
+        return StudentData.queryByChineseScoreRange(files.index, files.dat2, minScore, 100.0f, true);
+    }
+
+    @Benchmark
+    public Object rangeCount() throws Throwable {
+        return StudentData.queryByChineseScoreRange(files.index, files.dat2, minScore, 100.0f, false);
+    }
+}
@@ -0,0 +1,193 @@
+package benchmark;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.channels.FileChannel;
+
+/**
+ * 被测代码的调用入口
+ *
+ * 被测类都在默认包中，而 JMH 要求基准测试类有包名，有包名的类不能直接引用默认包中的类，
+ * 所以这里在类加载时通过反射找到被测方法，转换为 MethodHandle 保存在常量中（JIT 可以内联）。
+ * 默认包中的参数和返回值类型统一擦除为 Object，调用处使用 invokeExact。
+ */
+final class StudentData {
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    // long WriteStudentData.writeStudentDataToBinary(File dataDir)
+    private static final MethodHandle WRITE_STUDENT_DATA =
+        staticMethod("WriteStudentData", "writeStudentDataToBinary", File.class);
+
+    // long MergeSortStudentData.sortAndWriteStudentData(File dataDir, int sortStrategy)
+    private static final MethodHandle SORT_AND_WRITE_STUDENT_DATA =
+        staticMethod("MergeSortStudentData", "sortAndWriteStudentData", File.class, int.class);
+
+    // long BuildIndexTree.buildIndexTree(File dataDir)
+    private static final MethodHandle BUILD_INDEX_TREE =
+        staticMethod("BuildIndexTree", "buildIndexTree", File.class);
+
+    // QueryByStudentId.MappedDat1(FileChannel channel)
+    private static final MethodHandle NEW_MAPPED_DAT1 =
+        constructor("QueryByStudentId$MappedDat1", FileChannel.class);
+
+    // MappedRecordFile(FileChannel channel)
+    private static final MethodHandle NEW_MAPPED_RECORD_FILE =
+        constructor("MappedRecordFile", FileChannel.class);
+
+    // ScoreIndex QueryByChineseScoreRange.loadIndexFile(String indexFile)
+    private static final MethodHandle LOAD_INDEX_FILE =
+        staticMethod("QueryByChineseScoreRange", "loadIndexFile", String.class);
+
+    // QueryResult QueryByStudentId.queryStudentById(MappedDat1 dat1, int studentId)
+    private static final MethodHandle QUERY_STUDENT_BY_ID =
+        staticMethod("QueryByStudentId", "queryStudentById", type("QueryByStudentId$MappedDat1"), int.class);
+
+    // QueryResult QueryByChineseScoreRange.queryByChineseScoreRange(ScoreIndex index, MappedRecordFile dat2,
+    //                                                               float minScore, float maxScore, boolean includeStudents)
+    private static final MethodHandle QUERY_BY_CHINESE_SCORE_RANGE =
+        staticMethod("QueryByChineseScoreRange", "queryByChineseScoreRange",
+                     type("QueryByChineseScoreRange$ScoreIndex"), type("MappedRecordFile"),
+                     float.class, float.class, boolean.class);
+
+    // QueryByChineseScoreRange.QueryResult.studentCount
+    private static final MethodHandle RANGE_STUDENT_COUNT =
+        getter("QueryByChineseScoreRange$QueryResult", "studentCount");
+
+    // MergeSortStudentData 的排序方式
+    static final int SORT_MERGE = intConstant("MergeSortStudentData", "SORT_MERGE");
+    static final int SORT_PARALLEL_MERGE = intConstant("MergeSortStudentData", "SORT_PARALLEL_MERGE");
+    static final int SORT_COUNTING = intConstant("MergeSortStudentData", "SORT_COUNTING");
+
+    // 被测方法会打印进度和结果，测量期间丢弃这些输出
+    private static final PrintStream DISCARD = new PrintStream(OutputStream.nullOutputStream());
+    private static PrintStream savedOut;
+
+    private StudentData() {
+    }
+
+    static long writeStudentDataToBinary(File dataDir) throws Throwable {
+        return (long) WRITE_STUDENT_DATA.invokeExact(dataDir);
+    }
+
+    static long sortAndWriteStudentData(File dataDir, int sortStrategy) throws Throwable {
+        return (long) SORT_AND_WRITE_STUDENT_DATA.invokeExact(dataDir, sortStrategy);
+    }
+
+    static long buildIndexTree(File dataDir) throws Throwable {
+        return (long) BUILD_INDEX_TREE.invokeExact(dataDir);
+    }
+
+    static Object openMappedDat1(FileChannel channel) throws Throwable {
+        return (Object) NEW_MAPPED_DAT1.invokeExact(channel);
+    }
+
+    static Object openMappedRecordFile(FileChannel channel) throws Throwable {
+        return (Object) NEW_MAPPED_RECORD_FILE.invokeExact(channel);
+    }
+
+    static Object loadIndexFile(File indexFile) throws Throwable {
+        return (Object) LOAD_INDEX_FILE.invokeExact(indexFile.getPath());
+    }
+
+    static Object queryStudentById(Object dat1, int studentId) throws Throwable {
+        return (Object) QUERY_STUDENT_BY_ID.invokeExact(dat1, studentId);
+    }
+
+    static Object queryByChineseScoreRange(Object index, Object dat2, float minScore, float maxScore,
+                                           boolean includeStudents) throws Throwable {
+        return (Object) QUERY_BY_CHINESE_SCORE_RANGE.invokeExact(index, dat2, minScore, maxScore, includeStudents);
+    }
+
+    static int studentCount(Object rangeResult) throws Throwable {
+        return (int) RANGE_STUDENT_COUNT.invokeExact(rangeResult);
+    }
+
+    // 丢弃被测方法的输出，与 restoreOutput 成对使用
+    static synchronized void discardOutput() {
+        if (savedOut == null) {
+            savedOut = System.out;
+            System.setOut(DISCARD);
+        }
+    }
+
+    static synchronized void restoreOutput() {
+        if (savedOut != null) {
+            System.setOut(savedOut);
+            savedOut = null;
+        }
+    }
+
+    private static Class<?> type(String className) {
+        try {
+            return Class.forName(className);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException("找不到被测类: " + className, e);
+        }
+    }
+
+    private static MethodHandle staticMethod(String className, String name, Class<?>... parameterTypes) {
+        try {
+            Method method = type(className).getDeclaredMethod(name, parameterTypes);
+            method.setAccessible(true);
+            return erase(LOOKUP.unreflect(method));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("找不到被测方法: " + className + "." + name, e);
+        }
+    }
+
+    private static MethodHandle constructor(String className, Class<?>... parameterTypes) {
+        try {
+            Constructor<?> constructor = type(className).getDeclaredConstructor(parameterTypes);
+            constructor.setAccessible(true);
+            return erase(LOOKUP.unreflectConstructor(constructor));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("找不到被测构造方法: " + className, e);
+        }
+    }
+
+    private static MethodHandle getter(String className, String name) {
+        try {
+            Field field = type(className).getDeclaredField(name);
+            field.setAccessible(true);
+            return erase(LOOKUP.unreflectGetter(field));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("找不到字段: " + className + "." + name, e);
+        }
+    }
+
+    private static int intConstant(String className, String name) {
+        try {
+            Field field = type(className).getDeclaredField(name);
+            field.setAccessible(true);
+            return field.getInt(null);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("找不到常量: " + className + "." + name, e);
+        }
+    }
+
+    // 把默认包中的参数和返回值类型替换为 Object
+    private static MethodHandle erase(MethodHandle handle) {
+        MethodType type = handle.type();
+        for (int i = 0; i < type.parameterCount(); i++) {
+            if (inDefaultPackage(type.parameterType(i))) {
+                type = type.changeParameterType(i, Object.class);
+            }
+        }
+        if (inDefaultPackage(type.returnType())) {
+            type = type.changeReturnType(Object.class);
+        }
+        return handle.asType(type);
+    }
+
+    private static boolean inDefaultPackage(Class<?> type) {
+        return !type.isPrimitive() && !type.isArray() && type.getPackageName().isEmpty();
+    }
+}